@@ -47,11 +47,21 @@ dependencies {
     api("no.novari:kafka:6.0.0")
     api("no.novari:flyt-cache:3.0.0")
 
+    compileOnly("org.springframework.boot:spring-boot-actuator")
+    compileOnly("io.micrometer:micrometer-core")
+    compileOnly("org.springframework.data:spring-data-jpa")
+    compileOnly("jakarta.persistence:jakarta.persistence-api")
+    compileOnly("org.springframework.data:spring-data-relational")
     compileOnly("org.projectlombok:lombok")
     annotationProcessor("org.springframework.boot:spring-boot-configuration-processor")
     annotationProcessor("org.projectlombok:lombok")
 
     testImplementation("io.projectreactor:reactor-test")
+    testImplementation("org.springframework.boot:spring-boot-actuator")
+    testImplementation("io.micrometer:micrometer-core")
+    testImplementation("org.springframework.data:spring-data-jpa")
+    testImplementation("jakarta.persistence:jakarta.persistence-api")
+    testImplementation("org.springframework.data:spring-data-relational")
 
     testImplementation("org.springframework.boot:spring-boot-starter-test")
     testImplementation("org.springframework.boot:spring-boot-starter-oauth2-resource-server")
@@ -62,6 +72,10 @@ dependencies {
     testAnnotationProcessor("org.projectlombok:lombok")
 }
 
+tasks.withType<JavaCompile> {
+    options.compilerArgs.add("-parameters")
+}
+
 tasks.test {
     useJUnitPlatform()
 }
@@ -2,8 +2,19 @@ package no.novari.flyt.resourceserver.security;
 
 import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorizationService;
 import no.novari.flyt.resourceserver.security.user.UserAuthorizationService;
+import no.novari.flyt.resourceserver.security.user.method.UserAuthorizationMethodAdvisor;
+import no.novari.flyt.resourceserver.security.user.method.UserAuthorizationMethodInterceptor;
+import no.novari.flyt.resourceserver.security.user.query.SourceApplicationCriteriaFactory;
+import no.novari.flyt.resourceserver.security.user.query.SourceApplicationSpecificationFactory;
+import no.novari.flyt.resourceserver.security.user.query.SourceApplicationSqlPredicateService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.util.function.SingletonSupplier;
 
 @AutoConfiguration
 public class AuthorizationServiceConfiguration {
@@ -22,4 +33,50 @@ public class AuthorizationServiceConfiguration {
         return new UserAuthorizationService(authorityMappingService);
     }
 
+    /**
+     * Static and infrastructure role, since the advisor is needed while the beans it applies to are being created.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static UserAuthorizationMethodAdvisor userAuthorizationMethodAdvisor(
+            ObjectProvider<UserAuthorizationService> userAuthorizationService
+    ) {
+        return new UserAuthorizationMethodAdvisor(
+                new UserAuthorizationMethodInterceptor(SingletonSupplier.of(userAuthorizationService::getObject))
+        );
+    }
+
+    @Bean
+    public SourceApplicationSqlPredicateService sourceApplicationSqlPredicateService(
+            AuthorityMappingService authorityMappingService
+    ) {
+        return new SourceApplicationSqlPredicateService(authorityMappingService);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.data.jpa.domain.Specification")
+    static class SourceApplicationSpecificationConfiguration {
+
+        @Bean
+        public SourceApplicationSpecificationFactory sourceApplicationSpecificationFactory(
+                AuthorityMappingService authorityMappingService
+        ) {
+            return new SourceApplicationSpecificationFactory(authorityMappingService);
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.data.relational.core.query.Criteria")
+    static class SourceApplicationCriteriaConfiguration {
+
+        @Bean
+        public SourceApplicationCriteriaFactory sourceApplicationCriteriaFactory(
+                AuthorityMappingService authorityMappingService
+        ) {
+            return new SourceApplicationCriteriaFactory(authorityMappingService);
+        }
+
+    }
+
 }
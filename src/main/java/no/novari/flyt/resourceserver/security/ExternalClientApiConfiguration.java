@@ -1,10 +1,34 @@
 package no.novari.flyt.resourceserver.security;
 
+import no.novari.cache.FintCache;
+import no.novari.cache.FintCacheManager;
+import no.novari.cache.FintCacheOptions;
+import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorityMappingService;
+import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorization;
+import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorizationCachingListenerFactory;
+import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorizationCachingService;
+import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorizationHealthIndicator;
+import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorizationProvider;
+import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorizationRequestService;
+import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorizationViewService;
+import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationJwtConverter;
 import no.novari.flyt.resourceserver.security.properties.ExternalApiSecurityProperties;
+import no.novari.kafka.consuming.ErrorHandlerFactory;
+import no.novari.kafka.consuming.ParameterizedListenerContainerFactoryService;
+import no.novari.kafka.requestreply.RequestTemplateFactory;
+import no.novari.kafka.requestreply.topic.ReplyTopicService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
 
 @AutoConfiguration
 @ConditionalOnProperty(
@@ -20,4 +44,157 @@ public class ExternalClientApiConfiguration {
         return new ExternalApiSecurityProperties();
     }
 
+    @Bean
+    SourceApplicationJwtConverter sourceApplicationJwtConverter(
+            SourceApplicationAuthorizationProvider sourceApplicationAuthorizationProvider,
+            SourceApplicationAuthorityMappingService sourceApplicationAuthorityMappingService
+    ) {
+        return new SourceApplicationJwtConverter(
+                sourceApplicationAuthorizationProvider,
+                sourceApplicationAuthorityMappingService
+        );
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(
+            prefix = "novari.flyt.resource-server.security.api",
+            value = "external.authorization-lookup",
+            havingValue = "request-reply",
+            matchIfMissing = true
+    )
+    static class RequestReplyLookupConfiguration {
+
+        @Bean
+        RequestCircuitBreaker sourceApplicationAuthorizationCircuitBreaker(
+                ExternalApiSecurityProperties externalApiSecurityProperties
+        ) {
+            return new RequestCircuitBreaker(
+                    "sourceApplicationAuthorization",
+                    externalApiSecurityProperties.getAuthorizationRequest().getCircuitBreaker(),
+                    Clock.systemUTC()
+            );
+        }
+
+        @Bean
+        RequestBulkhead sourceApplicationAuthorizationBulkhead(
+                ExternalApiSecurityProperties externalApiSecurityProperties
+        ) {
+            return new RequestBulkhead(
+                    "sourceApplicationAuthorization",
+                    externalApiSecurityProperties.getAuthorizationRequest().getMaxConcurrentRequests()
+            );
+        }
+
+        @Bean
+        RequestHedger sourceApplicationAuthorizationRequestHedger(
+                ExternalApiSecurityProperties externalApiSecurityProperties
+        ) {
+            return new RequestHedger(
+                    externalApiSecurityProperties.getAuthorizationRequest().getHedging(),
+                    Schedulers.parallel()
+            );
+        }
+
+        @Bean
+        SourceApplicationAuthorizationRequestService sourceApplicationAuthorizationRequestService(
+                @Value("${novari.kafka.application-id}") String applicationId,
+                ExternalApiSecurityProperties externalApiSecurityProperties,
+                RequestCircuitBreaker sourceApplicationAuthorizationCircuitBreaker,
+                RequestBulkhead sourceApplicationAuthorizationBulkhead,
+                RequestHedger sourceApplicationAuthorizationRequestHedger,
+                RequestTemplateFactory requestTemplateFactory,
+                ReplyTopicService replyTopicService
+        ) {
+            return new SourceApplicationAuthorizationRequestService(
+                    applicationId,
+                    externalApiSecurityProperties.getAuthorizationRequest(),
+                    sourceApplicationAuthorizationCircuitBreaker,
+                    sourceApplicationAuthorizationBulkhead,
+                    sourceApplicationAuthorizationRequestHedger,
+                    requestTemplateFactory,
+                    replyTopicService
+            );
+        }
+
+        @Bean
+        SourceApplicationAuthorizationCachingService sourceApplicationAuthorizationCachingService(
+                SourceApplicationAuthorizationRequestService sourceApplicationAuthorizationRequestService,
+                ExternalApiSecurityProperties externalApiSecurityProperties,
+                VerifiedTokenCache verifiedTokenCache
+        ) {
+            return new SourceApplicationAuthorizationCachingService(
+                    sourceApplicationAuthorizationRequestService,
+                    externalApiSecurityProperties.getAuthorizationCache(),
+                    verifiedTokenCache,
+                    Clock.systemUTC()
+            );
+        }
+
+        @Configuration(proxyBeanMethods = false)
+        @ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+        static class HealthConfiguration {
+
+            @Bean
+            SourceApplicationAuthorizationHealthIndicator sourceApplicationAuthorizationHealthIndicator(
+                    RequestCircuitBreaker sourceApplicationAuthorizationCircuitBreaker,
+                    RequestBulkhead sourceApplicationAuthorizationBulkhead
+            ) {
+                return new SourceApplicationAuthorizationHealthIndicator(
+                        sourceApplicationAuthorizationCircuitBreaker,
+                        sourceApplicationAuthorizationBulkhead
+                );
+            }
+
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(
+            prefix = "novari.flyt.resource-server.security.api",
+            value = "external.authorization-lookup",
+            havingValue = "entity-topic"
+    )
+    static class EntityTopicLookupConfiguration {
+
+        @Bean
+        FintCache<String, SourceApplicationAuthorization> sourceApplicationAuthorizationCache(
+                FintCacheManager fintCacheManager
+        ) {
+            return fintCacheManager.createCache(
+                    "clientauthorization",
+                    String.class,
+                    SourceApplicationAuthorization.class,
+                    FintCacheOptions
+                            .builder()
+                            .timeToLive(Duration.ofMillis(9223372036854775807L))
+                            .heapSize(100000L)
+                            .build()
+            );
+        }
+
+        @Bean
+        SourceApplicationAuthorizationViewService sourceApplicationAuthorizationViewService(
+                FintCache<String, SourceApplicationAuthorization> sourceApplicationAuthorizationCache
+        ) {
+            return new SourceApplicationAuthorizationViewService(sourceApplicationAuthorizationCache);
+        }
+
+        @Bean("sourceApplicationAuthorizationCachingListener")
+        ConcurrentMessageListenerContainer<String, SourceApplicationAuthorization> sourceApplicationAuthorizationCachingListener(
+                ParameterizedListenerContainerFactoryService containerFactoryService,
+                FintCache<String, SourceApplicationAuthorization> sourceApplicationAuthorizationCache,
+                VerifiedTokenCache verifiedTokenCache,
+                ErrorHandlerFactory errorHandlerFactory
+        ) {
+            return new SourceApplicationAuthorizationCachingListenerFactory().create(
+                    containerFactoryService,
+                    sourceApplicationAuthorizationCache,
+                    verifiedTokenCache,
+                    errorHandlerFactory
+            );
+        }
+
+    }
+
 }
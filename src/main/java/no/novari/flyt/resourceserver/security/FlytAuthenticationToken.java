@@ -0,0 +1,118 @@
+package no.novari.flyt.resourceserver.security;
+
+import no.novari.flyt.resourceserver.security.user.UserRole;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Authentication produced by the Flyt JWT converters that carries the {@link FlytAuthorization} its authorities were
+ * created from, so that authorization checks read the organization ID, granted roles and source application IDs
+ * directly instead of parsing authority strings.
+ * <p>
+ * The authorities are still set, so that authority-based authorization managers and {@code hasAuthority} expressions
+ * keep working, and the token is still a {@link JwtAuthenticationToken}. {@link SourceApplicationGrantedAuthorities}
+ * are kept as they are instead of being copied, so that their source application authorities are not created.
+ */
+public class FlytAuthenticationToken extends JwtAuthenticationToken {
+
+    private final Collection<GrantedAuthority> authorities;
+    private final FlytAuthorization authorization;
+
+    /**
+     * @param roleMask                   mask of the granted roles, see {@link UserRole#getMask()}
+     * @param sortedSourceApplicationIds sorted source application IDs, which are kept without copying and must not be
+     *                                   modified afterwards
+     */
+    public FlytAuthenticationToken(
+            Jwt jwt,
+            Collection<? extends GrantedAuthority> authorities,
+            String organizationId,
+            long roleMask,
+            long[] sortedSourceApplicationIds
+    ) {
+        super(jwt, List.of());
+        this.authorities = toImmutableAuthorities(authorities);
+        this.authorization = new FlytAuthorization(organizationId, roleMask, sortedSourceApplicationIds);
+    }
+
+    private static Collection<GrantedAuthority> toImmutableAuthorities(
+            Collection<? extends GrantedAuthority> authorities
+    ) {
+        if (authorities instanceof SourceApplicationGrantedAuthorities sourceApplicationGrantedAuthorities) {
+            return sourceApplicationGrantedAuthorities;
+        }
+        return List.copyOf(authorities);
+    }
+
+    @Override
+    public Collection<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    public FlytAuthorization getAuthorization() {
+        return authorization;
+    }
+
+    /**
+     * @return the organization ID of the user, or {@code null} for clients
+     */
+    public String getOrganizationId() {
+        return authorization.getOrganizationId();
+    }
+
+    public long getRoleMask() {
+        return authorization.getRoleMask();
+    }
+
+    public boolean hasRole(UserRole userRole) {
+        return authorization.hasRole(userRole);
+    }
+
+    /**
+     * @return the sorted source application IDs, shared with the token; must not be modified
+     */
+    public long[] getSourceApplicationIds() {
+        return authorization.getSourceApplicationIds();
+    }
+
+    public boolean hasAccessToSourceApplication(long sourceApplicationId) {
+        return authorization.hasAccessToSourceApplication(sourceApplicationId);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()
+               + " [Principal=" + getName()
+               + ", Authenticated=" + isAuthenticated()
+               + ", Authorization=" + authorization + "]";
+    }
+
+    /**
+     * Compares the same properties as {@code AbstractAuthenticationToken}, but without iterating the authorities.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof FlytAuthenticationToken other)) {
+            return false;
+        }
+        return isAuthenticated() == other.isAuthenticated()
+               && getToken().equals(other.getToken())
+               && Objects.equals(getDetails(), other.getDetails())
+               && authorization.equals(other.authorization)
+               && authorities.equals(other.authorities);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getToken(), authorization, isAuthenticated());
+    }
+
+}
@@ -0,0 +1,99 @@
+package no.novari.flyt.resourceserver.security;
+
+import no.novari.flyt.resourceserver.security.user.UserRole;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Parsed authorization data of an authenticated caller: the organization ID, a mask of the granted user roles and
+ * the sorted IDs of the source applications the caller has access to.
+ */
+public final class FlytAuthorization {
+
+    public static final FlytAuthorization NONE = new FlytAuthorization(null, 0, null);
+
+    private static final long[] NO_SOURCE_APPLICATION_IDS = new long[0];
+
+    private final String organizationId;
+    private final long roleMask;
+    private final long[] sortedSourceApplicationIds;
+    private volatile SourceApplicationIdSet sourceApplicationIdSet;
+
+    /**
+     * @param roleMask                   mask of the granted roles, see {@link UserRole#getMask()}
+     * @param sortedSourceApplicationIds sorted source application IDs, which are kept without copying and must not be
+     *                                   modified afterwards
+     */
+    public FlytAuthorization(String organizationId, long roleMask, long[] sortedSourceApplicationIds) {
+        this.organizationId = organizationId;
+        this.roleMask = roleMask;
+        this.sortedSourceApplicationIds = sortedSourceApplicationIds == null
+                ? NO_SOURCE_APPLICATION_IDS
+                : sortedSourceApplicationIds;
+    }
+
+    /**
+     * @return the organization ID of the user, or {@code null} for clients
+     */
+    public String getOrganizationId() {
+        return organizationId;
+    }
+
+    public long getRoleMask() {
+        return roleMask;
+    }
+
+    public boolean hasRole(UserRole userRole) {
+        return (roleMask & userRole.getMask()) != 0;
+    }
+
+    /**
+     * @return the sorted source application IDs, shared with this authorization; must not be modified
+     */
+    public long[] getSourceApplicationIds() {
+        return sortedSourceApplicationIds;
+    }
+
+    /**
+     * @return the source application IDs as a set for bulk membership checks, built on first use
+     */
+    public SourceApplicationIdSet getSourceApplicationIdSet() {
+        SourceApplicationIdSet set = sourceApplicationIdSet;
+        if (set == null) {
+            set = SourceApplicationIdSet.of(sortedSourceApplicationIds);
+            sourceApplicationIdSet = set;
+        }
+        return set;
+    }
+
+    public boolean hasAccessToSourceApplication(long sourceApplicationId) {
+        return Arrays.binarySearch(sortedSourceApplicationIds, sourceApplicationId) >= 0;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof FlytAuthorization other)) {
+            return false;
+        }
+        return roleMask == other.roleMask
+               && Objects.equals(organizationId, other.organizationId)
+               && Arrays.equals(sortedSourceApplicationIds, other.sortedSourceApplicationIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(organizationId, roleMask, Arrays.hashCode(sortedSourceApplicationIds));
+    }
+
+    @Override
+    public String toString() {
+        return "FlytAuthorization(organizationId=" + organizationId
+               + ", roles=" + UserRole.fromMask(roleMask)
+               + ", sourceApplicationIds=" + Arrays.toString(sortedSourceApplicationIds) + ")";
+    }
+
+}
@@ -0,0 +1,103 @@
+package no.novari.flyt.resourceserver.security;
+
+import no.novari.flyt.resourceserver.security.user.UserRole;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Arrays;
+
+/**
+ * Resolves the {@link FlytAuthorization} of an authentication. {@link FlytAuthenticationToken}s carry it already;
+ * other authentications, such as mocked ones in tests, have their authorities parsed.
+ * <p>
+ * The authorization of the current exchange is memoized in the Reactor context when the context holds a memo written
+ * by {@link FlytAuthorizationMemoWebFilter}, so that repeated reactive authorization checks within one request only
+ * resolve it once.
+ */
+public class FlytAuthorizationResolver {
+
+    private static final String CONTEXT_KEY = FlytAuthorizationResolver.class.getName();
+
+    private final AuthorityMappingService authorityMappingService;
+
+    public FlytAuthorizationResolver(AuthorityMappingService authorityMappingService) {
+        this.authorityMappingService = authorityMappingService;
+    }
+
+    /**
+     * Adds an empty memo for the authorization of the current exchange, unless the context already has one.
+     */
+    public static Context withMemo(Context context) {
+        return context.hasKey(CONTEXT_KEY) ? context : context.put(CONTEXT_KEY, new Memo());
+    }
+
+    public FlytAuthorization resolve(Authentication authentication) {
+        if (authentication instanceof FlytAuthenticationToken flytAuthenticationToken) {
+            return flytAuthenticationToken.getAuthorization();
+        }
+        long roleMask = 0;
+        for (String roleName : authorityMappingService.extractStringValues(
+                AuthorityPrefix.ROLE,
+                authentication.getAuthorities()
+        )) {
+            roleMask |= toRoleMask(roleName);
+        }
+        long[] sortedSourceApplicationIds = authorityMappingService.extractLongValues(
+                        AuthorityPrefix.SOURCE_APPLICATION_ID,
+                        authentication.getAuthorities()
+                )
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        Arrays.sort(sortedSourceApplicationIds);
+        return new FlytAuthorization(null, roleMask, sortedSourceApplicationIds);
+    }
+
+    /**
+     * Completes empty when the security context of the subscriber holds no authentication.
+     */
+    public Mono<FlytAuthorization> resolveCurrent() {
+        return Mono.deferContextual(contextView -> ReactiveSecurityContextHolder.getContext()
+                .mapNotNull(SecurityContext::getAuthentication)
+                .map(authentication -> contextView.<Memo>getOrEmpty(CONTEXT_KEY)
+                        .map(memo -> memo.resolve(authentication, this))
+                        .orElseGet(() -> resolve(authentication))
+                )
+        );
+    }
+
+    private static long toRoleMask(String roleName) {
+        try {
+            return UserRole.valueOf(roleName).getMask();
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Holds the authorization resolved for an authentication. The authentication of an exchange may be replaced
+     * further down the filter chain, so the memo is only used for the same authentication instance.
+     */
+    private static final class Memo {
+
+        private volatile Resolved resolved;
+
+        private FlytAuthorization resolve(Authentication authentication, FlytAuthorizationResolver resolver) {
+            Resolved current = resolved;
+            if (current != null && current.authentication() == authentication) {
+                return current.authorization();
+            }
+            FlytAuthorization authorization = resolver.resolve(authentication);
+            resolved = new Resolved(authentication, authorization);
+            return authorization;
+        }
+
+    }
+
+    private record Resolved(Authentication authentication, FlytAuthorization authorization) {
+    }
+
+}
@@ -0,0 +1,45 @@
+package no.novari.flyt.resourceserver.security;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent requests for the same key into a single in-flight request. Every subscriber that arrives
+ * while a request for the key is pending receives the result of that request; the next subscriber after it has
+ * terminated triggers a new one. Results are not retained beyond the lifetime of the request.
+ * <p>
+ * The shared request is cancelled only when every subscriber waiting for it has cancelled, so a caller giving up
+ * early does not affect the others, while a request nobody waits for any more does not keep running.
+ */
+public class InFlightRequestCoalescer<K, V> {
+
+    private final Map<K, Mono<V>> inFlightRequestPerKey = new ConcurrentHashMap<>();
+
+    public Mono<V> coalesce(K key, Function<K, Mono<V>> request) {
+        return Mono.defer(() -> inFlightRequestPerKey.computeIfAbsent(key, k -> createInFlightRequest(k, request)));
+    }
+
+    /**
+     * The request only removes itself from the map, so that a request finishing late never removes a newer request
+     * for the same key.
+     */
+    private Mono<V> createInFlightRequest(K key, Function<K, Mono<V>> request) {
+        AtomicReference<Mono<V>> inFlightRequest = new AtomicReference<>();
+        inFlightRequest.set(request.apply(key)
+                .doFinally(signalType -> inFlightRequestPerKey.remove(key, inFlightRequest.get()))
+                .flux()
+                .replay(1)
+                .refCount(1)
+                .next());
+        return inFlightRequest.get();
+    }
+
+    public int size() {
+        return inFlightRequestPerKey.size();
+    }
+
+}
@@ -7,18 +7,41 @@ import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApp
 import no.novari.flyt.resourceserver.security.properties.InternalApiSecurityProperties;
 import no.novari.flyt.resourceserver.security.user.UserJwtConverter;
 import no.novari.flyt.resourceserver.security.user.UserRoleAuthorityMappingService;
+import no.novari.flyt.resourceserver.security.user.UserRoleAuthorityTable;
 import no.novari.flyt.resourceserver.security.user.UserRoleFilteringService;
 import no.novari.flyt.resourceserver.security.user.UserRoleHierarchyService;
+import no.novari.flyt.resourceserver.security.user.permission.CompactUserPermissionStore;
+import no.novari.flyt.resourceserver.security.user.permission.FintCacheUserPermissionStore;
+import no.novari.flyt.resourceserver.security.user.permission.OnDemandUserPermissionProvider;
+import no.novari.flyt.resourceserver.security.user.permission.OnDemandUserPermissionStore;
+import no.novari.flyt.resourceserver.security.user.permission.StoredUserPermissionProvider;
 import no.novari.flyt.resourceserver.security.user.permission.UserPermission;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionBatchIngester;
 import no.novari.flyt.resourceserver.security.user.permission.UserPermissionCachingListenerFactory;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionCatchUpHealthIndicator;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionCatchUpMetrics;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionCatchUpTracker;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionConsumedOffsets;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionProvider;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionRebalanceListener;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionRequestService;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionSnapshotService;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionStore;
 import no.novari.kafka.consuming.ErrorHandlerFactory;
 import no.novari.kafka.consuming.ParameterizedListenerContainerFactoryService;
+import no.novari.kafka.requestreply.RequestTemplateFactory;
+import no.novari.kafka.requestreply.topic.ReplyTopicService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.util.UUID;
 
@@ -41,59 +64,272 @@ public class InternalUserApiConfiguration {
         return new UserRoleFilteringService(internalApiSecurityProperties);
     }
 
-    @Bean
-    FintCache<UUID, UserPermission> userPermissionCache(FintCacheManager fintCacheManager) {
-        return fintCacheManager.createCache(
-                "userpermission",
-                UUID.class,
-                UserPermission.class,
-                FintCacheOptions
-                        .builder()
-                        .timeToLive(Duration.ofMillis(9223372036854775807L))
-                        .heapSize(1000000L)
-                        .build()
-        );
-    }
-
     @Bean
     UserRoleAuthorityMappingService userRoleAuthorityMappingService(AuthorityMappingService authorityMappingService) {
         return new UserRoleAuthorityMappingService(authorityMappingService);
     }
 
     @Bean
-    UserRoleHierarchyService userRoleHierarchyService() {
-        return new UserRoleHierarchyService();
+    UserRoleHierarchyService userRoleHierarchyService(InternalApiSecurityProperties internalApiSecurityProperties) {
+        return internalApiSecurityProperties.getImpliedRolesPerRole() == null
+                ? new UserRoleHierarchyService()
+                : new UserRoleHierarchyService(internalApiSecurityProperties.getImpliedRolesPerRole());
     }
 
 
     @Bean
-    UserJwtConverter userJwtConverter(
-            FintCache<UUID, UserPermission> userPermissionCache,
+    UserRoleAuthorityTable userRoleAuthorityTable(
             UserRoleFilteringService userRoleFilteringService,
-            SourceApplicationAuthorityMappingService sourceApplicationAuthorityMappingService,
             UserRoleHierarchyService userRoleHierarchyService,
             UserRoleAuthorityMappingService userRoleAuthorityMappingService
     ) {
-        return new UserJwtConverter(
-                userPermissionCache,
+        return new UserRoleAuthorityTable(
                 userRoleFilteringService,
-                sourceApplicationAuthorityMappingService,
                 userRoleHierarchyService,
                 userRoleAuthorityMappingService
         );
     }
 
+    @Bean
+    UserJwtConverter userJwtConverter(
+            UserPermissionProvider userPermissionProvider,
+            SourceApplicationAuthorityMappingService sourceApplicationAuthorityMappingService,
+            UserRoleAuthorityTable userRoleAuthorityTable
+    ) {
+        return new UserJwtConverter(
+                userPermissionProvider,
+                sourceApplicationAuthorityMappingService,
+                userRoleAuthorityTable
+        );
+    }
+
+    @Bean
+    UserPermissionConsumedOffsets userPermissionConsumedOffsets() {
+        return new UserPermissionConsumedOffsets();
+    }
+
+    @Bean
+    UserPermissionCatchUpTracker userPermissionCatchUpTracker(
+            UserPermissionConsumedOffsets userPermissionConsumedOffsets
+    ) {
+        return new UserPermissionCatchUpTracker(userPermissionConsumedOffsets, Clock.systemUTC());
+    }
+
+    @Bean
+    @ConditionalOnProperty(
+            prefix = "novari.flyt.resource-server.security.api",
+            value = "internal.user-permission-snapshot.enabled",
+            havingValue = "true"
+    )
+    UserPermissionSnapshotService userPermissionSnapshotService(
+            InternalApiSecurityProperties internalApiSecurityProperties,
+            UserPermissionStore userPermissionStore,
+            UserPermissionConsumedOffsets userPermissionConsumedOffsets
+    ) {
+        return new UserPermissionSnapshotService(
+                internalApiSecurityProperties.getUserPermissionSnapshot(),
+                userPermissionStore,
+                userPermissionConsumedOffsets,
+                Schedulers.boundedElastic(),
+                Clock.systemUTC()
+        );
+    }
+
+    @Bean
+    UserPermissionBatchIngester userPermissionBatchIngester(
+            UserPermissionStore userPermissionStore,
+            UserPermissionConsumedOffsets userPermissionConsumedOffsets,
+            UserPermissionCatchUpTracker userPermissionCatchUpTracker,
+            VerifiedTokenCache verifiedTokenCache,
+            InternalApiSecurityProperties internalApiSecurityProperties
+    ) {
+        return new UserPermissionBatchIngester(
+                userPermissionStore,
+                userPermissionConsumedOffsets,
+                userPermissionCatchUpTracker,
+                verifiedTokenCache,
+                internalApiSecurityProperties.getUserPermissionIngestion()
+        );
+    }
+
     @Bean("userPermissionCachingListener")
     ConcurrentMessageListenerContainer<String, UserPermission> userPermissionCachingListener(
             ParameterizedListenerContainerFactoryService containerFactoryService,
-            FintCache<UUID, UserPermission> userPermissionCache,
+            UserPermissionBatchIngester userPermissionBatchIngester,
+            UserPermissionConsumedOffsets userPermissionConsumedOffsets,
+            InternalApiSecurityProperties internalApiSecurityProperties,
+            UserPermissionStore userPermissionStore,
+            UserPermissionCatchUpTracker userPermissionCatchUpTracker,
             ErrorHandlerFactory errorHandlerFactory
     ) {
         return new UserPermissionCachingListenerFactory().create(
                 containerFactoryService,
-                userPermissionCache,
+                userPermissionBatchIngester,
+                userPermissionConsumedOffsets,
+                getUserPermissionStartPosition(internalApiSecurityProperties, userPermissionStore),
+                userPermissionCatchUpTracker,
                 errorHandlerFactory
         );
     }
 
+    private static UserPermissionRebalanceListener.StartPosition getUserPermissionStartPosition(
+            InternalApiSecurityProperties internalApiSecurityProperties,
+            UserPermissionStore userPermissionStore
+    ) {
+        if (!userPermissionStore.holdsAllUserPermissions()) {
+            return UserPermissionRebalanceListener.StartPosition.END;
+        }
+        return internalApiSecurityProperties.getUserPermissionSnapshot().isEnabled()
+                ? UserPermissionRebalanceListener.StartPosition.CONSUMED_OFFSETS
+                : UserPermissionRebalanceListener.StartPosition.BEGINNING;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(
+            prefix = "novari.flyt.resource-server.security.api",
+            value = "internal.user-permission-store.type",
+            havingValue = "fint-cache",
+            matchIfMissing = true
+    )
+    static class FintCacheUserPermissionStoreConfiguration {
+
+        @Bean
+        FintCache<UUID, UserPermission> userPermissionCache(FintCacheManager fintCacheManager) {
+            return fintCacheManager.createCache(
+                    "userpermission",
+                    UUID.class,
+                    UserPermission.class,
+                    FintCacheOptions
+                            .builder()
+                            .timeToLive(Duration.ofMillis(9223372036854775807L))
+                            .heapSize(1000000L)
+                            .build()
+            );
+        }
+
+        @Bean
+        UserPermissionStore userPermissionStore(FintCache<UUID, UserPermission> userPermissionCache) {
+            return new FintCacheUserPermissionStore(userPermissionCache);
+        }
+
+        @Bean
+        UserPermissionProvider userPermissionProvider(UserPermissionStore userPermissionStore) {
+            return new StoredUserPermissionProvider(userPermissionStore);
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(
+            prefix = "novari.flyt.resource-server.security.api",
+            value = "internal.user-permission-store.type",
+            havingValue = "compact"
+    )
+    static class CompactUserPermissionStoreConfiguration {
+
+        @Bean
+        UserPermissionStore userPermissionStore(InternalApiSecurityProperties internalApiSecurityProperties) {
+            return new CompactUserPermissionStore(
+                    internalApiSecurityProperties.getUserPermissionStore().getInitialCapacity()
+            );
+        }
+
+        @Bean
+        UserPermissionProvider userPermissionProvider(UserPermissionStore userPermissionStore) {
+            return new StoredUserPermissionProvider(userPermissionStore);
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(
+            prefix = "novari.flyt.resource-server.security.api",
+            value = "internal.user-permission-store.type",
+            havingValue = "on-demand"
+    )
+    static class OnDemandUserPermissionStoreConfiguration {
+
+        @Bean
+        OnDemandUserPermissionStore userPermissionStore(InternalApiSecurityProperties internalApiSecurityProperties) {
+            return new OnDemandUserPermissionStore(
+                    internalApiSecurityProperties.getUserPermissionStore().getMaxEntries()
+            );
+        }
+
+        @Bean
+        RequestCircuitBreaker userPermissionCircuitBreaker(
+                InternalApiSecurityProperties internalApiSecurityProperties
+        ) {
+            return new RequestCircuitBreaker(
+                    "userPermission",
+                    internalApiSecurityProperties.getUserPermissionStore().getCircuitBreaker(),
+                    Clock.systemUTC()
+            );
+        }
+
+        @Bean
+        RequestBulkhead userPermissionBulkhead(InternalApiSecurityProperties internalApiSecurityProperties) {
+            return new RequestBulkhead(
+                    "userPermission",
+                    internalApiSecurityProperties.getUserPermissionStore().getMaxConcurrentRequests()
+            );
+        }
+
+        @Bean
+        UserPermissionRequestService userPermissionRequestService(
+                @Value("${novari.kafka.application-id}") String applicationId,
+                InternalApiSecurityProperties internalApiSecurityProperties,
+                RequestCircuitBreaker userPermissionCircuitBreaker,
+                RequestBulkhead userPermissionBulkhead,
+                RequestTemplateFactory requestTemplateFactory,
+                ReplyTopicService replyTopicService
+        ) {
+            return new UserPermissionRequestService(
+                    applicationId,
+                    internalApiSecurityProperties.getUserPermissionStore(),
+                    userPermissionCircuitBreaker,
+                    userPermissionBulkhead,
+                    requestTemplateFactory,
+                    replyTopicService
+            );
+        }
+
+        @Bean
+        UserPermissionProvider userPermissionProvider(
+                OnDemandUserPermissionStore userPermissionStore,
+                UserPermissionRequestService userPermissionRequestService
+        ) {
+            return new OnDemandUserPermissionProvider(userPermissionStore, userPermissionRequestService);
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+    static class HealthConfiguration {
+
+        @Bean
+        UserPermissionCatchUpHealthIndicator userPermissionCatchUpHealthIndicator(
+                UserPermissionCatchUpTracker userPermissionCatchUpTracker,
+                UserPermissionStore userPermissionStore
+        ) {
+            return new UserPermissionCatchUpHealthIndicator(userPermissionCatchUpTracker, userPermissionStore);
+        }
+
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class MetricsConfiguration {
+
+        @Bean
+        UserPermissionCatchUpMetrics userPermissionCatchUpMetrics(
+                UserPermissionCatchUpTracker userPermissionCatchUpTracker,
+                UserPermissionStore userPermissionStore
+        ) {
+            return new UserPermissionCatchUpMetrics(userPermissionCatchUpTracker, userPermissionStore);
+        }
+
+    }
+
 }
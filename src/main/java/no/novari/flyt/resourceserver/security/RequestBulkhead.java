@@ -0,0 +1,86 @@
+package no.novari.flyt.resourceserver.security;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of concurrently executing requests. Requests arriving while every permit is taken are rejected
+ * immediately with {@link RequestNotPermittedException} instead of queueing, so that a slow downstream service
+ * cannot build up an unbounded backlog of waiting callers.
+ */
+public class RequestBulkhead {
+
+    private static final int BLOCKING_CALL_PENDING = 0;
+    private static final int BLOCKING_CALL_RUNNING = 1;
+    private static final int BLOCKING_CALL_DONE = 2;
+
+    private final String name;
+    private final int maxConcurrentRequests;
+    private final Semaphore permits;
+
+    public RequestBulkhead(String name, int maxConcurrentRequests) {
+        this.name = name;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.permits = new Semaphore(maxConcurrentRequests);
+    }
+
+    public <V> Mono<V> protect(Supplier<Mono<V>> request) {
+        return Mono.defer(() -> {
+            if (!permits.tryAcquire()) {
+                return Mono.error(new RequestNotPermittedException(
+                        "Bulkhead '" + name + "' is full with " + maxConcurrentRequests + " concurrent requests"
+                ));
+            }
+            return Mono.defer(request).doFinally(signalType -> permits.release());
+        });
+    }
+
+    /**
+     * Runs a blocking call on the given scheduler. Unlike {@link #protect(Supplier)}, the permit is held until the
+     * call returns, even when the subscriber cancels while it is running, since a blocking call is not guaranteed to
+     * stop when its thread is interrupted. A call cancelled before it has started is never run, and its permit is
+     * released at once.
+     */
+    public <V> Mono<V> protectBlocking(Callable<V> call, Scheduler scheduler) {
+        return Mono.defer(() -> {
+            if (!permits.tryAcquire()) {
+                return Mono.error(new RequestNotPermittedException(
+                        "Bulkhead '" + name + "' is full with " + maxConcurrentRequests + " concurrent requests"
+                ));
+            }
+            AtomicInteger callState = new AtomicInteger(BLOCKING_CALL_PENDING);
+            return Mono
+                    .fromCallable(() -> {
+                        if (!callState.compareAndSet(BLOCKING_CALL_PENDING, BLOCKING_CALL_RUNNING)) {
+                            return null;
+                        }
+                        try {
+                            return call.call();
+                        } finally {
+                            callState.set(BLOCKING_CALL_DONE);
+                            permits.release();
+                        }
+                    })
+                    .subscribeOn(scheduler)
+                    .doFinally(signalType -> {
+                        if (callState.compareAndSet(BLOCKING_CALL_PENDING, BLOCKING_CALL_DONE)) {
+                            permits.release();
+                        }
+                    });
+        });
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public int getAvailableConcurrentRequests() {
+        return permits.availablePermits();
+    }
+
+}
@@ -0,0 +1,178 @@
+package no.novari.flyt.resourceserver.security;
+
+import lombok.extern.slf4j.Slf4j;
+import no.novari.flyt.resourceserver.security.properties.CircuitBreakerProperties;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Count-based circuit breaker for reactive requests. Outcomes of the last {@code slidingWindowSize} calls are
+ * recorded, where calls that fail or take longer than {@code slowCallDuration} count as failures. Once at least
+ * {@code minimumNumberOfCalls} have been recorded and the failure rate reaches {@code failureRateThreshold} percent,
+ * the breaker opens and rejects calls with {@link RequestNotPermittedException} without invoking the request.
+ * After {@code waitDurationInOpenState} a limited number of probe calls are let through; the breaker closes when all
+ * of them succeed and opens again on the first failure.
+ * <p>
+ * Requests rejected downstream with {@link RequestNotPermittedException}, such as by a full bulkhead, never reached
+ * the protected service and are not recorded.
+ * <p>
+ * Calls cancelled by the caller, such as by a request deadline or by a hedged request that completed first, are
+ * recorded as slow failures once they have run for at least {@code slowCallDuration}, so that a hung service still
+ * opens the breaker when callers give up before it replies. Calls cancelled earlier are not recorded.
+ */
+@Slf4j
+public class RequestCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final CircuitBreakerProperties properties;
+    private final Clock clock;
+
+    private final boolean[] failedCalls;
+    private State state = State.CLOSED;
+    private int nextCallIndex;
+    private int numberOfRecordedCalls;
+    private int numberOfFailedCalls;
+    private long openedAtMillis;
+    private int numberOfPermittedProbeCalls;
+    private int numberOfSuccessfulProbeCalls;
+
+    public RequestCircuitBreaker(String name, CircuitBreakerProperties properties, Clock clock) {
+        this.name = name;
+        this.properties = properties;
+        this.clock = clock;
+        this.failedCalls = new boolean[properties.getSlidingWindowSize()];
+    }
+
+    public <V> Mono<V> protect(Supplier<Mono<V>> request) {
+        if (!properties.isEnabled()) {
+            return Mono.defer(request);
+        }
+        return Mono.defer(() -> {
+            if (!tryAcquirePermission()) {
+                return Mono.error(new RequestNotPermittedException("Circuit breaker '" + name + "' is open"));
+            }
+            long startedAtMillis = clock.millis();
+            return Mono.defer(request)
+                    .doOnSuccess(value -> onResult(isSlow(startedAtMillis)))
+                    .doOnError(error -> {
+                        if (error instanceof RequestNotPermittedException) {
+                            onNotRecorded();
+                        } else {
+                            onResult(true);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (isSlow(startedAtMillis)) {
+                            onResult(true);
+                        } else {
+                            onNotRecorded();
+                        }
+                    });
+        });
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && isWaitInOpenStateOver()) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized int getNumberOfRecordedCalls() {
+        return numberOfRecordedCalls;
+    }
+
+    public synchronized int getNumberOfFailedCalls() {
+        return numberOfFailedCalls;
+    }
+
+    private synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (!isWaitInOpenStateOver()) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (numberOfPermittedProbeCalls >= properties.getPermittedCallsInHalfOpenState()) {
+                return false;
+            }
+            numberOfPermittedProbeCalls++;
+        }
+        return true;
+    }
+
+    private synchronized void onResult(boolean failed) {
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                transitionTo(State.OPEN);
+            } else if (++numberOfSuccessfulProbeCalls >= properties.getPermittedCallsInHalfOpenState()) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        record(failed);
+        if (numberOfRecordedCalls >= properties.getMinimumNumberOfCalls()
+            && numberOfFailedCalls * 100 >= properties.getFailureRateThreshold() * numberOfRecordedCalls) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private synchronized void onNotRecorded() {
+        if (state == State.HALF_OPEN && numberOfPermittedProbeCalls > 0) {
+            numberOfPermittedProbeCalls--;
+        }
+    }
+
+    private void record(boolean failed) {
+        if (numberOfRecordedCalls == failedCalls.length) {
+            if (failedCalls[nextCallIndex]) {
+                numberOfFailedCalls--;
+            }
+        } else {
+            numberOfRecordedCalls++;
+        }
+        failedCalls[nextCallIndex] = failed;
+        if (failed) {
+            numberOfFailedCalls++;
+        }
+        nextCallIndex = (nextCallIndex + 1) % failedCalls.length;
+    }
+
+    private void transitionTo(State newState) {
+        log.info("Circuit breaker '{}' transitioned from {} to {}", name, state, newState);
+        state = newState;
+        numberOfPermittedProbeCalls = 0;
+        numberOfSuccessfulProbeCalls = 0;
+        if (newState == State.OPEN) {
+            openedAtMillis = clock.millis();
+        }
+        if (newState == State.CLOSED) {
+            Arrays.fill(failedCalls, false);
+            nextCallIndex = 0;
+            numberOfRecordedCalls = 0;
+            numberOfFailedCalls = 0;
+        }
+    }
+
+    private boolean isWaitInOpenStateOver() {
+        return clock.millis() - openedAtMillis >= properties.getWaitDurationInOpenState().toMillis();
+    }
+
+    private boolean isSlow(long startedAtMillis) {
+        return clock.millis() - startedAtMillis >= properties.getSlowCallDuration().toMillis();
+    }
+
+}
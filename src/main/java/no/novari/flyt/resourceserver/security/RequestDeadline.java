@@ -0,0 +1,53 @@
+package no.novari.flyt.resourceserver.security;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Carries the point in time after which the caller of the current exchange is no longer waiting for a response.
+ * The deadline is stored in the Reactor context by {@link RequestDeadlineWebFilter}, so it is visible to every
+ * operator downstream of the filter, including JWT converters and host application handlers.
+ */
+public final class RequestDeadline {
+
+    private static final String CONTEXT_KEY = RequestDeadline.class.getName();
+
+    private RequestDeadline() {
+    }
+
+    public static Context put(Context context, Instant deadline) {
+        return get(context)
+                .filter(existingDeadline -> existingDeadline.isBefore(deadline))
+                .map(existingDeadline -> context)
+                .orElseGet(() -> context.put(CONTEXT_KEY, deadline));
+    }
+
+    public static Optional<Instant> get(ContextView contextView) {
+        return contextView.getOrEmpty(CONTEXT_KEY);
+    }
+
+    /**
+     * Fails the given Mono with a {@link TimeoutException} and cancels it once the deadline of the subscribing
+     * exchange has passed. Without a deadline in the context the Mono is returned unchanged.
+     */
+    public static <V> Mono<V> timeout(Mono<V> mono, Clock clock) {
+        return Mono.deferContextual(contextView -> get(contextView)
+                .map(deadline -> {
+                    Duration remaining = Duration.between(clock.instant(), deadline);
+                    if (remaining.isNegative() || remaining.isZero()) {
+                        return Mono.<V>error(new TimeoutException("Request deadline " + deadline + " has passed"));
+                    }
+                    return mono.timeout(remaining);
+                })
+                .orElse(mono)
+        );
+    }
+
+}
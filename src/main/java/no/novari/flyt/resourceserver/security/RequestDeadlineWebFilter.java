@@ -0,0 +1,28 @@
+package no.novari.flyt.resourceserver.security;
+
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+public class RequestDeadlineWebFilter implements WebFilter {
+
+    private final Duration requestBudget;
+    private final Clock clock;
+
+    public RequestDeadlineWebFilter(Duration requestBudget, Clock clock) {
+        this.requestBudget = requestBudget;
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Instant deadline = clock.instant().plus(requestBudget);
+        return chain.filter(exchange)
+                .contextWrite(context -> RequestDeadline.put(context, deadline));
+    }
+}
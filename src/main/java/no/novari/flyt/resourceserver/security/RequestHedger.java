@@ -0,0 +1,137 @@
+package no.novari.flyt.resourceserver.security;
+
+import no.novari.flyt.resourceserver.security.properties.HedgingProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second, hedged request when the first one has not completed within a delay derived from a percentile of
+ * recently observed latencies, and returns whichever completes first. The other request is cancelled.
+ * <p>
+ * Hedging starts once {@code minimumNumberOfSamples} latencies have been observed. Every request earns
+ * {@code maxHedgeRate} hedge credits and every hedged request spends one, so at most that fraction of requests is
+ * ever duplicated, even while the downstream service is uniformly slow. An error from the first request is
+ * propagated immediately; errors from the hedged request are ignored.
+ * <p>
+ * The latency of the first request is recorded however it ends. When it fails or is cancelled, such as by a request
+ * deadline or because the hedged request replied first, the time it had run is recorded as a lower bound of its
+ * latency, capped at the time left until the {@link RequestDeadline} of the subscribing exchange. Otherwise slow
+ * requests would never be sampled and the hedge delay would drift down. A cancelled hedged request is not recorded,
+ * since it started late and the first request is recorded instead. Requests rejected with
+ * {@link RequestNotPermittedException} never reached the downstream service and are not recorded.
+ */
+public class RequestHedger {
+
+    private static final int CREDIT_SCALE = 1000;
+    private static final int MAX_CREDITS = 10 * CREDIT_SCALE;
+    private static final int RECOMPUTE_DELAY_INTERVAL = 16;
+
+    private final HedgingProperties properties;
+    private final Scheduler scheduler;
+
+    private final long[] latencyNanos;
+    private int nextLatencyIndex;
+    private int numberOfLatencies;
+    private int latenciesSinceDelayComputation;
+    private Duration hedgeDelay;
+    private int hedgeCredits;
+
+    public RequestHedger(HedgingProperties properties, Scheduler scheduler) {
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.latencyNanos = new long[properties.getLatencyWindowSize()];
+    }
+
+    public <V> Mono<V> hedge(Supplier<Mono<V>> request) {
+        if (!properties.isEnabled()) {
+            return Mono.defer(request);
+        }
+        return Mono.defer(() -> {
+            Duration delay = earnCreditAndGetHedgeDelay();
+            Mono<Optional<V>> primary = timed(request, true);
+            if (delay == null) {
+                return primary.flatMap(Mono::justOrEmpty);
+            }
+            Mono<Optional<V>> hedged = Mono.delay(delay, scheduler)
+                    .filter(tick -> trySpendCredit())
+                    .flatMap(tick -> timed(request, false))
+                    .onErrorResume(error -> Mono.never())
+                    .switchIfEmpty(Mono.never());
+            return Flux.merge(primary, hedged)
+                    .next()
+                    .flatMap(Mono::justOrEmpty);
+        });
+    }
+
+    public synchronized Optional<Duration> getHedgeDelay() {
+        return Optional.ofNullable(hedgeDelay);
+    }
+
+    private <V> Mono<Optional<V>> timed(Supplier<Mono<V>> request, boolean recordLatencyWhenCancelled) {
+        return Mono.deferContextual(contextView -> {
+            long startedAtNanos = System.nanoTime();
+            long maxLatencyNanos = RequestDeadline.get(contextView)
+                    .map(deadline -> Math.max(0, Duration.between(Instant.now(), deadline).toNanos()))
+                    .orElse(Long.MAX_VALUE);
+            AtomicBoolean recorded = new AtomicBoolean();
+            Runnable recordElapsedLatency = () -> {
+                if (recorded.compareAndSet(false, true)) {
+                    recordLatency(Math.min(System.nanoTime() - startedAtNanos, maxLatencyNanos));
+                }
+            };
+            Mono<Optional<V>> timedRequest = Mono.defer(request)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .doOnSuccess(value -> recordElapsedLatency.run())
+                    .doOnError(error -> {
+                        if (!(error instanceof RequestNotPermittedException)) {
+                            recordElapsedLatency.run();
+                        }
+                    });
+            return recordLatencyWhenCancelled
+                    ? timedRequest.doOnCancel(recordElapsedLatency)
+                    : timedRequest;
+        });
+    }
+
+    private synchronized Duration earnCreditAndGetHedgeDelay() {
+        hedgeCredits = Math.min(MAX_CREDITS, hedgeCredits + (int) (properties.getMaxHedgeRate() * CREDIT_SCALE));
+        return hedgeDelay;
+    }
+
+    private synchronized boolean trySpendCredit() {
+        if (hedgeCredits < CREDIT_SCALE) {
+            return false;
+        }
+        hedgeCredits -= CREDIT_SCALE;
+        return true;
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencyNanos[nextLatencyIndex] = nanos;
+        nextLatencyIndex = (nextLatencyIndex + 1) % latencyNanos.length;
+        numberOfLatencies = Math.min(numberOfLatencies + 1, latencyNanos.length);
+        if (numberOfLatencies >= properties.getMinimumNumberOfSamples()
+            && (hedgeDelay == null || ++latenciesSinceDelayComputation >= RECOMPUTE_DELAY_INTERVAL)) {
+            hedgeDelay = computeHedgeDelay();
+            latenciesSinceDelayComputation = 0;
+        }
+    }
+
+    private Duration computeHedgeDelay() {
+        long[] sortedLatencyNanos = Arrays.copyOf(latencyNanos, numberOfLatencies);
+        Arrays.sort(sortedLatencyNanos);
+        int index = (int) Math.ceil(properties.getDelayPercentile() / 100 * sortedLatencyNanos.length) - 1;
+        long percentileNanos = sortedLatencyNanos[Math.clamp(index, 0, sortedLatencyNanos.length - 1)];
+        return Duration.ofNanos(Math.max(percentileNanos, properties.getMinDelay().toNanos()));
+    }
+
+}
@@ -0,0 +1,9 @@
+package no.novari.flyt.resourceserver.security;
+
+public class RequestNotPermittedException extends RuntimeException {
+
+    public RequestNotPermittedException(String message) {
+        super(message);
+    }
+
+}
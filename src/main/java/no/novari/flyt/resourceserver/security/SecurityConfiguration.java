@@ -6,24 +6,52 @@ import no.novari.flyt.resourceserver.security.client.internal.InternalClientJwtC
 import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorityMappingService;
 import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationJwtConverter;
 import no.novari.flyt.resourceserver.security.properties.ExternalApiSecurityProperties;
+import no.novari.flyt.resourceserver.security.properties.InternalApiSecurityProperties;
 import no.novari.flyt.resourceserver.security.properties.InternalClientApiSecurityProperties;
+import no.novari.flyt.resourceserver.security.properties.VerifiedTokenCacheProperties;
+import no.novari.flyt.resourceserver.security.user.UserClaim;
 import no.novari.flyt.resourceserver.security.user.UserJwtConverter;
 import no.novari.flyt.resourceserver.security.user.UserRole;
 import no.novari.flyt.resourceserver.security.user.UserRoleAuthorityMappingService;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.authorization.AuthorityReactiveAuthorizationManager;
+import org.springframework.security.authorization.ReactiveAuthorizationManager;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
 
 @EnableWebFluxSecurity
 @AutoConfiguration
 public class SecurityConfiguration {
 
+    @Bean
+    @ConfigurationProperties("novari.flyt.resource-server.security.verified-token-cache")
+    VerifiedTokenCacheProperties verifiedTokenCacheProperties() {
+        return new VerifiedTokenCacheProperties();
+    }
+
+    @Bean
+    VerifiedTokenCache verifiedTokenCache(VerifiedTokenCacheProperties verifiedTokenCacheProperties) {
+        return new VerifiedTokenCache(verifiedTokenCacheProperties, Clock.systemUTC());
+    }
+
     @Order(0)
     @Bean
     SecurityWebFilterChain actuatorSecurityFilterChain(
@@ -38,17 +66,25 @@ public class SecurityConfiguration {
     @ConditionalOnBean(InternalUserApiConfiguration.class)
     SecurityWebFilterChain internalAdminApiFilterChain(
             ServerHttpSecurity http,
+            InternalApiSecurityProperties internalApiSecurityProperties,
             UserJwtConverter userJwtConverter,
             UserRoleAuthorityMappingService userRoleAuthorityMappingService,
-            SecurityWebFilterChainFactoryService securityWebFilterChainFactoryService
+            SecurityWebFilterChainFactoryService securityWebFilterChainFactoryService,
+            VerifiedTokenCache verifiedTokenCache,
+            ObjectProvider<ReactiveJwtDecoder> jwtDecoder
     ) {
-        return securityWebFilterChainFactoryService.createFilterChain(
+        return createJwtFilterChain(
+                securityWebFilterChainFactoryService,
                 http,
                 UrlPaths.INTERNAL_ADMIN_API,
                 userJwtConverter,
+                SecurityConfiguration::userPrincipal,
                 AuthorityReactiveAuthorizationManager.hasAuthority(
                         userRoleAuthorityMappingService.createRoleAuthorityString(UserRole.ADMIN)
-                )
+                ),
+                internalApiSecurityProperties.getRequestBudget(),
+                verifiedTokenCache,
+                jwtDecoder
         );
     }
 
@@ -57,17 +93,25 @@ public class SecurityConfiguration {
     @ConditionalOnBean(InternalUserApiConfiguration.class)
     SecurityWebFilterChain internalUserApiFilterChain(
             ServerHttpSecurity http,
+            InternalApiSecurityProperties internalApiSecurityProperties,
             UserJwtConverter userJwtConverter,
             UserRoleAuthorityMappingService userRoleAuthorityMappingService,
-            SecurityWebFilterChainFactoryService securityWebFilterChainFactoryService
+            SecurityWebFilterChainFactoryService securityWebFilterChainFactoryService,
+            VerifiedTokenCache verifiedTokenCache,
+            ObjectProvider<ReactiveJwtDecoder> jwtDecoder
     ) {
-        return securityWebFilterChainFactoryService.createFilterChain(
+        return createJwtFilterChain(
+                securityWebFilterChainFactoryService,
                 http,
                 UrlPaths.INTERNAL_API,
                 userJwtConverter,
+                SecurityConfiguration::userPrincipal,
                 AuthorityReactiveAuthorizationManager.hasAuthority(
                         userRoleAuthorityMappingService.createRoleAuthorityString(UserRole.USER)
-                )
+                ),
+                internalApiSecurityProperties.getRequestBudget(),
+                verifiedTokenCache,
+                jwtDecoder
         );
     }
 
@@ -89,17 +133,24 @@ public class SecurityConfiguration {
             InternalClientApiSecurityProperties internalClientApiSecurityProperties,
             InternalClientJwtConverter internalClientJwtConverter,
             InternalClientAuthorityMappingService internalClientAuthorityMappingService,
-            SecurityWebFilterChainFactoryService securityWebFilterChainFactoryService
+            SecurityWebFilterChainFactoryService securityWebFilterChainFactoryService,
+            VerifiedTokenCache verifiedTokenCache,
+            ObjectProvider<ReactiveJwtDecoder> jwtDecoder
     ) {
-        return securityWebFilterChainFactoryService.createFilterChain(
+        return createJwtFilterChain(
+                securityWebFilterChainFactoryService,
                 http,
                 UrlPaths.INTERNAL_CLIENT_API,
                 internalClientJwtConverter,
+                SecurityConfiguration::clientPrincipal,
                 AuthorityReactiveAuthorizationManager.hasAnyAuthority(
                         internalClientAuthorityMappingService.createInternalClientIdAuthorityStrings(
                                 internalClientApiSecurityProperties.getAuthorizedClientIds()
                         ).toArray(new String[0])
-                )
+                ),
+                internalClientApiSecurityProperties.getRequestBudget(),
+                verifiedTokenCache,
+                jwtDecoder
         );
     }
 
@@ -121,18 +172,24 @@ public class SecurityConfiguration {
             ExternalApiSecurityProperties externalApiSecurityProperties,
             SourceApplicationJwtConverter sourceApplicationJwtConverter,
             SourceApplicationAuthorityMappingService sourceApplicationAuthorityMappingService,
-            SecurityWebFilterChainFactoryService securityWebFilterChainFactoryService
+            SecurityWebFilterChainFactoryService securityWebFilterChainFactoryService,
+            VerifiedTokenCache verifiedTokenCache,
+            ObjectProvider<ReactiveJwtDecoder> jwtDecoder
     ) {
-        return securityWebFilterChainFactoryService.createFilterChain(
+        return createJwtFilterChain(
+                securityWebFilterChainFactoryService,
                 http,
                 UrlPaths.EXTERNAL_API,
                 sourceApplicationJwtConverter,
+                SecurityConfiguration::clientPrincipal,
                 AuthorityReactiveAuthorizationManager.hasAnyAuthority(
                         sourceApplicationAuthorityMappingService.createSourceApplicationAuthorityStrings(
                                 externalApiSecurityProperties.getAuthorizedSourceApplicationIds()
                         ).toArray(new String[0])
-                )
-
+                ),
+                externalApiSecurityProperties.getRequestBudget(),
+                verifiedTokenCache,
+                jwtDecoder
         );
     }
 
@@ -145,4 +202,53 @@ public class SecurityConfiguration {
         return securityWebFilterChainFactoryService.denyAll(http);
     }
 
+    private static SecurityWebFilterChain createJwtFilterChain(
+            SecurityWebFilterChainFactoryService securityWebFilterChainFactoryService,
+            ServerHttpSecurity http,
+            String path,
+            Converter<Jwt, Mono<AbstractAuthenticationToken>> converter,
+            Function<Jwt, String> principalExtractor,
+            ReactiveAuthorizationManager<AuthorizationContext> manager,
+            Duration requestBudget,
+            VerifiedTokenCache verifiedTokenCache,
+            ObjectProvider<ReactiveJwtDecoder> jwtDecoder
+    ) {
+        ReactiveJwtDecoder reactiveJwtDecoder = verifiedTokenCache.isEnabled() ? jwtDecoder.getIfAvailable() : null;
+        if (reactiveJwtDecoder == null) {
+            return securityWebFilterChainFactoryService.createFilterChain(
+                    http,
+                    path,
+                    converter,
+                    manager,
+                    requestBudget
+            );
+        }
+        return securityWebFilterChainFactoryService.createFilterChain(
+                http,
+                path,
+                new VerifiedTokenCachingAuthenticationManager(
+                        path,
+                        reactiveJwtDecoder,
+                        converter,
+                        verifiedTokenCache,
+                        principalExtractor
+                ),
+                manager,
+                requestBudget
+        );
+    }
+
+    private static String userPrincipal(Jwt jwt) {
+        String objectIdentifier = jwt.getClaimAsString(UserClaim.OBJECT_IDENTIFIER.getTokenClaimName());
+        return objectIdentifier == null
+                ? null
+                : VerifiedTokenCache.userPrincipal(UUID.fromString(objectIdentifier));
+    }
+
+    private static String clientPrincipal(Jwt jwt) {
+        return jwt.getSubject() == null
+                ? null
+                : VerifiedTokenCache.clientPrincipal(jwt.getSubject());
+    }
+
 }
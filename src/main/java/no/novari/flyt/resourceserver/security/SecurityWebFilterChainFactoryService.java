@@ -2,7 +2,9 @@ package no.novari.flyt.resourceserver.security;
 
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authorization.ReactiveAuthorizationManager;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.oauth2.jwt.Jwt;
@@ -12,6 +14,9 @@ import org.springframework.security.web.server.util.matcher.PathPatternParserSer
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.time.Clock;
+import java.time.Duration;
+
 @Service
 public class SecurityWebFilterChainFactoryService {
 
@@ -21,11 +26,58 @@ public class SecurityWebFilterChainFactoryService {
             Converter<Jwt, Mono<AbstractAuthenticationToken>> converter,
             ReactiveAuthorizationManager<AuthorizationContext> manager
     ) {
+        return createFilterChain(http, path, converter, manager, null);
+    }
+
+    public SecurityWebFilterChain createFilterChain(
+            ServerHttpSecurity http,
+            String path,
+            Converter<Jwt, Mono<AbstractAuthenticationToken>> converter,
+            ReactiveAuthorizationManager<AuthorizationContext> manager,
+            Duration requestBudget
+    ) {
+        return createFilterChain(
+                http,
+                path,
+                jwtSpec -> jwtSpec.jwtAuthenticationConverter(converter),
+                manager,
+                requestBudget
+        );
+    }
+
+    public SecurityWebFilterChain createFilterChain(
+            ServerHttpSecurity http,
+            String path,
+            ReactiveAuthenticationManager authenticationManager,
+            ReactiveAuthorizationManager<AuthorizationContext> manager,
+            Duration requestBudget
+    ) {
+        return createFilterChain(
+                http,
+                path,
+                jwtSpec -> jwtSpec.authenticationManager(authenticationManager),
+                manager,
+                requestBudget
+        );
+    }
+
+    private SecurityWebFilterChain createFilterChain(
+            ServerHttpSecurity http,
+            String path,
+            Customizer<ServerHttpSecurity.OAuth2ResourceServerSpec.JwtSpec> jwtCustomizer,
+            ReactiveAuthorizationManager<AuthorizationContext> manager,
+            Duration requestBudget
+    ) {
+        if (requestBudget != null) {
+            http.addFilterBefore(
+                    new RequestDeadlineWebFilter(requestBudget, Clock.systemUTC()),
+                    SecurityWebFiltersOrder.AUTHENTICATION
+            );
+        }
+        http.addFilterBefore(new FlytAuthorizationMemoWebFilter(), SecurityWebFiltersOrder.AUTHENTICATION);
         return addCommonConfig(http)
                 .securityMatcher(new PathPatternParserServerWebExchangeMatcher(path + "/**"))
-                .oauth2ResourceServer(resourceServer -> resourceServer
-                        .jwt(jwtSpec -> jwtSpec.jwtAuthenticationConverter(converter))
-                )
+                .oauth2ResourceServer(resourceServer -> resourceServer.jwt(jwtCustomizer))
                 .authorizeExchange(exchange -> exchange.anyExchange().access(manager))
                 .build();
     }
@@ -0,0 +1,128 @@
+package no.novari.flyt.resourceserver.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable authorities of a user: other authorities, such as role authorities, followed by a source application
+ * authority per ID in a sorted {@code long[]}. The other authorities come first so that authority-based authorization
+ * managers, which stop at the first matching authority, usually find role authorities without creating any source
+ * application authority. Creating the collection allocates nothing per source application: source application
+ * authorities are only created while iterating, and {@link #contains(Object)} answers them by parsing the ID from the
+ * authority string.
+ * <p>
+ * The other authorities must not contain source application authorities.
+ */
+public final class SourceApplicationGrantedAuthorities extends AbstractCollection<GrantedAuthority> {
+
+    private static final long[] NO_SOURCE_APPLICATION_IDS = new long[0];
+
+    private final String sourceApplicationAuthorityPrefix;
+    private final long[] sortedSourceApplicationIds;
+    private final Collection<? extends GrantedAuthority> otherAuthorities;
+
+    /**
+     * @param sourceApplicationAuthorityPrefix prefix of source application authorities, followed by the ID
+     * @param sortedSourceApplicationIds       sorted source application IDs, which are kept without copying and must
+     *                                         not be modified afterwards
+     * @param otherAuthorities                 immutable authorities that are not source application authorities
+     */
+    public SourceApplicationGrantedAuthorities(
+            String sourceApplicationAuthorityPrefix,
+            long[] sortedSourceApplicationIds,
+            Collection<? extends GrantedAuthority> otherAuthorities
+    ) {
+        this.sourceApplicationAuthorityPrefix = sourceApplicationAuthorityPrefix;
+        this.sortedSourceApplicationIds = sortedSourceApplicationIds == null
+                ? NO_SOURCE_APPLICATION_IDS
+                : sortedSourceApplicationIds;
+        this.otherAuthorities = otherAuthorities;
+    }
+
+    @Override
+    public int size() {
+        return otherAuthorities.size() + sortedSourceApplicationIds.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return sortedSourceApplicationIds.length == 0 && otherAuthorities.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        if (object instanceof SimpleGrantedAuthority simpleGrantedAuthority) {
+            String authority = simpleGrantedAuthority.getAuthority();
+            if (authority.startsWith(sourceApplicationAuthorityPrefix)) {
+                return containsSourceApplicationAuthority(authority);
+            }
+            return otherAuthorities.contains(object);
+        }
+        return super.contains(object);
+    }
+
+    private boolean containsSourceApplicationAuthority(String authority) {
+        String idString = authority.substring(sourceApplicationAuthorityPrefix.length());
+        long id;
+        try {
+            id = Long.parseLong(idString);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return Arrays.binarySearch(sortedSourceApplicationIds, id) >= 0
+               && Long.toString(id).length() == idString.length();
+    }
+
+    @Override
+    public Iterator<GrantedAuthority> iterator() {
+        Iterator<? extends GrantedAuthority> otherAuthoritiesIterator = otherAuthorities.iterator();
+        return new Iterator<>() {
+
+            private int sourceApplicationIdIndex;
+
+            @Override
+            public boolean hasNext() {
+                return otherAuthoritiesIterator.hasNext()
+                       || sourceApplicationIdIndex < sortedSourceApplicationIds.length;
+            }
+
+            @Override
+            public GrantedAuthority next() {
+                if (otherAuthoritiesIterator.hasNext()) {
+                    return otherAuthoritiesIterator.next();
+                }
+                if (sourceApplicationIdIndex >= sortedSourceApplicationIds.length) {
+                    throw new NoSuchElementException();
+                }
+                return new SimpleGrantedAuthority(
+                        sourceApplicationAuthorityPrefix + sortedSourceApplicationIds[sourceApplicationIdIndex++]
+                );
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof SourceApplicationGrantedAuthorities other)) {
+            return false;
+        }
+        return sourceApplicationAuthorityPrefix.equals(other.sourceApplicationAuthorityPrefix)
+               && Arrays.equals(sortedSourceApplicationIds, other.sortedSourceApplicationIds)
+               && otherAuthorities.equals(other.otherAuthorities);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(sortedSourceApplicationIds) + otherAuthorities.hashCode();
+    }
+
+}
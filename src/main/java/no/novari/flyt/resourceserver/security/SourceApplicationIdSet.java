@@ -0,0 +1,70 @@
+package no.novari.flyt.resourceserver.security;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of source application IDs for membership checks on primitive longs. Dense IDs are held in a bitset
+ * starting at the smallest ID; sparse IDs are looked up with a binary search in the sorted array.
+ */
+public final class SourceApplicationIdSet {
+
+    /**
+     * The bitset is used while it needs no more words than there are IDs, or at most this many words.
+     */
+    private static final int MIN_BITSET_WORDS = 64;
+
+    private static final SourceApplicationIdSet EMPTY = new SourceApplicationIdSet(new long[0], 0, null);
+
+    private final long[] sortedIds;
+    private final long offset;
+    private final long[] words;
+
+    private SourceApplicationIdSet(long[] sortedIds, long offset, long[] words) {
+        this.sortedIds = sortedIds;
+        this.offset = offset;
+        this.words = words;
+    }
+
+    /**
+     * @param sortedIds sorted IDs, which are kept without copying and must not be modified afterwards
+     */
+    public static SourceApplicationIdSet of(long[] sortedIds) {
+        if (sortedIds.length == 0) {
+            return EMPTY;
+        }
+        long offset = sortedIds[0];
+        long span = sortedIds[sortedIds.length - 1] - offset;
+        if (span < 0 || (span >>> 6) >= Math.max(sortedIds.length, MIN_BITSET_WORDS)) {
+            return new SourceApplicationIdSet(sortedIds, offset, null);
+        }
+        long[] words = new long[(int) (span >>> 6) + 1];
+        for (long id : sortedIds) {
+            long index = id - offset;
+            words[(int) (index >>> 6)] |= 1L << index;
+        }
+        return new SourceApplicationIdSet(sortedIds, offset, words);
+    }
+
+    public boolean contains(long id) {
+        if (words == null) {
+            return Arrays.binarySearch(sortedIds, id) >= 0;
+        }
+        if (id < offset) {
+            return false;
+        }
+        long index = id - offset;
+        if (index < 0 || (index >>> 6) >= words.length) {
+            return false;
+        }
+        return (words[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    public int size() {
+        return sortedIds.length;
+    }
+
+    public boolean isEmpty() {
+        return sortedIds.length == 0;
+    }
+
+}
@@ -0,0 +1,176 @@
+package no.novari.flyt.resourceserver.security;
+
+import lombok.extern.slf4j.Slf4j;
+import no.novari.flyt.resourceserver.security.properties.VerifiedTokenCacheProperties;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded cache of authentications produced from verified bearer tokens, keyed by the SHA-256 hash of the raw
+ * token so that tokens are never kept in memory. The hash may be prefixed with a scope, see
+ * {@link #hash(String, String)}. An entry lives until the token expires or the configured time to live has passed,
+ * whichever comes first. When the cache is full, expired entries are removed first, and then the entries that expire
+ * soonest, in batches of a sixteenth of the maximum number of entries so that a full cache is not sorted on every
+ * insert.
+ * <p>
+ * Every entry belongs to a principal, such as a user's object identifier or a client ID. Invalidating a principal
+ * bumps its epoch, which makes every entry cached for it under an earlier epoch a miss, so that changed user
+ * permissions or client authorizations take effect on the next request. Epochs are kept in a fixed number of
+ * stripes indexed by the principal's hash, so memory stays bounded however many principals are invalidated; a
+ * collision only invalidates a few extra entries.
+ */
+@Slf4j
+public class VerifiedTokenCache {
+
+    private static final String USER_PRINCIPAL_PREFIX = "user:";
+    private static final String CLIENT_PRINCIPAL_PREFIX = "client:";
+    private static final int NUMBER_OF_EPOCH_STRIPES = 1 << 16;
+    private static final int EVICTION_BATCH_DIVISOR = 16;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final VerifiedTokenCacheProperties properties;
+    private final Clock clock;
+    private final Map<String, CachedAuthentication> cachedAuthenticationPerTokenHash = new ConcurrentHashMap<>();
+    private final AtomicLongArray epochPerPrincipalStripe = new AtomicLongArray(NUMBER_OF_EPOCH_STRIPES);
+
+    public VerifiedTokenCache(VerifiedTokenCacheProperties properties, Clock clock) {
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    public static String userPrincipal(UUID objectIdentifier) {
+        return USER_PRINCIPAL_PREFIX + objectIdentifier;
+    }
+
+    public static String clientPrincipal(String clientId) {
+        return CLIENT_PRINCIPAL_PREFIX + clientId;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public Optional<AbstractAuthenticationToken> get(String tokenHash) {
+        CachedAuthentication cachedAuthentication = cachedAuthenticationPerTokenHash.get(tokenHash);
+        if (cachedAuthentication == null) {
+            return Optional.empty();
+        }
+        if (clock.millis() >= cachedAuthentication.expiresAtMillis()
+            || cachedAuthentication.epoch() != getEpoch(cachedAuthentication.principal())) {
+            cachedAuthenticationPerTokenHash.remove(tokenHash, cachedAuthentication);
+            return Optional.empty();
+        }
+        return Optional.of(cachedAuthentication.authentication());
+    }
+
+    /**
+     * Caches the authentication unless the principal has been invalidated since {@code epoch} was read. Callers read
+     * the epoch with {@link #getEpoch(String)} before converting the token, so that an invalidation racing with the
+     * conversion is never overwritten by an authentication built from outdated data. Invalidations of other
+     * principals do not prevent caching, apart from the few that share the principal's epoch stripe.
+     */
+    public void put(
+            String tokenHash,
+            String principal,
+            long epoch,
+            Instant tokenExpiresAt,
+            AbstractAuthenticationToken authentication
+    ) {
+        long now = clock.millis();
+        long expiresAtMillis = now + properties.getTimeToLive().toMillis();
+        if (tokenExpiresAt != null) {
+            expiresAtMillis = Math.min(expiresAtMillis, tokenExpiresAt.toEpochMilli());
+        }
+        if (expiresAtMillis <= now || epoch != getEpoch(principal)) {
+            return;
+        }
+        if (cachedAuthenticationPerTokenHash.size() >= properties.getMaxEntries()) {
+            makeRoom(now);
+        }
+        cachedAuthenticationPerTokenHash.put(
+                tokenHash,
+                new CachedAuthentication(authentication, principal, epoch, expiresAtMillis)
+        );
+    }
+
+    public long getEpoch(String principal) {
+        return epochPerPrincipalStripe.get(stripe(principal));
+    }
+
+    public void invalidate(String principal) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        epochPerPrincipalStripe.incrementAndGet(stripe(principal));
+        log.debug("Invalidated cached authentications for {}", principal);
+    }
+
+    public int size() {
+        return cachedAuthenticationPerTokenHash.size();
+    }
+
+    /**
+     * @return the hash of the token prefixed with the scope, so that the same token cached for different scopes gets
+     * different entries
+     */
+    public static String hash(String scope, String token) {
+        return scope + ":" + hash(token);
+    }
+
+    public static String hash(String token) {
+        MessageDigest messageDigest = SHA_256.get();
+        messageDigest.reset();
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static int stripe(String principal) {
+        int hash = principal.hashCode();
+        return (hash ^ (hash >>> 16)) & (NUMBER_OF_EPOCH_STRIPES - 1);
+    }
+
+    private void makeRoom(long now) {
+        cachedAuthenticationPerTokenHash.values()
+                .removeIf(cachedAuthentication -> now >= cachedAuthentication.expiresAtMillis());
+        int numberOfExcessEntries = cachedAuthenticationPerTokenHash.size() - properties.getMaxEntries() + 1;
+        if (numberOfExcessEntries <= 0) {
+            return;
+        }
+        cachedAuthenticationPerTokenHash.entrySet()
+                .stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().expiresAtMillis()))
+                .limit(Math.max(numberOfExcessEntries, properties.getMaxEntries() / EVICTION_BATCH_DIVISOR))
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(cachedAuthenticationPerTokenHash::remove);
+    }
+
+    private record CachedAuthentication(
+            AbstractAuthenticationToken authentication,
+            String principal,
+            long epoch,
+            long expiresAtMillis
+    ) {
+    }
+
+}
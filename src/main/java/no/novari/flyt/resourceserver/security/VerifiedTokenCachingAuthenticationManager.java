@@ -0,0 +1,100 @@
+package no.novari.flyt.resourceserver.security;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Authenticates bearer tokens like {@link JwtReactiveAuthenticationManager}, but serves repeated tokens from a
+ * {@link VerifiedTokenCache} instead of verifying the signature and running the converter again.
+ * <p>
+ * Entries are keyed by the scope of the manager as well as the token, since managers of different filter chains
+ * share the cache but convert the same token into different authentications. The epoch of the token's principal is
+ * read after verifying the token and before converting it, so that an authentication is not cached if the principal
+ * is invalidated while it is being converted.
+ */
+public class VerifiedTokenCachingAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final String scope;
+    private final ReactiveJwtDecoder jwtDecoder;
+    private final Converter<Jwt, Mono<AbstractAuthenticationToken>> converter;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final Function<Jwt, String> principalExtractor;
+
+    /**
+     * @param scope identifies the converter, such as the path of the filter chain it is used in
+     */
+    public VerifiedTokenCachingAuthenticationManager(
+            String scope,
+            ReactiveJwtDecoder jwtDecoder,
+            Converter<Jwt, Mono<AbstractAuthenticationToken>> converter,
+            VerifiedTokenCache verifiedTokenCache,
+            Function<Jwt, String> principalExtractor
+    ) {
+        this.scope = scope;
+        this.jwtDecoder = jwtDecoder;
+        this.converter = converter;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.principalExtractor = principalExtractor;
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (!(authentication instanceof BearerTokenAuthenticationToken bearerToken)) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            String tokenHash = VerifiedTokenCache.hash(scope, bearerToken.getToken());
+            return verifiedTokenCache.get(tokenHash)
+                    .<Mono<Authentication>>map(Mono::just)
+                    .orElseGet(() -> authenticateAndCache(bearerToken, tokenHash));
+        });
+    }
+
+    private Mono<Authentication> authenticateAndCache(BearerTokenAuthenticationToken bearerToken, String tokenHash) {
+        return jwtDecoder.decode(bearerToken.getToken())
+                .onErrorMap(JwtException.class, VerifiedTokenCachingAuthenticationManager::toAuthenticationException)
+                .flatMap(jwt -> convertAndCache(jwt, tokenHash))
+                .cast(Authentication.class);
+    }
+
+    private Mono<AbstractAuthenticationToken> convertAndCache(Jwt jwt, String tokenHash) {
+        String principal = principalExtractor.apply(jwt);
+        if (principal == null) {
+            return converter.convert(jwt);
+        }
+        long epoch = verifiedTokenCache.getEpoch(principal);
+        return converter.convert(jwt)
+                .doOnNext(authentication -> verifiedTokenCache.put(
+                        tokenHash,
+                        principal,
+                        epoch,
+                        jwt.getExpiresAt(),
+                        authentication
+                ));
+    }
+
+    /**
+     * Maps decoding failures the same way as {@link JwtReactiveAuthenticationManager}.
+     */
+    private static AuthenticationException toAuthenticationException(JwtException exception) {
+        if (exception instanceof BadJwtException) {
+            return new InvalidBearerTokenException(exception.getMessage(), exception);
+        }
+        return new AuthenticationServiceException(exception.getMessage(), exception);
+    }
+
+}
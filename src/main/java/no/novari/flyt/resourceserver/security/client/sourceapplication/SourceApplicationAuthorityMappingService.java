@@ -3,11 +3,13 @@ package no.novari.flyt.resourceserver.security.client.sourceapplication;
 import lombok.AllArgsConstructor;
 import no.novari.flyt.resourceserver.security.AuthorityMappingService;
 import no.novari.flyt.resourceserver.security.AuthorityPrefix;
+import no.novari.flyt.resourceserver.security.SourceApplicationGrantedAuthorities;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -23,6 +25,29 @@ public class SourceApplicationAuthorityMappingService {
                 .collect(Collectors.toSet());
     }
 
+    public Set<GrantedAuthority> createSourceApplicationAuthorities(long[] sourceApplicationIds) {
+        Set<GrantedAuthority> sourceApplicationAuthorities = HashSet.newHashSet(sourceApplicationIds.length);
+        for (long sourceApplicationId : sourceApplicationIds) {
+            sourceApplicationAuthorities.add(createSourceApplicationAuthority(sourceApplicationId));
+        }
+        return sourceApplicationAuthorities;
+    }
+
+    /**
+     * @return the other authorities and an authority per source application, without creating the source application
+     * authorities up front; see {@link SourceApplicationGrantedAuthorities}
+     */
+    public Collection<GrantedAuthority> createSourceApplicationAuthorities(
+            long[] sortedSourceApplicationIds,
+            Collection<? extends GrantedAuthority> otherAuthorities
+    ) {
+        return new SourceApplicationGrantedAuthorities(
+                authorityMappingService.toAuthority(AuthorityPrefix.SOURCE_APPLICATION_ID, ""),
+                sortedSourceApplicationIds,
+                otherAuthorities
+        );
+    }
+
     public GrantedAuthority createSourceApplicationAuthority(Long sourceApplicationId) {
         return new SimpleGrantedAuthority(createSourceApplicationAuthorityString(sourceApplicationId));
     }
@@ -0,0 +1,16 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SourceApplicationAuthorizationBatchRequest {
+    private List<String> clientIds;
+}
@@ -0,0 +1,71 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import lombok.extern.slf4j.Slf4j;
+import no.novari.cache.FintCache;
+import no.novari.flyt.resourceserver.security.VerifiedTokenCache;
+import no.novari.kafka.consuming.ErrorHandlerConfiguration;
+import no.novari.kafka.consuming.ErrorHandlerFactory;
+import no.novari.kafka.consuming.ListenerConfiguration;
+import no.novari.kafka.consuming.ParameterizedListenerContainerFactoryService;
+import no.novari.kafka.topic.name.EntityTopicNameParameters;
+import no.novari.kafka.topic.name.TopicNamePrefixParameters;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+
+@Slf4j
+public class SourceApplicationAuthorizationCachingListenerFactory {
+
+    public ConcurrentMessageListenerContainer<String, SourceApplicationAuthorization> create(
+            ParameterizedListenerContainerFactoryService containerFactoryService,
+            FintCache<String, SourceApplicationAuthorization> sourceApplicationAuthorizationCache,
+            VerifiedTokenCache verifiedTokenCache,
+            ErrorHandlerFactory errorHandlerFactory
+    ) {
+        return containerFactoryService.createBatchListenerContainerFactory(
+                SourceApplicationAuthorization.class,
+                consumerRecords -> consumerRecords
+                        .forEach(consumerRecord -> {
+                                    log.debug(
+                                            "Consuming client authorization: {} {}",
+                                            consumerRecord.key(),
+                                            consumerRecord.value()
+                                    );
+                                    if (consumerRecord.value() == null) {
+                                        sourceApplicationAuthorizationCache.remove(consumerRecord.key());
+                                    } else {
+                                        sourceApplicationAuthorizationCache.put(
+                                                consumerRecord.key(),
+                                                consumerRecord.value()
+                                        );
+                                    }
+                                    verifiedTokenCache.invalidate(
+                                            VerifiedTokenCache.clientPrincipal(consumerRecord.key())
+                                    );
+                                }
+                        ),
+                ListenerConfiguration.stepBuilder()
+                        .groupIdApplicationDefault()
+                        .maxPollRecordsKafkaDefault()
+                        .maxPollIntervalKafkaDefault()
+                        .seekToBeginningOnAssignment()
+                        .build(),
+                errorHandlerFactory.createErrorHandler(
+                        ErrorHandlerConfiguration
+                                .<SourceApplicationAuthorization>stepBuilder()
+                                .noRetries()
+                                .skipFailedRecords()
+                                .build()
+
+                )
+        ).createContainer(
+                EntityTopicNameParameters.builder()
+                        .topicNamePrefixParameters(TopicNamePrefixParameters
+                                .stepBuilder()
+                                .orgIdApplicationDefault()
+                                .domainContextApplicationDefault()
+                                .build()
+                        )
+                        .resourceName("clientauthorization").build()
+        );
+    }
+
+}
@@ -0,0 +1,170 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import lombok.extern.slf4j.Slf4j;
+import no.novari.flyt.resourceserver.security.VerifiedTokenCache;
+import no.novari.flyt.resourceserver.security.properties.SourceApplicationAuthorizationCacheProperties;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded TTL cache in front of {@link SourceApplicationAuthorizationRequestService}, keyed by client ID.
+ * Clients that are unknown or not authorized are cached as negative entries with a shorter time to live, so that
+ * invalid clients cannot force a Kafka round-trip per request while newly authorized clients are picked up quickly.
+ * <p>
+ * Authorizations are refreshed in the background shortly before they expire. Once expired, the last known value
+ * keeps being served for up to the configured maximum staleness while a refresh is attempted, so that a slow or
+ * unavailable authorization service does not stall external requests. Stale serving is off unless a maximum
+ * staleness is configured, since it delays revocations by up to that duration.
+ * <p>
+ * When the cache is full, entries past their maximum staleness are removed first, and then the entries that expire
+ * soonest. A batch of entries is evicted at a time, so that a full cache is not scanned on every insert.
+ */
+@Slf4j
+public class SourceApplicationAuthorizationCachingService implements SourceApplicationAuthorizationProvider {
+
+    private static final int EVICTION_BATCH_DIVISOR = 16;
+
+    private final SourceApplicationAuthorizationRequestService sourceApplicationAuthorizationRequestService;
+    private final SourceApplicationAuthorizationCacheProperties cacheProperties;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final Clock clock;
+    private final Map<String, CachedSourceApplicationAuthorization> cachedAuthorizationPerClientId =
+            new ConcurrentHashMap<>();
+    private final Set<String> refreshingClientIds = ConcurrentHashMap.newKeySet();
+
+    public SourceApplicationAuthorizationCachingService(
+            SourceApplicationAuthorizationRequestService sourceApplicationAuthorizationRequestService,
+            SourceApplicationAuthorizationCacheProperties cacheProperties,
+            VerifiedTokenCache verifiedTokenCache,
+            Clock clock
+    ) {
+        this.sourceApplicationAuthorizationRequestService = sourceApplicationAuthorizationRequestService;
+        this.cacheProperties = cacheProperties;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<SourceApplicationAuthorization> getClientAuthorization(String clientId) {
+        if (!cacheProperties.isEnabled()) {
+            return sourceApplicationAuthorizationRequestService.requestClientAuthorization(clientId);
+        }
+        CachedSourceApplicationAuthorization cachedAuthorization = cachedAuthorizationPerClientId.get(clientId);
+        if (cachedAuthorization != null) {
+            long now = clock.millis();
+            if (now < cachedAuthorization.refreshAtMillis()) {
+                return Mono.justOrEmpty(cachedAuthorization.authorization());
+            }
+            if (now < cachedAuthorization.staleUntilMillis()) {
+                refreshInBackground(clientId);
+                return Mono.justOrEmpty(cachedAuthorization.authorization());
+            }
+        }
+        return requestAndCache(clientId);
+    }
+
+    public void evict(String clientId) {
+        cachedAuthorizationPerClientId.remove(clientId);
+        verifiedTokenCache.invalidate(VerifiedTokenCache.clientPrincipal(clientId));
+    }
+
+    public int size() {
+        return cachedAuthorizationPerClientId.size();
+    }
+
+    private Mono<SourceApplicationAuthorization> requestAndCache(String clientId) {
+        return sourceApplicationAuthorizationRequestService.requestClientAuthorization(clientId)
+                .map(authorization -> cache(clientId, authorization))
+                .switchIfEmpty(Mono.fromSupplier(() -> cache(clientId, null)))
+                .mapNotNull(CachedSourceApplicationAuthorization::authorization);
+    }
+
+    private void refreshInBackground(String clientId) {
+        if (!refreshingClientIds.add(clientId)) {
+            return;
+        }
+        requestAndCache(clientId)
+                .doFinally(signalType -> refreshingClientIds.remove(clientId))
+                .subscribe(
+                        authorization -> {
+                        },
+                        error -> log.warn(
+                                "Could not refresh authorization for clientId={}, serving last known value",
+                                clientId,
+                                error
+                        )
+                );
+    }
+
+    private CachedSourceApplicationAuthorization cache(String clientId, SourceApplicationAuthorization authorization) {
+        long now = clock.millis();
+        boolean positive = isPositive(authorization);
+        long expiresAt = now + (positive
+                ? cacheProperties.getTimeToLive().toMillis()
+                : cacheProperties.getNegativeTimeToLive().toMillis());
+        long refreshAt = positive
+                ? Math.max(now, expiresAt - cacheProperties.getRefreshAheadTime().toMillis())
+                : expiresAt;
+        CachedSourceApplicationAuthorization cachedAuthorization = new CachedSourceApplicationAuthorization(
+                authorization,
+                refreshAt,
+                expiresAt + cacheProperties.getMaxStaleness().toMillis()
+        );
+
+        if (!cachedAuthorizationPerClientId.containsKey(clientId)
+            && cachedAuthorizationPerClientId.size() >= cacheProperties.getMaxEntries()) {
+            makeRoom(now);
+        }
+        CachedSourceApplicationAuthorization previousAuthorization =
+                cachedAuthorizationPerClientId.put(clientId, cachedAuthorization);
+        if (previousAuthorization != null && hasChanged(previousAuthorization.authorization(), authorization)) {
+            verifiedTokenCache.invalidate(VerifiedTokenCache.clientPrincipal(clientId));
+        }
+        log.debug("Cached authorization for clientId={} positive={}", clientId, positive);
+        return cachedAuthorization;
+    }
+
+    private void makeRoom(long now) {
+        cachedAuthorizationPerClientId.values()
+                .removeIf(cachedAuthorization -> now >= cachedAuthorization.staleUntilMillis());
+        int numberOfExcessEntries = cachedAuthorizationPerClientId.size() - cacheProperties.getMaxEntries() + 1;
+        if (numberOfExcessEntries <= 0) {
+            return;
+        }
+        cachedAuthorizationPerClientId.entrySet()
+                .stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().staleUntilMillis()))
+                .limit(Math.max(numberOfExcessEntries, cacheProperties.getMaxEntries() / EVICTION_BATCH_DIVISOR))
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(cachedAuthorizationPerClientId::remove);
+    }
+
+    private static boolean hasChanged(
+            SourceApplicationAuthorization previousAuthorization,
+            SourceApplicationAuthorization authorization
+    ) {
+        return isPositive(previousAuthorization) != isPositive(authorization)
+               || isPositive(authorization)
+                  && !authorization.getSourceApplicationId().equals(previousAuthorization.getSourceApplicationId());
+    }
+
+    private static boolean isPositive(SourceApplicationAuthorization authorization) {
+        return authorization != null
+               && authorization.isAuthorized()
+               && authorization.getSourceApplicationId() != null;
+    }
+
+    private record CachedSourceApplicationAuthorization(
+            SourceApplicationAuthorization authorization,
+            long refreshAtMillis,
+            long staleUntilMillis
+    ) {
+    }
+
+}
@@ -0,0 +1,41 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import no.novari.flyt.resourceserver.security.RequestBulkhead;
+import no.novari.flyt.resourceserver.security.RequestCircuitBreaker;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * Exposes the circuit breaker and bulkhead state of the authorization request/reply path on the actuator health
+ * endpoint. An open circuit is reported as {@code UNKNOWN} rather than {@code DOWN}, so that a degraded
+ * authorization service does not take the application itself out of rotation.
+ */
+public class SourceApplicationAuthorizationHealthIndicator implements HealthIndicator {
+
+    private final RequestCircuitBreaker requestCircuitBreaker;
+    private final RequestBulkhead requestBulkhead;
+
+    public SourceApplicationAuthorizationHealthIndicator(
+            RequestCircuitBreaker requestCircuitBreaker,
+            RequestBulkhead requestBulkhead
+    ) {
+        this.requestCircuitBreaker = requestCircuitBreaker;
+        this.requestBulkhead = requestBulkhead;
+    }
+
+    @Override
+    public Health health() {
+        RequestCircuitBreaker.State state = requestCircuitBreaker.getState();
+        Health.Builder builder = state == RequestCircuitBreaker.State.CLOSED
+                ? Health.up()
+                : Health.unknown();
+        return builder
+                .withDetail("circuitBreakerState", state)
+                .withDetail("recordedCalls", requestCircuitBreaker.getNumberOfRecordedCalls())
+                .withDetail("failedCalls", requestCircuitBreaker.getNumberOfFailedCalls())
+                .withDetail("maxConcurrentRequests", requestBulkhead.getMaxConcurrentRequests())
+                .withDetail("availableConcurrentRequests", requestBulkhead.getAvailableConcurrentRequests())
+                .build();
+    }
+
+}
@@ -0,0 +1,12 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves the source application authorization of an external client. Completes empty when the client is unknown.
+ */
+public interface SourceApplicationAuthorizationProvider {
+
+    Mono<SourceApplicationAuthorization> getClientAuthorization(String clientId);
+
+}
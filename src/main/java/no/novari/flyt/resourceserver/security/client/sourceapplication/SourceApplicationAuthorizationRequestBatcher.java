@@ -0,0 +1,104 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Accumulates distinct client IDs for a short window, or until the batch is full, and resolves them with a single
+ * multi-key request. The batched reply is fanned back out to every caller waiting for one of the client IDs.
+ */
+@Slf4j
+public class SourceApplicationAuthorizationRequestBatcher {
+
+    private final Function<List<String>, Mono<Map<String, SourceApplicationAuthorization>>> batchRequest;
+    private final Duration batchWindow;
+    private final int maxBatchSize;
+    private final Scheduler scheduler;
+
+    private final Object lock = new Object();
+    private Map<String, Sinks.One<SourceApplicationAuthorization>> pendingReplyPerClientId = new LinkedHashMap<>();
+    private Disposable scheduledDispatch;
+
+    public SourceApplicationAuthorizationRequestBatcher(
+            Function<List<String>, Mono<Map<String, SourceApplicationAuthorization>>> batchRequest,
+            Duration batchWindow,
+            int maxBatchSize,
+            Scheduler scheduler
+    ) {
+        this.batchRequest = batchRequest;
+        this.batchWindow = batchWindow;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+    }
+
+    public Mono<SourceApplicationAuthorization> request(String clientId) {
+        return Mono.defer(() -> {
+            Sinks.One<SourceApplicationAuthorization> pendingReply;
+            Map<String, Sinks.One<SourceApplicationAuthorization>> fullBatch = null;
+            synchronized (lock) {
+                pendingReply = pendingReplyPerClientId.computeIfAbsent(clientId, id -> Sinks.one());
+                if (pendingReplyPerClientId.size() >= maxBatchSize) {
+                    fullBatch = takePendingReplies();
+                } else if (scheduledDispatch == null) {
+                    scheduledDispatch = scheduler.schedule(
+                            this::dispatchPendingReplies,
+                            batchWindow.toNanos(),
+                            TimeUnit.NANOSECONDS
+                    );
+                }
+            }
+            if (fullBatch != null) {
+                dispatch(fullBatch);
+            }
+            return pendingReply.asMono();
+        });
+    }
+
+    private void dispatchPendingReplies() {
+        Map<String, Sinks.One<SourceApplicationAuthorization>> batch;
+        synchronized (lock) {
+            batch = takePendingReplies();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private Map<String, Sinks.One<SourceApplicationAuthorization>> takePendingReplies() {
+        Map<String, Sinks.One<SourceApplicationAuthorization>> batch = pendingReplyPerClientId;
+        pendingReplyPerClientId = new LinkedHashMap<>();
+        if (scheduledDispatch != null) {
+            scheduledDispatch.dispose();
+            scheduledDispatch = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<String, Sinks.One<SourceApplicationAuthorization>> batch) {
+        log.debug("Requesting authorization for batch of {} client IDs", batch.size());
+        batchRequest.apply(List.copyOf(batch.keySet()))
+                .defaultIfEmpty(Map.of())
+                .subscribe(
+                        authorizationPerClientId -> batch.forEach((clientId, pendingReply) -> {
+                            SourceApplicationAuthorization authorization = authorizationPerClientId.get(clientId);
+                            if (authorization == null) {
+                                pendingReply.tryEmitEmpty();
+                            } else {
+                                pendingReply.tryEmitValue(authorization);
+                            }
+                        }),
+                        error -> batch.values().forEach(pendingReply -> pendingReply.tryEmitError(error))
+                );
+    }
+
+}
@@ -1,5 +1,11 @@
 package no.novari.flyt.resourceserver.security.client.sourceapplication;
 
+import no.novari.flyt.resourceserver.security.InFlightRequestCoalescer;
+import no.novari.flyt.resourceserver.security.RequestBulkhead;
+import no.novari.flyt.resourceserver.security.RequestCircuitBreaker;
+import no.novari.flyt.resourceserver.security.RequestDeadline;
+import no.novari.flyt.resourceserver.security.RequestHedger;
+import no.novari.flyt.resourceserver.security.properties.SourceApplicationAuthorizationRequestProperties;
 import no.novari.kafka.consuming.ListenerConfiguration;
 import no.novari.kafka.requestreply.RequestProducerRecord;
 import no.novari.kafka.requestreply.RequestTemplate;
@@ -9,24 +15,99 @@ import no.novari.kafka.requestreply.topic.configuration.ReplyTopicConfiguration;
 import no.novari.kafka.requestreply.topic.name.ReplyTopicNameParameters;
 import no.novari.kafka.requestreply.topic.name.RequestTopicNameParameters;
 import no.novari.kafka.topic.name.TopicNamePrefixParameters;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Clock;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-@Service
-public class SourceApplicationAuthorizationRequestService {
+/**
+ * Resolves client IDs to source application authorizations over Kafka request/reply.
+ * <p>
+ * {@link RequestTemplate} only offers a blocking {@code requestAndReceive}, so every exchange occupies a thread until
+ * its reply arrives or the reply timeout passes. Exchanges run on a dedicated scheduler capped at
+ * {@code max-concurrent-requests} threads and queued tasks, so that a slow authorization service can neither park the
+ * Netty event loop nor exhaust the shared bounded elastic scheduler of the host application.
+ */
+public class SourceApplicationAuthorizationRequestService implements DisposableBean {
 
     private final RequestTopicNameParameters requestTopicNameParameters;
     private final RequestTemplate<String, SourceApplicationAuthorization> requestTemplate;
+    private final RequestTopicNameParameters batchRequestTopicNameParameters;
+    private final RequestTemplate<SourceApplicationAuthorizationBatchRequest, SourceApplicationAuthorizationBatchReply>
+            batchRequestTemplate;
+    private final SourceApplicationAuthorizationRequestBatcher requestBatcher;
+    private final RequestCircuitBreaker requestCircuitBreaker;
+    private final RequestBulkhead requestBulkhead;
+    private final RequestHedger requestHedger;
+    private final Scheduler requestScheduler;
+    private final InFlightRequestCoalescer<String, SourceApplicationAuthorization> inFlightRequestCoalescer =
+            new InFlightRequestCoalescer<>();
 
     public SourceApplicationAuthorizationRequestService(
             @Value("${novari.kafka.application-id}") String applicationId,
+            SourceApplicationAuthorizationRequestProperties requestProperties,
+            RequestCircuitBreaker requestCircuitBreaker,
+            RequestBulkhead requestBulkhead,
+            RequestHedger requestHedger,
             RequestTemplateFactory requestTemplateFactory,
             ReplyTopicService replyTopicService
     ) {
-        requestTopicNameParameters = RequestTopicNameParameters
+        this.requestCircuitBreaker = requestCircuitBreaker;
+        this.requestBulkhead = requestBulkhead;
+        this.requestHedger = requestHedger;
+        this.requestScheduler = Schedulers.newBoundedElastic(
+                requestProperties.getMaxConcurrentRequests(),
+                requestProperties.getMaxConcurrentRequests(),
+                "source-application-authorization-request"
+        );
+        String replyApplicationId = requestProperties.getReplyRouting().createReplyApplicationId(
+                applicationId,
+                requestProperties.getInstanceId(),
+                "authorization-request.instance-id"
+        );
+        requestTopicNameParameters = createRequestTopicNameParameters("client-id");
+        this.requestTemplate = requestTemplateFactory.createTemplate(
+                createReplyTopic(replyTopicService, replyApplicationId, "authorization"),
+                String.class,
+                SourceApplicationAuthorization.class,
+                requestProperties.getReplyTimeout(),
+                createReplyListenerConfiguration()
+        );
+
+        if (requestProperties.isBatchingEnabled()) {
+            batchRequestTopicNameParameters = createRequestTopicNameParameters("client-ids");
+            batchRequestTemplate = requestTemplateFactory.createTemplate(
+                    createReplyTopic(replyTopicService, replyApplicationId, "authorization-batch"),
+                    SourceApplicationAuthorizationBatchRequest.class,
+                    SourceApplicationAuthorizationBatchReply.class,
+                    requestProperties.getReplyTimeout(),
+                    createReplyListenerConfiguration()
+            );
+            requestBatcher = new SourceApplicationAuthorizationRequestBatcher(
+                    this::requestBatch,
+                    requestProperties.getBatchWindow(),
+                    requestProperties.getMaxBatchSize(),
+                    Schedulers.parallel()
+            );
+        } else {
+            batchRequestTopicNameParameters = null;
+            batchRequestTemplate = null;
+            requestBatcher = null;
+        }
+    }
+
+    private static RequestTopicNameParameters createRequestTopicNameParameters(String parameterName) {
+        return RequestTopicNameParameters
                 .builder()
                 .topicNamePrefixParameters(TopicNamePrefixParameters
                         .stepBuilder()
@@ -35,9 +116,15 @@ public class SourceApplicationAuthorizationRequestService {
                         .build()
                 )
                 .resourceName("authorization")
-                .parameterName("client-id")
+                .parameterName(parameterName)
                 .build();
+    }
 
+    private static ReplyTopicNameParameters createReplyTopic(
+            ReplyTopicService replyTopicService,
+            String applicationId,
+            String resourceName
+    ) {
         ReplyTopicNameParameters replyTopicNameParameters = ReplyTopicNameParameters
                 .builder()
                 .topicNamePrefixParameters(TopicNamePrefixParameters
@@ -47,7 +134,7 @@ public class SourceApplicationAuthorizationRequestService {
                         .build()
                 )
                 .applicationId(applicationId)
-                .resourceName("authorization")
+                .resourceName(resourceName)
                 .build();
         replyTopicService.createOrModifyTopic(
                 replyTopicNameParameters,
@@ -55,31 +142,93 @@ public class SourceApplicationAuthorizationRequestService {
                         .retentionTime(Duration.ofMinutes(2))
                         .build()
         );
+        return replyTopicNameParameters;
+    }
 
-        this.requestTemplate = requestTemplateFactory.createTemplate(
-                replyTopicNameParameters,
-                String.class,
-                SourceApplicationAuthorization.class,
-                Duration.ofSeconds(5),
-                ListenerConfiguration.stepBuilder()
-                        .groupIdApplicationDefault()
-                        .maxPollRecordsKafkaDefault()
-                        .maxPollIntervalKafkaDefault()
-                        .continueFromPreviousOffsetOnAssignment()
-                        .build()
-        );
+    private static ListenerConfiguration createReplyListenerConfiguration() {
+        return ListenerConfiguration.stepBuilder()
+                .groupIdApplicationDefault()
+                .maxPollRecordsKafkaDefault()
+                .maxPollIntervalKafkaDefault()
+                .continueFromPreviousOffsetOnAssignment()
+                .build();
     }
 
     public Optional<SourceApplicationAuthorization> getClientAuthorization(String clientId) {
-        return Optional.ofNullable(
-                requestTemplate.requestAndReceive(
+        return Optional.ofNullable(requestAndReceive(clientId));
+    }
+
+    /**
+     * Reactive variant of {@link #getClientAuthorization(String)}. The reply is awaited on the request scheduler of
+     * the service so that callers on the Netty event loop are never parked while waiting for Kafka. The exchange is
+     * offloaded rather than non-blocking: each one still holds a scheduler thread until its reply arrives, so at most
+     * {@code max-concurrent-requests} exchanges are outstanding at a time. Completes empty when the reply carries no
+     * authorization. Concurrent calls for the same client ID share a single Kafka request/reply exchange. When
+     * batching is enabled, distinct client IDs requested within the batch window are resolved together by one
+     * multi-key request on the {@code client-ids} request topic.
+     * <p>
+     * Every Kafka exchange passes through the bulkhead and circuit breaker. When either rejects the exchange, the
+     * returned Mono fails immediately with {@link no.novari.flyt.resourceserver.security.RequestNotPermittedException}
+     * instead of waiting for the reply timeout.
+     * <p>
+     * When the subscribing exchange carries a {@link RequestDeadline}, the caller stops waiting once it has passed.
+     * An exchange that has not started yet is dropped once no caller is waiting for it any more. A running exchange
+     * is not guaranteed to stop when cancelled, so it keeps its bulkhead permit until it returns, at the latest when
+     * the reply timeout passes.
+     * <p>
+     * With hedging enabled, an exchange still pending after a percentile of recently observed reply latencies is
+     * duplicated, and whichever reply arrives first is used.
+     */
+    public Mono<SourceApplicationAuthorization> requestClientAuthorization(String clientId) {
+        return RequestDeadline.timeout(
+                inFlightRequestCoalescer.coalesce(
+                        clientId,
+                        id -> requestBatcher != null
+                                ? requestBatcher.request(id)
+                                : protect(() -> requestAndReceive(id))
+                ),
+                Clock.systemUTC()
+        );
+    }
+
+    private <V> Mono<V> protect(Callable<V> request) {
+        return requestHedger.hedge(() -> requestCircuitBreaker.protect(
+                () -> requestBulkhead.protectBlocking(request, requestScheduler)
+        ));
+    }
+
+    private SourceApplicationAuthorization requestAndReceive(String clientId) {
+        return requestTemplate.requestAndReceive(
+                RequestProducerRecord
+                        .<String>builder()
+                        .topicNameParameters(requestTopicNameParameters)
+                        .value(clientId)
+                        .build()
+        ).value();
+    }
+
+    private Mono<Map<String, SourceApplicationAuthorization>> requestBatch(List<String> clientIds) {
+        return protect(() -> batchRequestTemplate.requestAndReceive(
                         RequestProducerRecord
-                                .<String>builder()
-                                .topicNameParameters(requestTopicNameParameters)
-                                .value(clientId)
+                                .<SourceApplicationAuthorizationBatchRequest>builder()
+                                .topicNameParameters(batchRequestTopicNameParameters)
+                                .value(new SourceApplicationAuthorizationBatchRequest(clientIds))
                                 .build()
-                ).value()
-        );
+                ).value())
+                .mapNotNull(SourceApplicationAuthorizationBatchReply::getAuthorizations)
+                .map(authorizations -> authorizations
+                        .stream()
+                        .collect(Collectors.toMap(
+                                SourceApplicationAuthorization::getClientId,
+                                Function.identity(),
+                                (first, second) -> second
+                        ))
+                );
+    }
+
+    @Override
+    public void destroy() {
+        requestScheduler.dispose();
     }
 
 }
@@ -2,21 +2,31 @@ package no.novari.flyt.resourceserver.security.client.sourceapplication;
 
 import no.novari.flyt.resourceserver.security.AuthorityMappingService;
 import no.novari.flyt.resourceserver.security.AuthorityPrefix;
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
+import no.novari.flyt.resourceserver.security.FlytAuthorization;
+import no.novari.flyt.resourceserver.security.FlytAuthorizationResolver;
 import no.novari.flyt.resourceserver.security.client.sourceapplication.exceptions.MultipleSourceApplicationIdsException;
 import no.novari.flyt.resourceserver.security.client.sourceapplication.exceptions.NoSourceApplicationIdException;
 import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
 import java.util.Set;
 
 public class SourceApplicationAuthorizationService {
 
     private final AuthorityMappingService authorityMappingService;
+    private final FlytAuthorizationResolver flytAuthorizationResolver;
 
     public SourceApplicationAuthorizationService(AuthorityMappingService authorityMappingService) {
         this.authorityMappingService = authorityMappingService;
+        this.flytAuthorizationResolver = new FlytAuthorizationResolver(authorityMappingService);
     }
 
     public Long getSourceApplicationId(Authentication authentication) {
+        if (authentication instanceof FlytAuthenticationToken flytAuthenticationToken) {
+            return getSingleSourceApplicationId(flytAuthenticationToken.getAuthorization());
+        }
         Set<Long> sourceApplicationIds = authorityMappingService.extractLongValues(
                 AuthorityPrefix.SOURCE_APPLICATION_ID,
                 authentication.getAuthorities()
@@ -29,4 +39,26 @@ public class SourceApplicationAuthorizationService {
         );
     }
 
+    /**
+     * Reads the authentication from the {@code ReactiveSecurityContextHolder}, and signals the same exceptions as
+     * {@link #getSourceApplicationId(Authentication)}. An exchange without authentication signals
+     * {@link NoSourceApplicationIdException}.
+     */
+    public Mono<Long> getSourceApplicationId() {
+        return flytAuthorizationResolver.resolveCurrent()
+                .defaultIfEmpty(FlytAuthorization.NONE)
+                .map(SourceApplicationAuthorizationService::getSingleSourceApplicationId);
+    }
+
+    private static Long getSingleSourceApplicationId(FlytAuthorization authorization) {
+        long[] sourceApplicationIds = authorization.getSourceApplicationIds();
+        if (sourceApplicationIds.length > 1) {
+            throw new MultipleSourceApplicationIdsException(Arrays.stream(sourceApplicationIds).boxed().toList());
+        }
+        if (sourceApplicationIds.length == 0) {
+            throw new NoSourceApplicationIdException();
+        }
+        return sourceApplicationIds[0];
+    }
+
 }
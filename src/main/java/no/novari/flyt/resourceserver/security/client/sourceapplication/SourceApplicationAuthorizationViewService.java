@@ -0,0 +1,25 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import no.novari.cache.FintCache;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves client authorizations from a local materialized view of the client authorization entity topic, kept up
+ * to date by {@link SourceApplicationAuthorizationCachingListenerFactory}. No Kafka round-trip is made per request.
+ */
+public class SourceApplicationAuthorizationViewService implements SourceApplicationAuthorizationProvider {
+
+    private final FintCache<String, SourceApplicationAuthorization> sourceApplicationAuthorizationCache;
+
+    public SourceApplicationAuthorizationViewService(
+            FintCache<String, SourceApplicationAuthorization> sourceApplicationAuthorizationCache
+    ) {
+        this.sourceApplicationAuthorizationCache = sourceApplicationAuthorizationCache;
+    }
+
+    @Override
+    public Mono<SourceApplicationAuthorization> getClientAuthorization(String clientId) {
+        return Mono.justOrEmpty(sourceApplicationAuthorizationCache.getOptional(clientId));
+    }
+
+}
@@ -1,39 +1,42 @@
 package no.novari.flyt.resourceserver.security.client.sourceapplication;
 
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
-import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
-import java.util.Optional;
 
-@Service
 public class SourceApplicationJwtConverter implements Converter<Jwt, Mono<AbstractAuthenticationToken>> {
 
-    private final SourceApplicationAuthorizationRequestService sourceApplicationAuthorizationRequestService;
+    private final SourceApplicationAuthorizationProvider sourceApplicationAuthorizationProvider;
     private final SourceApplicationAuthorityMappingService sourceApplicationAuthorityMappingService;
 
     public SourceApplicationJwtConverter(
-            SourceApplicationAuthorizationRequestService sourceApplicationAuthorizationRequestService,
+            SourceApplicationAuthorizationProvider sourceApplicationAuthorizationProvider,
             SourceApplicationAuthorityMappingService sourceApplicationAuthorityMappingService
     ) {
-        this.sourceApplicationAuthorizationRequestService = sourceApplicationAuthorizationRequestService;
+        this.sourceApplicationAuthorizationProvider = sourceApplicationAuthorizationProvider;
         this.sourceApplicationAuthorityMappingService = sourceApplicationAuthorityMappingService;
     }
 
     @Override
     public Mono<AbstractAuthenticationToken> convert(Jwt source) {
-        return Mono.fromCallable(
-                () -> Optional.ofNullable(source.getSubject())
-                        .flatMap(sourceApplicationAuthorizationRequestService::getClientAuthorization)
-                        .map(SourceApplicationAuthorization::getSourceApplicationId)
-                        .map(sourceApplicationAuthorityMappingService::createSourceApplicationAuthority)
-                        .map(grantedAuthority -> new JwtAuthenticationToken(source, List.of(grantedAuthority)))
-                        .orElseGet(() -> new JwtAuthenticationToken(source))
-        );
+        return Mono.justOrEmpty(source.getSubject())
+                .flatMap(sourceApplicationAuthorizationProvider::getClientAuthorization)
+                .mapNotNull(SourceApplicationAuthorization::getSourceApplicationId)
+                .<AbstractAuthenticationToken>map(sourceApplicationId -> new FlytAuthenticationToken(
+                        source,
+                        List.of(sourceApplicationAuthorityMappingService.createSourceApplicationAuthority(
+                                sourceApplicationId
+                        )),
+                        null,
+                        0,
+                        new long[]{sourceApplicationId}
+                ))
+                .switchIfEmpty(Mono.fromSupplier(() -> new JwtAuthenticationToken(source)));
     }
 
 }
@@ -0,0 +1,27 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import lombok.*;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CircuitBreakerProperties {
+    @Builder.Default
+    private boolean enabled = true;
+    @Builder.Default
+    private int failureRateThreshold = 50;
+    @Builder.Default
+    private Duration slowCallDuration = Duration.ofSeconds(3);
+    @Builder.Default
+    private int slidingWindowSize = 20;
+    @Builder.Default
+    private int minimumNumberOfCalls = 10;
+    @Builder.Default
+    private Duration waitDurationInOpenState = Duration.ofSeconds(30);
+    @Builder.Default
+    private int permittedCallsInHalfOpenState = 3;
+}
@@ -2,6 +2,7 @@ package no.novari.flyt.resourceserver.security.properties;
 
 import lombok.*;
 
+import java.time.Duration;
 import java.util.Set;
 
 @Setter
@@ -12,4 +13,17 @@ public class ExternalApiSecurityProperties {
     private boolean enabled;
     @Getter
     private Set<Long> authorizedSourceApplicationIds;
+    @Getter
+    private Duration requestBudget;
+    @Getter
+    @Builder.Default
+    private SourceApplicationAuthorizationLookup authorizationLookup = SourceApplicationAuthorizationLookup.REQUEST_REPLY;
+    @Getter
+    @Builder.Default
+    private SourceApplicationAuthorizationCacheProperties authorizationCache =
+            new SourceApplicationAuthorizationCacheProperties();
+    @Getter
+    @Builder.Default
+    private SourceApplicationAuthorizationRequestProperties authorizationRequest =
+            new SourceApplicationAuthorizationRequestProperties();
 }
@@ -0,0 +1,25 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import lombok.*;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class HedgingProperties {
+    @Builder.Default
+    private boolean enabled = false;
+    @Builder.Default
+    private double delayPercentile = 95.0;
+    @Builder.Default
+    private Duration minDelay = Duration.ofMillis(20);
+    @Builder.Default
+    private double maxHedgeRate = 0.1;
+    @Builder.Default
+    private int latencyWindowSize = 256;
+    @Builder.Default
+    private int minimumNumberOfSamples = 50;
+}
@@ -8,6 +8,7 @@ import lombok.extern.slf4j.Slf4j;
 import no.novari.flyt.resourceserver.security.user.UserRole;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Set;
 
@@ -21,6 +22,19 @@ public class InternalApiSecurityProperties {
     private String authorizedOrgIdRolePairsJson;
     @Getter
     private Map<String, Set<UserRole>> userRoleFilterPerOrgId;
+    @Getter
+    private Duration requestBudget;
+    @Getter
+    private Map<UserRole, Set<UserRole>> impliedRolesPerRole;
+    @Getter
+    @Builder.Default
+    private UserPermissionStoreProperties userPermissionStore = new UserPermissionStoreProperties();
+    @Getter
+    @Builder.Default
+    private UserPermissionSnapshotProperties userPermissionSnapshot = new UserPermissionSnapshotProperties();
+    @Getter
+    @Builder.Default
+    private UserPermissionIngestionProperties userPermissionIngestion = new UserPermissionIngestionProperties();
 
     @PostConstruct
     public void parseAndSetAuthorizedOrgIdRolePairs() {
@@ -2,6 +2,7 @@ package no.novari.flyt.resourceserver.security.properties;
 
 import lombok.*;
 
+import java.time.Duration;
 import java.util.Set;
 
 @Setter
@@ -12,4 +13,6 @@ public class InternalClientApiSecurityProperties {
     private boolean enabled;
     @Getter
     private Set<String> authorizedClientIds;
+    @Getter
+    private Duration requestBudget;
 }
@@ -0,0 +1,31 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import java.util.Locale;
+
+public enum ReplyRouting {
+    SHARED,
+    INSTANCE;
+
+    /**
+     * With {@link #INSTANCE} every instance creates and consumes its own reply topics, named after the application ID
+     * suffixed with the instance ID. The reply topic travels with each request, so the responder answers straight to
+     * the instance that asked and no instance consumes replies meant for another.
+     * <p>
+     * Reply topics are created per instance ID and never deleted, so the instance ID must be stable across restarts;
+     * a generated ID would leave a set of topics behind on every restart.
+     *
+     * @param instanceIdProperty name of the property the instance ID is configured by, reported when it is missing
+     */
+    public String createReplyApplicationId(String applicationId, String instanceId, String instanceIdProperty) {
+        if (this != INSTANCE) {
+            return applicationId;
+        }
+        if (instanceId == null || instanceId.isBlank()) {
+            throw new IllegalStateException(
+                    instanceIdProperty + " must be set to a stable value when reply-routing is instance,"
+                    + " for example the ordinal of a stateful set pod"
+            );
+        }
+        return applicationId + "-" + instanceId.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9-]", "-");
+    }
+}
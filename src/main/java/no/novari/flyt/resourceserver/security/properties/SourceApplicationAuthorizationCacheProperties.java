@@ -0,0 +1,25 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import lombok.*;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SourceApplicationAuthorizationCacheProperties {
+    @Builder.Default
+    private boolean enabled = true;
+    @Builder.Default
+    private Duration timeToLive = Duration.ofMinutes(10);
+    @Builder.Default
+    private Duration negativeTimeToLive = Duration.ofSeconds(30);
+    @Builder.Default
+    private Duration refreshAheadTime = Duration.ofMinutes(1);
+    @Builder.Default
+    private Duration maxStaleness = Duration.ZERO;
+    @Builder.Default
+    private int maxEntries = 10000;
+}
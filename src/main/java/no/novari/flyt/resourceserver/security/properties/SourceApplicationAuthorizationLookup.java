@@ -0,0 +1,6 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+public enum SourceApplicationAuthorizationLookup {
+    REQUEST_REPLY,
+    ENTITY_TOPIC
+}
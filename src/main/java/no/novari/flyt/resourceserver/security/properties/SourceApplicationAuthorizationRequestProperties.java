@@ -0,0 +1,30 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import lombok.*;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SourceApplicationAuthorizationRequestProperties {
+    @Builder.Default
+    private boolean batchingEnabled = false;
+    @Builder.Default
+    private Duration batchWindow = Duration.ofMillis(5);
+    @Builder.Default
+    private int maxBatchSize = 100;
+    @Builder.Default
+    private ReplyRouting replyRouting = ReplyRouting.SHARED;
+    private String instanceId;
+    @Builder.Default
+    private int maxConcurrentRequests = 64;
+    @Builder.Default
+    private Duration replyTimeout = Duration.ofSeconds(5);
+    @Builder.Default
+    private CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+    @Builder.Default
+    private HedgingProperties hedging = new HedgingProperties();
+}
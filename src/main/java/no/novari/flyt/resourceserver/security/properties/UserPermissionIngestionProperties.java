@@ -0,0 +1,15 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPermissionIngestionProperties {
+    @Builder.Default
+    private boolean parallelApplyEnabled = false;
+    @Builder.Default
+    private int parallelApplyMinBatchSize = 5000;
+}
@@ -0,0 +1,22 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import lombok.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPermissionSnapshotProperties {
+    @Builder.Default
+    private boolean enabled = false;
+    @Builder.Default
+    private Path path = Path.of(System.getProperty("java.io.tmpdir"), "flyt-user-permission.snapshot");
+    @Builder.Default
+    private Duration interval = Duration.ofMinutes(5);
+    @Builder.Default
+    private Duration maxAge = Duration.ofHours(12);
+}
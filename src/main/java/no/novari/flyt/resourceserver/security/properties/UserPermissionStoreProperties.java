@@ -0,0 +1,28 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import lombok.*;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPermissionStoreProperties {
+    @Builder.Default
+    private UserPermissionStoreType type = UserPermissionStoreType.FINT_CACHE;
+    @Builder.Default
+    private int initialCapacity = 1024;
+    @Builder.Default
+    private int maxEntries = 10000;
+    @Builder.Default
+    private int maxConcurrentRequests = 64;
+    @Builder.Default
+    private Duration replyTimeout = Duration.ofSeconds(5);
+    @Builder.Default
+    private ReplyRouting replyRouting = ReplyRouting.SHARED;
+    private String instanceId;
+    @Builder.Default
+    private CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+}
@@ -0,0 +1,7 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+public enum UserPermissionStoreType {
+    FINT_CACHE,
+    COMPACT,
+    ON_DEMAND
+}
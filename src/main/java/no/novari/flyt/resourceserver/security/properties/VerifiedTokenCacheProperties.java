@@ -0,0 +1,19 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import lombok.*;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class VerifiedTokenCacheProperties {
+    @Builder.Default
+    private boolean enabled = false;
+    @Builder.Default
+    private Duration timeToLive = Duration.ofMinutes(5);
+    @Builder.Default
+    private int maxEntries = 10000;
+}
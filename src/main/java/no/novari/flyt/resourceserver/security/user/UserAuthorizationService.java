@@ -2,46 +2,184 @@ package no.novari.flyt.resourceserver.security.user;
 
 import no.novari.flyt.resourceserver.security.AuthorityMappingService;
 import no.novari.flyt.resourceserver.security.AuthorityPrefix;
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
+import no.novari.flyt.resourceserver.security.FlytAuthorization;
+import no.novari.flyt.resourceserver.security.FlytAuthorizationResolver;
+import no.novari.flyt.resourceserver.security.SourceApplicationIdSet;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
+/**
+ * Authorization checks for users of the internal API. Authentications produced by this library are
+ * {@link FlytAuthenticationToken}s and are checked against their pre-parsed authorization data; other authentications,
+ * such as mocked ones in tests, are checked by parsing their authorities.
+ * <p>
+ * The reactive variants read the authentication from the {@code ReactiveSecurityContextHolder} and resolve its
+ * {@link FlytAuthorization} once per exchange, so they can be used any number of times inside a handler pipeline.
+ * Denied access is signalled as a {@link ResponseStatusException} with status {@code FORBIDDEN}, and an exchange
+ * without authentication is denied.
+ */
 public class UserAuthorizationService {
 
     private final AuthorityMappingService authorityMappingService;
+    private final FlytAuthorizationResolver flytAuthorizationResolver;
 
     public UserAuthorizationService(AuthorityMappingService authorityMappingService) {
         this.authorityMappingService = authorityMappingService;
+        this.flytAuthorizationResolver = new FlytAuthorizationResolver(authorityMappingService);
     }
 
     public Set<Long> getUserAuthorizedSourceApplicationIds(Authentication authentication) {
+        if (authentication instanceof FlytAuthenticationToken flytAuthenticationToken) {
+            long[] sourceApplicationIds = flytAuthenticationToken.getSourceApplicationIds();
+            Set<Long> authorizedSourceApplicationIds = HashSet.newHashSet(sourceApplicationIds.length);
+            for (long sourceApplicationId : sourceApplicationIds) {
+                authorizedSourceApplicationIds.add(sourceApplicationId);
+            }
+            return authorizedSourceApplicationIds;
+        }
         return authorityMappingService.extractLongValues(
                 AuthorityPrefix.SOURCE_APPLICATION_ID,
                 authentication.getAuthorities()
         );
     }
 
+    public boolean userHasAccessToSourceApplication(Authentication authentication, Long sourceApplicationId) {
+        if (authentication instanceof FlytAuthenticationToken flytAuthenticationToken) {
+            return sourceApplicationId != null
+                   && flytAuthenticationToken.hasAccessToSourceApplication(sourceApplicationId);
+        }
+        return getUserAuthorizedSourceApplicationIds(authentication).contains(sourceApplicationId);
+    }
+
+    /**
+     * Keeps the values that belong to a source application the user has access to, in their original order. The
+     * authorized IDs are resolved once, and each value is checked against them without boxing its ID.
+     */
+    public <T> List<T> filterAuthorized(
+            Authentication authentication,
+            Collection<? extends T> values,
+            ToLongFunction<? super T> sourceApplicationIdExtractor
+    ) {
+        SourceApplicationIdSet sourceApplicationIdSet = flytAuthorizationResolver.resolve(authentication)
+                .getSourceApplicationIdSet();
+        List<T> authorizedValues = new ArrayList<>();
+        if (sourceApplicationIdSet.isEmpty()) {
+            return authorizedValues;
+        }
+        for (T value : values) {
+            if (sourceApplicationIdSet.contains(sourceApplicationIdExtractor.applyAsLong(value))) {
+                authorizedValues.add(value);
+            }
+        }
+        return authorizedValues;
+    }
+
     public void checkIfUserHasAccessToSourceApplication(
             Authentication authentication,
             Long sourceApplicationId
     ) {
-        if (!getUserAuthorizedSourceApplicationIds(authentication).contains(sourceApplicationId)) {
-            throw new ResponseStatusException(
-                    HttpStatus.FORBIDDEN,
-                    "You do not have permission to access or modify data that is related to source application with id="
-                    + sourceApplicationId
-            );
+        if (!userHasAccessToSourceApplication(authentication, sourceApplicationId)) {
+            throw createSourceApplicationForbiddenException(sourceApplicationId);
         }
     }
 
     public boolean userHasRole(Authentication authentication, UserRole role) {
+        if (authentication instanceof FlytAuthenticationToken flytAuthenticationToken) {
+            return flytAuthenticationToken.hasRole(role);
+        }
         return authorityMappingService.extractStringValues(
                 AuthorityPrefix.ROLE,
                 authentication.getAuthorities()
         ).contains(role.name());
+    }
+
+    public Mono<Set<Long>> getUserAuthorizedSourceApplicationIds() {
+        return resolveCurrentAuthorization().map(authorization -> {
+            long[] sourceApplicationIds = authorization.getSourceApplicationIds();
+            Set<Long> authorizedSourceApplicationIds = HashSet.newHashSet(sourceApplicationIds.length);
+            for (long sourceApplicationId : sourceApplicationIds) {
+                authorizedSourceApplicationIds.add(sourceApplicationId);
+            }
+            return authorizedSourceApplicationIds;
+        });
+    }
+
+    public Mono<Boolean> userHasAccessToSourceApplication(Long sourceApplicationId) {
+        return resolveCurrentAuthorization().map(
+                authorization -> sourceApplicationId != null
+                                 && authorization.hasAccessToSourceApplication(sourceApplicationId)
+        );
+    }
+
+    public Mono<Boolean> userHasRole(UserRole role) {
+        return resolveCurrentAuthorization().map(authorization -> authorization.hasRole(role));
+    }
+
+    public Mono<Void> requireSourceApplicationAccess(Long sourceApplicationId) {
+        return userHasAccessToSourceApplication(sourceApplicationId)
+                .flatMap(hasAccess -> hasAccess
+                        ? Mono.empty()
+                        : Mono.error(createSourceApplicationForbiddenException(sourceApplicationId)));
+    }
+
+    public Mono<Void> requireRole(UserRole role) {
+        return userHasRole(role)
+                .flatMap(hasRole -> hasRole
+                        ? Mono.empty()
+                        : Mono.error(new ResponseStatusException(
+                                HttpStatus.FORBIDDEN,
+                                "You do not have the role " + role
+                        )));
+    }
+
+    /**
+     * Operator for {@link Mono#transform} that lets the value through when the user has access to the source
+     * application it belongs to, and fails with {@code FORBIDDEN} otherwise.
+     */
+    public <T> Function<Mono<T>, Mono<T>> requireSourceApplicationAccess(
+            Function<T, Long> sourceApplicationIdExtractor
+    ) {
+        return mono -> mono.flatMap(
+                value -> requireSourceApplicationAccess(sourceApplicationIdExtractor.apply(value)).thenReturn(value)
+        );
+    }
+
+    /**
+     * Operator for {@link Flux#transform} that drops the values belonging to a source application the user of the
+     * current exchange has no access to. See {@link #filterAuthorized(Authentication, Collection, ToLongFunction)}.
+     */
+    public <T> Function<Flux<T>, Flux<T>> filterAuthorized(ToLongFunction<? super T> sourceApplicationIdExtractor) {
+        return flux -> resolveCurrentAuthorization()
+                .map(FlytAuthorization::getSourceApplicationIdSet)
+                .flatMapMany(sourceApplicationIdSet -> sourceApplicationIdSet.isEmpty()
+                        ? Flux.<T>empty()
+                        : flux.filter(value -> sourceApplicationIdSet.contains(
+                                sourceApplicationIdExtractor.applyAsLong(value)
+                        )));
+    }
+
+    private Mono<FlytAuthorization> resolveCurrentAuthorization() {
+        return flytAuthorizationResolver.resolveCurrent().defaultIfEmpty(FlytAuthorization.NONE);
+    }
 
+    private static ResponseStatusException createSourceApplicationForbiddenException(Long sourceApplicationId) {
+        return new ResponseStatusException(
+                HttpStatus.FORBIDDEN,
+                "You do not have permission to access or modify data that is related to source application with id="
+                + sourceApplicationId
+        );
     }
 
 }
@@ -3,9 +3,9 @@ package no.novari.flyt.resourceserver.security.user;
 import jakarta.annotation.Nonnull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import no.novari.cache.FintCache;
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
 import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorityMappingService;
-import no.novari.flyt.resourceserver.security.user.permission.UserPermission;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionProvider;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
@@ -13,7 +13,8 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import reactor.core.publisher.Mono;
 
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -21,11 +22,9 @@ import java.util.UUID;
 @Slf4j
 public class UserJwtConverter implements Converter<Jwt, Mono<AbstractAuthenticationToken>> {
 
-    private final FintCache<UUID, UserPermission> userPermissionCache;
-    private final UserRoleFilteringService userRoleFilteringService;
+    private final UserPermissionProvider userPermissionProvider;
     private final SourceApplicationAuthorityMappingService sourceApplicationAuthorityMappingService;
-    private final UserRoleHierarchyService userRoleHierarchyService;
-    private final UserRoleAuthorityMappingService userRoleAuthorityMappingService;
+    private final UserRoleAuthorityTable userRoleAuthorityTable;
 
     @Nonnull
     public Mono<AbstractAuthenticationToken> convert(@Nonnull Jwt jwt) {
@@ -42,24 +41,31 @@ public class UserJwtConverter implements Converter<Jwt, Mono<AbstractAuthenticat
 
             UUID objectIdentifier = UUID.fromString(objectIdentifierString);
 
-            Set<GrantedAuthority> authorities = new HashSet<>();
-
-            userPermissionCache.getOptional(objectIdentifier)
-                    .map(UserPermission::getSourceApplicationIds)
-                    .map(sourceApplicationAuthorityMappingService::createSourceApplicationAuthorities)
-                    .ifPresent(authorities::addAll);
-
-            Set<String> roleValues = Set.copyOf(jwt.getClaimAsStringList(UserClaim.ROLES.getTokenClaimName()));
-            log.debug("Extracted roles from JWT: {}", roleValues);
-            if (!roleValues.isEmpty()) {
-                Set<UserRole> filteredUserRoles = userRoleFilteringService.filter(roleValues, organizationId);
-                Set<UserRole> providedAndImpliedRoles = userRoleHierarchyService.getProvidedAndImpliedRoles(filteredUserRoles);
-                authorities.addAll(userRoleAuthorityMappingService.createRoleAuthorities(providedAndImpliedRoles));
-            }
-            return Mono.just(new JwtAuthenticationToken(jwt, authorities));
+            return userPermissionProvider.getSourceApplicationIds(objectIdentifier)
+                    .map(sourceApplicationIds -> createAuthenticationToken(jwt, organizationId, sourceApplicationIds))
+                    .switchIfEmpty(Mono.fromSupplier(() -> createAuthenticationToken(jwt, organizationId, null)));
         } catch (Exception e) {
             return Mono.error(e);
         }
     }
 
+    private AbstractAuthenticationToken createAuthenticationToken(
+            Jwt jwt,
+            String organizationId,
+            long[] sourceApplicationIds
+    ) {
+        Collection<GrantedAuthority> roleAuthorities = Set.of();
+        long grantedRoleMask = 0;
+        List<String> roleValues = jwt.getClaimAsStringList(UserClaim.ROLES.getTokenClaimName());
+        log.debug("Extracted roles from JWT: {}", roleValues);
+        if (roleValues != null && !roleValues.isEmpty()) {
+            long roleMask = UserRole.toRoleMask(roleValues);
+            roleAuthorities = userRoleAuthorityTable.getRoleAuthorities(organizationId, roleMask);
+            grantedRoleMask = userRoleAuthorityTable.getGrantedRoleMask(organizationId, roleMask);
+        }
+        Collection<GrantedAuthority> authorities = sourceApplicationAuthorityMappingService
+                .createSourceApplicationAuthorities(sourceApplicationIds, roleAuthorities);
+        return new FlytAuthenticationToken(jwt, authorities, organizationId, grantedRoleMask, sourceApplicationIds);
+    }
+
 }
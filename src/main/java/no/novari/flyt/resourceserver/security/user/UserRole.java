@@ -5,8 +5,11 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 
 import static java.util.stream.Collectors.toMap;
@@ -20,6 +23,8 @@ public enum UserRole {
 
     private final String claimValue;
 
+    private static final UserRole[] VALUES = values();
+
     private static final Map<String, UserRole> userRoleByClaimValue =
             Arrays.stream(UserRole.values())
                     .collect(toMap(
@@ -31,4 +36,40 @@ public enum UserRole {
         return Optional.ofNullable(userRoleByClaimValue.getOrDefault(roleValue, null));
     }
 
+    public long getMask() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * Combines the masks of all known roles among the given claim values. Unknown values are ignored.
+     */
+    public static long toRoleMask(Collection<String> roleValues) {
+        long roleMask = 0;
+        for (String roleValue : roleValues) {
+            UserRole userRole = userRoleByClaimValue.get(roleValue);
+            if (userRole != null) {
+                roleMask |= userRole.getMask();
+            }
+        }
+        return roleMask;
+    }
+
+    public static long maskOf(Collection<UserRole> userRoles) {
+        long roleMask = 0;
+        for (UserRole userRole : userRoles) {
+            roleMask |= userRole.getMask();
+        }
+        return roleMask;
+    }
+
+    public static Set<UserRole> fromMask(long roleMask) {
+        Set<UserRole> userRoles = EnumSet.noneOf(UserRole.class);
+        for (UserRole userRole : VALUES) {
+            if ((roleMask & userRole.getMask()) != 0) {
+                userRoles.add(userRole);
+            }
+        }
+        return userRoles;
+    }
+
 }
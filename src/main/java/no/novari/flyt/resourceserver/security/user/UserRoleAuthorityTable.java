@@ -0,0 +1,112 @@
+package no.novari.flyt.resourceserver.security.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lookup table from organization ID and token role mask to the role authorities a user is granted. Every combination
+ * of token roles is filtered by the organization's role filter and expanded through the role hierarchy once, when the
+ * table is built, so converting a token is a single lookup that returns a shared, immutable set, and the mask of the
+ * roles it grants. Organizations without a role filter grant no role authorities.
+ * <p>
+ * The table is built from the role filter masks compiled by {@link UserRoleFilteringService}, and rebuilt on the next
+ * lookup after the configured role filters are replaced and recompiled.
+ */
+@Slf4j
+public class UserRoleAuthorityTable {
+
+    private static final int NUMBER_OF_ROLE_MASKS = 1 << UserRole.values().length;
+
+    private final UserRoleFilteringService userRoleFilteringService;
+    private final List<Set<GrantedAuthority>> roleAuthoritiesPerEffectiveRoleMask;
+    private final long[] grantedRoleMaskPerEffectiveRoleMask;
+
+    private volatile Table table;
+
+    public UserRoleAuthorityTable(
+            UserRoleFilteringService userRoleFilteringService,
+            UserRoleHierarchyService userRoleHierarchyService,
+            UserRoleAuthorityMappingService userRoleAuthorityMappingService
+    ) {
+        this.userRoleFilteringService = userRoleFilteringService;
+        List<Set<GrantedAuthority>> roleAuthorities = new ArrayList<>(NUMBER_OF_ROLE_MASKS);
+        this.grantedRoleMaskPerEffectiveRoleMask = new long[NUMBER_OF_ROLE_MASKS];
+        for (int roleMask = 0; roleMask < NUMBER_OF_ROLE_MASKS; roleMask++) {
+            long grantedRoleMask = userRoleHierarchyService.getProvidedAndImpliedRoleMask(roleMask);
+            grantedRoleMaskPerEffectiveRoleMask[roleMask] = grantedRoleMask;
+            roleAuthorities.add(Set.copyOf(userRoleAuthorityMappingService.createRoleAuthorities(
+                    UserRole.fromMask(grantedRoleMask)
+            )));
+        }
+        this.roleAuthoritiesPerEffectiveRoleMask = List.copyOf(roleAuthorities);
+        this.table = build(userRoleFilteringService.getRoleFilterMaskPerOrgId());
+    }
+
+    public Set<GrantedAuthority> getRoleAuthorities(String organizationId, long roleMask) {
+        OrganizationRoles organizationRoles = getTable().organizationRolesPerOrgId().get(organizationId);
+        if (organizationRoles == null) {
+            return Collections.emptySet();
+        }
+        return organizationRoles.roleAuthoritiesPerRoleMask().get((int) (roleMask & (NUMBER_OF_ROLE_MASKS - 1)));
+    }
+
+    /**
+     * @return the mask of the roles granted by {@link #getRoleAuthorities(String, long)} for the same arguments
+     */
+    public long getGrantedRoleMask(String organizationId, long roleMask) {
+        OrganizationRoles organizationRoles = getTable().organizationRolesPerOrgId().get(organizationId);
+        if (organizationRoles == null) {
+            return 0;
+        }
+        return organizationRoles.grantedRoleMaskPerRoleMask()[(int) (roleMask & (NUMBER_OF_ROLE_MASKS - 1))];
+    }
+
+    private Table getTable() {
+        Map<String, Long> roleFilterMaskPerOrgId = userRoleFilteringService.getRoleFilterMaskPerOrgId();
+        Table current = table;
+        if (current.source() != roleFilterMaskPerOrgId) {
+            current = build(roleFilterMaskPerOrgId);
+            table = current;
+        }
+        return current;
+    }
+
+    private Table build(Map<String, Long> roleFilterMaskPerOrgId) {
+        Map<String, OrganizationRoles> organizationRolesPerOrgId = new HashMap<>();
+        roleFilterMaskPerOrgId.forEach((organizationId, roleFilterMask) -> {
+            List<Set<GrantedAuthority>> roleAuthoritiesPerRoleMask = new ArrayList<>(NUMBER_OF_ROLE_MASKS);
+            long[] grantedRoleMaskPerRoleMask = new long[NUMBER_OF_ROLE_MASKS];
+            for (int roleMask = 0; roleMask < NUMBER_OF_ROLE_MASKS; roleMask++) {
+                int effectiveRoleMask = (int) (roleMask & roleFilterMask);
+                roleAuthoritiesPerRoleMask.add(roleAuthoritiesPerEffectiveRoleMask.get(effectiveRoleMask));
+                grantedRoleMaskPerRoleMask[roleMask] = grantedRoleMaskPerEffectiveRoleMask[effectiveRoleMask];
+            }
+            organizationRolesPerOrgId.put(
+                    organizationId,
+                    new OrganizationRoles(List.copyOf(roleAuthoritiesPerRoleMask), grantedRoleMaskPerRoleMask)
+            );
+        });
+        log.debug("Built role authority table for organizations: {}", organizationRolesPerOrgId.keySet());
+        return new Table(roleFilterMaskPerOrgId, Map.copyOf(organizationRolesPerOrgId));
+    }
+
+    private record Table(
+            Map<String, Long> source,
+            Map<String, OrganizationRoles> organizationRolesPerOrgId
+    ) {
+    }
+
+    private record OrganizationRoles(
+            List<Set<GrantedAuthority>> roleAuthoritiesPerRoleMask,
+            long[] grantedRoleMaskPerRoleMask
+    ) {
+    }
+
+}
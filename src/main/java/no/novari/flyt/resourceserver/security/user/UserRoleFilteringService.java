@@ -6,16 +6,23 @@ import no.novari.flyt.resourceserver.security.properties.InternalApiSecurityProp
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+/**
+ * Restricts the roles claimed in a token to the roles allowed for the user's organization. Role filters are kept as
+ * masks per organization, compiled from the configured filters and recompiled whenever the configured filters are
+ * replaced.
+ */
 @RequiredArgsConstructor
 @Slf4j
 public class UserRoleFilteringService {
 
     private final InternalApiSecurityProperties internalApiSecurityProperties;
 
+    private volatile CompiledRoleFilters compiledRoleFilters;
+
     public Set<UserRole> filter(Collection<String> roleValues, String organizationId) {
 
         log.debug("roleValues : {}", roleValues);
@@ -24,28 +31,63 @@ public class UserRoleFilteringService {
             return Collections.emptySet();
         }
 
-        Set<UserRole> filteredUserRoles = roleValues
-                .stream()
-                .map(UserRole::getUserRoleFromValue)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toSet());
+        long roleMask = UserRole.toRoleMask(roleValues);
 
-        log.debug("filteredUserRoles before filter : {}", filteredUserRoles);
+        log.debug("filteredUserRoles before filter : {}", UserRole.fromMask(roleMask));
 
-        if (filteredUserRoles.isEmpty()) {
+        if (roleMask == 0) {
             return Collections.emptySet();
         }
 
-        Set<UserRole> roleFilter = internalApiSecurityProperties.getUserRoleFilterPerOrgId()
-                .getOrDefault(organizationId, Collections.emptySet());
-
-        log.debug("roleFilter: {}", roleFilter);
-
-        filteredUserRoles.retainAll(roleFilter);
+        Set<UserRole> filteredUserRoles = UserRole.fromMask(filter(roleMask, organizationId));
 
         log.debug("filteredUserRoles after filter : {}", filteredUserRoles);
 
         return filteredUserRoles;
     }
+
+    public long filter(long roleMask, String organizationId) {
+        return roleMask & getRoleFilterMask(organizationId);
+    }
+
+    /**
+     * @return the compiled role filter mask per organization ID; organizations without a role filter are absent
+     */
+    public Map<String, Long> getRoleFilterMaskPerOrgId() {
+        return getCompiledRoleFilters().roleFilterMaskPerOrgId();
+    }
+
+    private long getRoleFilterMask(String organizationId) {
+        return getCompiledRoleFilters().roleFilterMaskPerOrgId().getOrDefault(organizationId, 0L);
+    }
+
+    private CompiledRoleFilters getCompiledRoleFilters() {
+        Map<String, Set<UserRole>> userRoleFilterPerOrgId = internalApiSecurityProperties.getUserRoleFilterPerOrgId();
+        CompiledRoleFilters current = compiledRoleFilters;
+        if (current == null || current.source() != userRoleFilterPerOrgId) {
+            current = CompiledRoleFilters.compile(userRoleFilterPerOrgId);
+            compiledRoleFilters = current;
+            log.debug("Compiled role filters: {}", userRoleFilterPerOrgId);
+        }
+        return current;
+    }
+
+    private record CompiledRoleFilters(
+            Map<String, Set<UserRole>> source,
+            Map<String, Long> roleFilterMaskPerOrgId
+    ) {
+        static CompiledRoleFilters compile(Map<String, Set<UserRole>> userRoleFilterPerOrgId) {
+            Map<String, Long> roleFilterMaskPerOrgId = new HashMap<>();
+            if (userRoleFilterPerOrgId != null) {
+                userRoleFilterPerOrgId.forEach((organizationId, roleFilter) -> roleFilterMaskPerOrgId.put(
+                        organizationId,
+                        roleFilter == null ? 0L : UserRole.maskOf(roleFilter)
+                ));
+            }
+            return new CompiledRoleFilters(
+                    userRoleFilterPerOrgId,
+                    Collections.unmodifiableMap(roleFilterMaskPerOrgId)
+            );
+        }
+    }
 }
@@ -1,33 +1,89 @@
 package no.novari.flyt.resourceserver.security.user;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Expands roles with the roles they imply. The hierarchy is compiled once into a mask per role holding the role
+ * itself and everything it transitively implies, so expanding a set of roles is a handful of bitwise ORs. The
+ * hierarchy is validated when compiled, and a hierarchy containing a cycle is rejected.
+ */
 public class UserRoleHierarchyService {
 
-    private static final Map<UserRole, Set<UserRole>> IMPLIED_ROLES_PER_ROLE = Map.of(
+    public static final Map<UserRole, Set<UserRole>> DEFAULT_IMPLIED_ROLES_PER_ROLE = Map.of(
             UserRole.USER, Set.of(),
             UserRole.ADMIN, Set.of(UserRole.USER),
             UserRole.DEVELOPER, Set.of(UserRole.ADMIN)
     );
 
+    private final long[] providedAndImpliedRoleMaskPerRole;
+
+    public UserRoleHierarchyService() {
+        this(DEFAULT_IMPLIED_ROLES_PER_ROLE);
+    }
+
+    public UserRoleHierarchyService(Map<UserRole, Set<UserRole>> impliedRolesPerRole) {
+        providedAndImpliedRoleMaskPerRole = compile(impliedRolesPerRole);
+    }
+
     public Set<UserRole> getProvidedAndImpliedRoles(Collection<UserRole> roles) {
-        return roles.stream()
-                .map(this::getProvidedAndImpliedRoles)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+        return UserRole.fromMask(getProvidedAndImpliedRoleMask(UserRole.maskOf(roles)));
+    }
+
+    public long getProvidedAndImpliedRoleMask(long roleMask) {
+        long providedAndImpliedRoleMask = 0;
+        long remainingRoleMask = roleMask;
+        while (remainingRoleMask != 0) {
+            int ordinal = Long.numberOfTrailingZeros(remainingRoleMask);
+            if (ordinal < providedAndImpliedRoleMaskPerRole.length) {
+                providedAndImpliedRoleMask |= providedAndImpliedRoleMaskPerRole[ordinal];
+            }
+            remainingRoleMask &= remainingRoleMask - 1;
+        }
+        return providedAndImpliedRoleMask;
+    }
+
+    private static long[] compile(Map<UserRole, Set<UserRole>> impliedRolesPerRole) {
+        UserRole[] userRoles = UserRole.values();
+        long[] compiledRoleMasks = new long[userRoles.length];
+        boolean[] compiled = new boolean[userRoles.length];
+        for (UserRole userRole : userRoles) {
+            compile(userRole, impliedRolesPerRole, compiledRoleMasks, compiled, new ArrayList<>());
+        }
+        return compiledRoleMasks;
     }
 
-    private Set<UserRole> getProvidedAndImpliedRoles(UserRole role) {
-        Set<UserRole> userRoles = IMPLIED_ROLES_PER_ROLE.get(role)
-                .stream()
-                .map(this::getProvidedAndImpliedRoles)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
-        userRoles.add(role);
-        return userRoles;
+    private static long compile(
+            UserRole userRole,
+            Map<UserRole, Set<UserRole>> impliedRolesPerRole,
+            long[] compiledRoleMasks,
+            boolean[] compiled,
+            List<UserRole> path
+    ) {
+        if (compiled[userRole.ordinal()]) {
+            return compiledRoleMasks[userRole.ordinal()];
+        }
+        if (path.contains(userRole)) {
+            throw new IllegalArgumentException(
+                    "Role hierarchy contains a cycle: " + path.subList(path.indexOf(userRole), path.size())
+                            .stream()
+                            .map(UserRole::name)
+                            .collect(Collectors.joining(" -> ")) + " -> " + userRole.name()
+            );
+        }
+        path.add(userRole);
+        long roleMask = userRole.getMask();
+        for (UserRole impliedRole : impliedRolesPerRole.getOrDefault(userRole, Set.of())) {
+            roleMask |= compile(impliedRole, impliedRolesPerRole, compiledRoleMasks, compiled, path);
+        }
+        path.removeLast();
+        compiledRoleMasks[userRole.ordinal()] = roleMask;
+        compiled[userRole.ordinal()] = true;
+        return roleMask;
     }
 
 }
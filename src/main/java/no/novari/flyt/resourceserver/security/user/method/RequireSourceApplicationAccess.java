@@ -0,0 +1,22 @@
+package no.novari.flyt.resourceserver.security.user.method;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requires the user to have access to the source application whose ID the SpEL expression evaluates to, for example
+ * {@code @RequireSourceApplicationAccess("#sourceApplicationId")} or {@code "#instance.sourceApplicationId"}. The
+ * annotated method must return a {@code Mono} or a {@code Flux}, which fails with a {@code FORBIDDEN}
+ * {@code ResponseStatusException} when access is denied.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequireSourceApplicationAccess {
+
+    String value();
+
+}
@@ -0,0 +1,23 @@
+package no.novari.flyt.resourceserver.security.user.method;
+
+import no.novari.flyt.resourceserver.security.user.UserRole;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requires the user to have the given role. On a type it applies to every public method that is not annotated itself.
+ * The methods it applies to must return a {@code Mono} or a {@code Flux}, which fails with a {@code FORBIDDEN}
+ * {@code ResponseStatusException} when the user does not have the role.
+ */
+@Documented
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequireUserRole {
+
+    UserRole value();
+
+}
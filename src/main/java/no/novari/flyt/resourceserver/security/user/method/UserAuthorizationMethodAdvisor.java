@@ -0,0 +1,39 @@
+package no.novari.flyt.resourceserver.security.user.method;
+
+import org.aopalliance.aop.Advice;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+
+import java.lang.reflect.Method;
+
+/**
+ * Applies {@link UserAuthorizationMethodInterceptor} to the methods annotated with {@link RequireUserRole} or
+ * {@link RequireSourceApplicationAccess}, or declared in a type annotated with {@link RequireUserRole}.
+ */
+public class UserAuthorizationMethodAdvisor extends AbstractPointcutAdvisor {
+
+    private final UserAuthorizationMethodInterceptor userAuthorizationMethodInterceptor;
+    private final Pointcut pointcut;
+
+    public UserAuthorizationMethodAdvisor(UserAuthorizationMethodInterceptor userAuthorizationMethodInterceptor) {
+        this.userAuthorizationMethodInterceptor = userAuthorizationMethodInterceptor;
+        this.pointcut = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return userAuthorizationMethodInterceptor.matches(method, targetClass);
+            }
+        };
+    }
+
+    @Override
+    public Pointcut getPointcut() {
+        return pointcut;
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return userAuthorizationMethodInterceptor;
+    }
+
+}
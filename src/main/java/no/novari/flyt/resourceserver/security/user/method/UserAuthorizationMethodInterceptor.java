@@ -0,0 +1,208 @@
+package no.novari.flyt.resourceserver.security.user.method;
+
+import no.novari.flyt.resourceserver.security.user.UserAuthorizationService;
+import no.novari.flyt.resourceserver.security.user.UserRole;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.reactivestreams.Publisher;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Enforces {@link RequireUserRole} and {@link RequireSourceApplicationAccess} on reactive methods through the
+ * reactive methods of {@link UserAuthorizationService}, which check the authorization data resolved once per
+ * exchange.
+ * <p>
+ * The annotations of a method are resolved and its expression is parsed once, when the pointcut is matched while the
+ * bean is proxied. An expression that only references a {@code Long} parameter, such as {@code #sourceApplicationId},
+ * reads the argument directly; other expressions are evaluated with SpEL in mixed compiler mode.
+ * <p>
+ * Annotated methods must return a {@link Mono} or a {@link Flux}. Public methods that only inherit
+ * {@link RequireUserRole} from their type and return anything else, such as getters, are not intercepted.
+ */
+public class UserAuthorizationMethodInterceptor implements MethodInterceptor {
+
+    private static final Pattern PARAMETER_REFERENCE = Pattern.compile("#([A-Za-z_$][A-Za-z0-9_$]*)");
+    private static final Pattern PARAMETER_INDEX_REFERENCE = Pattern.compile("[ap][0-9]+");
+
+    private final Supplier<UserAuthorizationService> userAuthorizationServiceSupplier;
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    private final SpelExpressionParser expressionParser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, getClass().getClassLoader())
+    );
+    private final Map<MethodClassKey, MethodAuthorization> methodAuthorizations = new ConcurrentHashMap<>();
+
+    /**
+     * @param userAuthorizationServiceSupplier supplies the service on first invocation, so that creating the
+     *                                         interceptor does not initialize it before the beans it may proxy
+     */
+    public UserAuthorizationMethodInterceptor(Supplier<UserAuthorizationService> userAuthorizationServiceSupplier) {
+        this.userAuthorizationServiceSupplier = userAuthorizationServiceSupplier;
+    }
+
+    boolean matches(Method method, Class<?> targetClass) {
+        return getMethodAuthorization(method, targetClass) != null;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Class<?> targetClass = invocation.getThis() != null
+                ? AopUtils.getTargetClass(invocation.getThis())
+                : invocation.getMethod().getDeclaringClass();
+        MethodAuthorization methodAuthorization = getMethodAuthorization(invocation.getMethod(), targetClass);
+        if (methodAuthorization == null) {
+            return invocation.proceed();
+        }
+        Mono<Void> authorization = methodAuthorization.authorize(
+                userAuthorizationServiceSupplier.get(),
+                invocation.getArguments()
+        );
+        if (methodAuthorization.returnsFlux()) {
+            return authorization.thenMany(Flux.defer(() -> proceed(invocation)));
+        }
+        return authorization.then(Mono.defer(() -> Mono.from(proceed(invocation))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Publisher<T> proceed(MethodInvocation invocation) {
+        try {
+            return (Publisher<T>) invocation.proceed();
+        } catch (Throwable e) {
+            return Mono.error(e);
+        }
+    }
+
+    private MethodAuthorization getMethodAuthorization(Method method, Class<?> targetClass) {
+        Class<?> resolvedTargetClass = targetClass != null ? targetClass : method.getDeclaringClass();
+        MethodClassKey methodClassKey = new MethodClassKey(method, resolvedTargetClass);
+        MethodAuthorization methodAuthorization = methodAuthorizations.get(methodClassKey);
+        if (methodAuthorization != null) {
+            return methodAuthorization;
+        }
+        methodAuthorization = compile(method, resolvedTargetClass);
+        if (methodAuthorization != null) {
+            methodAuthorizations.putIfAbsent(methodClassKey, methodAuthorization);
+        }
+        return methodAuthorization;
+    }
+
+    private MethodAuthorization compile(Method method, Class<?> targetClass) {
+        if (method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+        RequireSourceApplicationAccess requireSourceApplicationAccess = AnnotatedElementUtils.findMergedAnnotation(
+                specificMethod,
+                RequireSourceApplicationAccess.class
+        );
+        RequireUserRole requireUserRole = AnnotatedElementUtils.findMergedAnnotation(
+                specificMethod,
+                RequireUserRole.class
+        );
+        boolean annotated = requireSourceApplicationAccess != null || requireUserRole != null;
+        if (requireUserRole == null && Modifier.isPublic(specificMethod.getModifiers())) {
+            requireUserRole = AnnotatedElementUtils.findMergedAnnotation(targetClass, RequireUserRole.class);
+        }
+        if (requireSourceApplicationAccess == null && requireUserRole == null) {
+            return null;
+        }
+        if (!isReactive(specificMethod)) {
+            if (!annotated) {
+                return null;
+            }
+            throw new IllegalStateException(
+                    "Method with user authorization annotations must return a Mono or a Flux: " + specificMethod
+            );
+        }
+        return new MethodAuthorization(
+                requireUserRole != null ? requireUserRole.value() : null,
+                requireSourceApplicationAccess != null
+                        ? compileSourceApplicationIdResolver(specificMethod, requireSourceApplicationAccess.value())
+                        : null,
+                returnsFlux(specificMethod)
+        );
+    }
+
+    private static boolean isReactive(Method method) {
+        return method.getReturnType() == Mono.class || returnsFlux(method);
+    }
+
+    private static boolean returnsFlux(Method method) {
+        Class<?> returnType = method.getReturnType();
+        return Publisher.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(Flux.class);
+    }
+
+    private SourceApplicationIdResolver compileSourceApplicationIdResolver(Method method, String expressionString) {
+        Matcher parameterReference = PARAMETER_REFERENCE.matcher(expressionString.trim());
+        if (parameterReference.matches()
+            && !PARAMETER_INDEX_REFERENCE.matcher(parameterReference.group(1)).matches()) {
+            String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
+            if (parameterNames == null) {
+                throw new IllegalStateException(
+                        "Parameter names of " + method + " are not available. Compile with -parameters, or reference"
+                        + " the parameter by index, as in #p0"
+                );
+            }
+            int parameterIndex = Arrays.asList(parameterNames).indexOf(parameterReference.group(1));
+            if (parameterIndex < 0) {
+                throw new IllegalStateException(
+                        "Expression '" + expressionString + "' does not reference a parameter of " + method
+                );
+            }
+            Class<?> parameterType = method.getParameterTypes()[parameterIndex];
+            if (parameterType == Long.class || parameterType == long.class) {
+                return arguments -> (Long) arguments[parameterIndex];
+            }
+        }
+        Expression expression = expressionParser.parseExpression(expressionString);
+        return arguments -> expression.getValue(
+                new MethodBasedEvaluationContext(null, method, arguments, parameterNameDiscoverer),
+                Long.class
+        );
+    }
+
+    @FunctionalInterface
+    private interface SourceApplicationIdResolver {
+        Long resolve(Object[] arguments);
+    }
+
+    private record MethodAuthorization(
+            UserRole requiredUserRole,
+            SourceApplicationIdResolver sourceApplicationIdResolver,
+            boolean returnsFlux
+    ) {
+
+        private Mono<Void> authorize(UserAuthorizationService userAuthorizationService, Object[] arguments) {
+            Mono<Void> userRoleAuthorization = requiredUserRole != null
+                    ? userAuthorizationService.requireRole(requiredUserRole)
+                    : Mono.empty();
+            if (sourceApplicationIdResolver == null) {
+                return userRoleAuthorization;
+            }
+            return userRoleAuthorization.then(Mono.defer(() -> userAuthorizationService.requireSourceApplicationAccess(
+                    sourceApplicationIdResolver.resolve(arguments)
+            )));
+        }
+
+    }
+
+}
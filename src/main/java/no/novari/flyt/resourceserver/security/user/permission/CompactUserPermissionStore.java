@@ -0,0 +1,296 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Memory-compact {@link UserPermissionStore} for tenants with many users. Permissions are kept in an open-addressing
+ * hash table with linear probing, keyed by the two {@code long} halves of the object identifier, and source
+ * application IDs are kept as sorted {@code long[]}. Compared to caching {@link UserPermission} objects there is no
+ * boxed {@link UUID}, {@link java.util.HashSet} or {@link Long} per entry.
+ * <p>
+ * Lookups are allocation-free and normally lock-free: they read optimistically and only fall back to a read lock when
+ * a write happened at the same time. Writes are serialized.
+ */
+public class CompactUserPermissionStore implements UserPermissionStore {
+
+    private static final int MAX_LOAD_PERCENTAGE = 60;
+
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private int size;
+
+    public CompactUserPermissionStore(int initialCapacity) {
+        table = new Table(tableCapacityFor(Math.max(initialCapacity, 1)));
+    }
+
+    @Override
+    public long[] getSourceApplicationIds(UUID objectIdentifier) {
+        long mostSignificantBits = objectIdentifier.getMostSignificantBits();
+        long leastSignificantBits = objectIdentifier.getLeastSignificantBits();
+        long stamp = lock.tryOptimisticRead();
+        long[] sourceApplicationIds = table.get(mostSignificantBits, leastSignificantBits);
+        if (lock.validate(stamp)) {
+            return sourceApplicationIds;
+        }
+        stamp = lock.readLock();
+        try {
+            return table.get(mostSignificantBits, leastSignificantBits);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void put(UUID objectIdentifier, long[] sortedSourceApplicationIds) {
+        long stamp = lock.writeLock();
+        try {
+            if ((long) (size + 1) * 100 > (long) table.capacity() * MAX_LOAD_PERCENTAGE) {
+                table = table.resize(table.capacity() * 2);
+            }
+            if (table.put(
+                    objectIdentifier.getMostSignificantBits(),
+                    objectIdentifier.getLeastSignificantBits(),
+                    sortedSourceApplicationIds
+            ) == null) {
+                size++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Grows the table at most once and applies all permissions under a single write lock, comparing each permission
+     * with the one it replaces.
+     */
+    @Override
+    public List<UUID> putAll(Map<UUID, long[]> sortedSourceApplicationIdsPerObjectIdentifier) {
+        List<UUID> changedObjectIdentifiers = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            int maxSize = size + sortedSourceApplicationIdsPerObjectIdentifier.size();
+            if ((long) maxSize * 100 > (long) table.capacity() * MAX_LOAD_PERCENTAGE) {
+                table = table.resize(tableCapacityFor(maxSize));
+            }
+            sortedSourceApplicationIdsPerObjectIdentifier.forEach((objectIdentifier, sortedSourceApplicationIds) -> {
+                long[] previousSourceApplicationIds = table.put(
+                        objectIdentifier.getMostSignificantBits(),
+                        objectIdentifier.getLeastSignificantBits(),
+                        sortedSourceApplicationIds
+                );
+                if (previousSourceApplicationIds == null) {
+                    size++;
+                }
+                if (!Arrays.equals(previousSourceApplicationIds, sortedSourceApplicationIds)) {
+                    changedObjectIdentifiers.add(objectIdentifier);
+                }
+            });
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return changedObjectIdentifiers;
+    }
+
+    @Override
+    public boolean remove(UUID objectIdentifier) {
+        long stamp = lock.writeLock();
+        try {
+            return removeLocked(objectIdentifier);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public List<UUID> removeAll(Collection<UUID> objectIdentifiers) {
+        long stamp = lock.writeLock();
+        try {
+            List<UUID> removedObjectIdentifiers = new ArrayList<>();
+            for (UUID objectIdentifier : objectIdentifiers) {
+                if (removeLocked(objectIdentifier)) {
+                    removedObjectIdentifiers.add(objectIdentifier);
+                }
+            }
+            return removedObjectIdentifiers;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean removeLocked(UUID objectIdentifier) {
+        if (table.remove(objectIdentifier.getMostSignificantBits(), objectIdentifier.getLeastSignificantBits())) {
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Iterates over a copy of the table taken under the read lock, so that writers are not blocked by a slow
+     * consumer. Source application ID arrays are never modified once stored and are not copied.
+     */
+    @Override
+    public void forEach(SourceApplicationIdsConsumer consumer) {
+        Table tableCopy;
+        long stamp = lock.readLock();
+        try {
+            tableCopy = table.copy();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        tableCopy.forEach(consumer);
+    }
+
+    private static int tableCapacityFor(int expectedSize) {
+        long minimumCapacity = (long) expectedSize * 100 / MAX_LOAD_PERCENTAGE + 1;
+        return (int) Math.min(1L << 30, Long.highestOneBit(minimumCapacity - 1) << 1);
+    }
+
+    private static int hash(long mostSignificantBits, long leastSignificantBits) {
+        long hash = mostSignificantBits ^ Long.rotateLeft(leastSignificantBits, 32);
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    /**
+     * A slot is occupied when its source application IDs are not {@code null}. The table is never full, so probing
+     * always ends at an empty slot; the probe count is still bounded so that an optimistic read racing with a write
+     * cannot loop.
+     */
+    private static final class Table {
+
+        private final long[] mostSignificantBits;
+        private final long[] leastSignificantBits;
+        private final long[][] sourceApplicationIds;
+        private final int mask;
+
+        private Table(int capacity) {
+            mostSignificantBits = new long[capacity];
+            leastSignificantBits = new long[capacity];
+            sourceApplicationIds = new long[capacity][];
+            mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        private long[] get(long mostSignificantBits, long leastSignificantBits) {
+            int slot = hash(mostSignificantBits, leastSignificantBits) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long[] slotSourceApplicationIds = sourceApplicationIds[slot];
+                if (slotSourceApplicationIds == null) {
+                    return null;
+                }
+                if (this.mostSignificantBits[slot] == mostSignificantBits
+                    && this.leastSignificantBits[slot] == leastSignificantBits) {
+                    return slotSourceApplicationIds;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * @return the source application IDs previously stored for the key, or {@code null} if it was not present
+         */
+        private long[] put(long mostSignificantBits, long leastSignificantBits, long[] sourceApplicationIds) {
+            int slot = hash(mostSignificantBits, leastSignificantBits) & mask;
+            while (this.sourceApplicationIds[slot] != null) {
+                if (this.mostSignificantBits[slot] == mostSignificantBits
+                    && this.leastSignificantBits[slot] == leastSignificantBits) {
+                    long[] previousSourceApplicationIds = this.sourceApplicationIds[slot];
+                    this.sourceApplicationIds[slot] = sourceApplicationIds;
+                    return previousSourceApplicationIds;
+                }
+                slot = (slot + 1) & mask;
+            }
+            this.mostSignificantBits[slot] = mostSignificantBits;
+            this.leastSignificantBits[slot] = leastSignificantBits;
+            this.sourceApplicationIds[slot] = sourceApplicationIds;
+            return null;
+        }
+
+        /**
+         * Removes the key with backward-shift deletion: following entries of the same probe run are moved back into
+         * the freed slot, so that lookups never need tombstones to keep probing past it.
+         *
+         * @return {@code true} if the key was present
+         */
+        private boolean remove(long mostSignificantBits, long leastSignificantBits) {
+            int slot = hash(mostSignificantBits, leastSignificantBits) & mask;
+            while (true) {
+                if (sourceApplicationIds[slot] == null) {
+                    return false;
+                }
+                if (this.mostSignificantBits[slot] == mostSignificantBits
+                    && this.leastSignificantBits[slot] == leastSignificantBits) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int freeSlot = slot;
+            int nextSlot = (freeSlot + 1) & mask;
+            while (sourceApplicationIds[nextSlot] != null) {
+                int homeSlot = hash(this.mostSignificantBits[nextSlot], this.leastSignificantBits[nextSlot]) & mask;
+                if (((nextSlot - homeSlot) & mask) >= ((nextSlot - freeSlot) & mask)) {
+                    this.mostSignificantBits[freeSlot] = this.mostSignificantBits[nextSlot];
+                    this.leastSignificantBits[freeSlot] = this.leastSignificantBits[nextSlot];
+                    sourceApplicationIds[freeSlot] = sourceApplicationIds[nextSlot];
+                    freeSlot = nextSlot;
+                }
+                nextSlot = (nextSlot + 1) & mask;
+            }
+            sourceApplicationIds[freeSlot] = null;
+            return true;
+        }
+
+        private Table copy() {
+            Table tableCopy = new Table(capacity());
+            System.arraycopy(mostSignificantBits, 0, tableCopy.mostSignificantBits, 0, capacity());
+            System.arraycopy(leastSignificantBits, 0, tableCopy.leastSignificantBits, 0, capacity());
+            System.arraycopy(sourceApplicationIds, 0, tableCopy.sourceApplicationIds, 0, capacity());
+            return tableCopy;
+        }
+
+        private void forEach(SourceApplicationIdsConsumer consumer) {
+            for (int slot = 0; slot <= mask; slot++) {
+                if (sourceApplicationIds[slot] != null) {
+                    consumer.accept(mostSignificantBits[slot], leastSignificantBits[slot], sourceApplicationIds[slot]);
+                }
+            }
+        }
+
+        private Table resize(int capacity) {
+            Table resizedTable = new Table(capacity);
+            for (int slot = 0; slot <= mask; slot++) {
+                if (sourceApplicationIds[slot] != null) {
+                    resizedTable.put(mostSignificantBits[slot], leastSignificantBits[slot], sourceApplicationIds[slot]);
+                }
+            }
+            return resizedTable;
+        }
+
+    }
+
+}
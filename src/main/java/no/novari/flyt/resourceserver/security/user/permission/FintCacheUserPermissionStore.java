@@ -0,0 +1,103 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import lombok.RequiredArgsConstructor;
+import no.novari.cache.FintCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link UserPermissionStore} backed by a {@link FintCache} of {@link UserPermission} objects. Source application IDs
+ * are sorted once when written and stored as a {@link SortedSourceApplicationIdSet}, so that lookups return the sorted
+ * array without copying or sorting. Permissions whose IDs are held in another kind of set, such as permissions put
+ * into the cache directly, are sorted on every lookup.
+ */
+@RequiredArgsConstructor
+public class FintCacheUserPermissionStore implements UserPermissionStore {
+
+    private final FintCache<UUID, UserPermission> userPermissionCache;
+
+    @Override
+    public long[] getSourceApplicationIds(UUID objectIdentifier) {
+        return userPermissionCache.getOptional(objectIdentifier)
+                .map(UserPermission::getSourceApplicationIds)
+                .map(FintCacheUserPermissionStore::getSortedSourceApplicationIds)
+                .orElse(null);
+    }
+
+    @Override
+    public void put(UUID objectIdentifier, long[] sortedSourceApplicationIds) {
+        userPermissionCache.put(objectIdentifier, toUserPermission(objectIdentifier, sortedSourceApplicationIds));
+    }
+
+    @Override
+    public List<UUID> putAll(Map<UUID, long[]> sortedSourceApplicationIdsPerObjectIdentifier) {
+        List<UUID> changedObjectIdentifiers = new ArrayList<>();
+        Map<UUID, UserPermission> userPermissionPerObjectIdentifier =
+                HashMap.newHashMap(sortedSourceApplicationIdsPerObjectIdentifier.size());
+        sortedSourceApplicationIdsPerObjectIdentifier.forEach((objectIdentifier, sortedSourceApplicationIds) -> {
+            if (!Arrays.equals(getSourceApplicationIds(objectIdentifier), sortedSourceApplicationIds)) {
+                changedObjectIdentifiers.add(objectIdentifier);
+            }
+            userPermissionPerObjectIdentifier.put(
+                    objectIdentifier,
+                    toUserPermission(objectIdentifier, sortedSourceApplicationIds)
+            );
+        });
+        userPermissionCache.put(userPermissionPerObjectIdentifier);
+        return changedObjectIdentifiers;
+    }
+
+    @Override
+    public boolean remove(UUID objectIdentifier) {
+        if (userPermissionCache.getOptional(objectIdentifier).isEmpty()) {
+            return false;
+        }
+        userPermissionCache.remove(objectIdentifier);
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return userPermissionCache.getNumberOfEntries();
+    }
+
+    /**
+     * Relies on the object identifier carried by each cached {@link UserPermission}; permissions without one are
+     * skipped.
+     */
+    @Override
+    public void forEach(SourceApplicationIdsConsumer consumer) {
+        for (UserPermission userPermission : userPermissionCache.getAll()) {
+            UUID objectIdentifier = userPermission.getObjectIdentifier();
+            if (objectIdentifier != null) {
+                consumer.accept(
+                        objectIdentifier.getMostSignificantBits(),
+                        objectIdentifier.getLeastSignificantBits(),
+                        getSortedSourceApplicationIds(userPermission.getSourceApplicationIds())
+                );
+            }
+        }
+    }
+
+    private static long[] getSortedSourceApplicationIds(Set<Long> sourceApplicationIds) {
+        if (sourceApplicationIds instanceof SortedSourceApplicationIdSet sortedSourceApplicationIdSet) {
+            return sortedSourceApplicationIdSet.getSortedSourceApplicationIds();
+        }
+        return UserPermissionStore.toSortedSourceApplicationIds(sourceApplicationIds);
+    }
+
+    private static UserPermission toUserPermission(UUID objectIdentifier, long[] sortedSourceApplicationIds) {
+        return UserPermission
+                .builder()
+                .objectIdentifier(objectIdentifier)
+                .sourceApplicationIds(new SortedSourceApplicationIdSet(sortedSourceApplicationIds))
+                .build();
+    }
+
+}
@@ -0,0 +1,53 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import no.novari.flyt.resourceserver.security.InFlightRequestCoalescer;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Resolves user permissions from the working set of an {@link OnDemandUserPermissionStore}, and requests users that
+ * are not in it through {@link UserPermissionRequestService}. Concurrent misses for the same user share a single
+ * request. A user without permission is kept in the working set with no source applications, so that such users do
+ * not cause a request each time they authenticate.
+ */
+public class OnDemandUserPermissionProvider implements UserPermissionProvider {
+
+    private final OnDemandUserPermissionStore userPermissionStore;
+    private final UserPermissionRequestService userPermissionRequestService;
+    private final InFlightRequestCoalescer<UUID, long[]> inFlightRequestCoalescer = new InFlightRequestCoalescer<>();
+
+    public OnDemandUserPermissionProvider(
+            OnDemandUserPermissionStore userPermissionStore,
+            UserPermissionRequestService userPermissionRequestService
+    ) {
+        this.userPermissionStore = userPermissionStore;
+        this.userPermissionRequestService = userPermissionRequestService;
+    }
+
+    @Override
+    public Mono<long[]> getSourceApplicationIds(UUID objectIdentifier) {
+        long[] sourceApplicationIds = userPermissionStore.getSourceApplicationIds(objectIdentifier);
+        if (sourceApplicationIds != null) {
+            return Mono.just(sourceApplicationIds);
+        }
+        return inFlightRequestCoalescer.coalesce(objectIdentifier, this::load);
+    }
+
+    private Mono<long[]> load(UUID objectIdentifier) {
+        return Mono.defer(() -> {
+            userPermissionStore.startLoading(objectIdentifier);
+            return userPermissionRequestService.requestUserPermission(objectIdentifier)
+                    .map(userPermission -> UserPermissionStore.toSortedSourceApplicationIds(
+                            userPermission.getSourceApplicationIds()
+                    ))
+                    .defaultIfEmpty(UserPermissionStore.EMPTY_SOURCE_APPLICATION_IDS)
+                    .mapNotNull(sortedSourceApplicationIds -> userPermissionStore.finishLoading(
+                            objectIdentifier,
+                            sortedSourceApplicationIds
+                    ))
+                    .doFinally(signalType -> userPermissionStore.abortLoading(objectIdentifier));
+        });
+    }
+
+}
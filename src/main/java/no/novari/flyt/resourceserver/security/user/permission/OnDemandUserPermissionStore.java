@@ -0,0 +1,195 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded {@link UserPermissionStore} holding the working set of recently active users. Users are added when they are
+ * loaded on demand, see {@link OnDemandUserPermissionProvider}.
+ * <p>
+ * Reads take no lock. Every entry records when it was last read, and once the store grows past its maximum size, the
+ * least recently read users are evicted in batches of at least a sixteenth of the maximum size, so that the entries
+ * are not sorted on every insert.
+ * <p>
+ * Bulk updates from the {@code userpermission} topic only refresh users that are in the working set or are being
+ * loaded, so that consuming the topic does not pull every user into memory. An update or removal that arrives while a
+ * user is being loaded wins over the loaded value, which may have been read before it. Updates, removals and the end
+ * of a load of the same user are applied atomically with respect to each other, by applying them within a compute on
+ * the loading state of the user. Since users missing from the store are loaded on demand, the topic is consumed from
+ * its end instead of being replayed.
+ */
+public class OnDemandUserPermissionStore implements UserPermissionStore {
+
+    private static final int EVICTION_BATCH_DIVISOR = 16;
+
+    private final int maxEntries;
+    private final Map<UUID, Entry> entryPerObjectIdentifier = new ConcurrentHashMap<>();
+    private final Map<UUID, Boolean> updatedWhileLoadingPerObjectIdentifier = new ConcurrentHashMap<>();
+    private final AtomicLong accessClock = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public OnDemandUserPermissionStore(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public long[] getSourceApplicationIds(UUID objectIdentifier) {
+        Entry entry = entryPerObjectIdentifier.get(objectIdentifier);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.lastAccess < accessClock.get()) {
+            entry.lastAccess = accessClock.incrementAndGet();
+        }
+        return entry.sortedSourceApplicationIds;
+    }
+
+    @Override
+    public void put(UUID objectIdentifier, long[] sortedSourceApplicationIds) {
+        updatedWhileLoadingPerObjectIdentifier.compute(objectIdentifier, (key, updatedWhileLoading) -> {
+            entryPerObjectIdentifier.put(key, new Entry(sortedSourceApplicationIds, accessClock.incrementAndGet()));
+            return updatedWhileLoading == null ? null : Boolean.TRUE;
+        });
+        makeRoomIfFull();
+    }
+
+    /**
+     * Refreshes only users that are in the working set or are being loaded. A refresh does not count as a read, so
+     * users that only receive updates are still evicted.
+     *
+     * @return the refreshed users whose stored source application IDs changed
+     */
+    @Override
+    public List<UUID> putAll(Map<UUID, long[]> sortedSourceApplicationIdsPerObjectIdentifier) {
+        List<UUID> changedObjectIdentifiers = new ArrayList<>();
+        sortedSourceApplicationIdsPerObjectIdentifier.forEach((objectIdentifier, sortedSourceApplicationIds) ->
+                updatedWhileLoadingPerObjectIdentifier.compute(objectIdentifier, (key, updatedWhileLoading) -> {
+                    Entry previousEntry = entryPerObjectIdentifier.get(key);
+                    if (previousEntry == null && updatedWhileLoading == null) {
+                        return null;
+                    }
+                    entryPerObjectIdentifier.put(key, new Entry(
+                            sortedSourceApplicationIds,
+                            previousEntry == null ? accessClock.incrementAndGet() : previousEntry.lastAccess
+                    ));
+                    if (previousEntry == null
+                        || !Arrays.equals(previousEntry.sortedSourceApplicationIds, sortedSourceApplicationIds)) {
+                        changedObjectIdentifiers.add(key);
+                    }
+                    return updatedWhileLoading == null ? null : Boolean.TRUE;
+                })
+        );
+        makeRoomIfFull();
+        return changedObjectIdentifiers;
+    }
+
+    @Override
+    public boolean remove(UUID objectIdentifier) {
+        boolean[] removed = new boolean[1];
+        updatedWhileLoadingPerObjectIdentifier.compute(objectIdentifier, (key, updatedWhileLoading) -> {
+            removed[0] = entryPerObjectIdentifier.remove(key) != null;
+            return updatedWhileLoading == null ? null : Boolean.TRUE;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public long size() {
+        return entryPerObjectIdentifier.size();
+    }
+
+    @Override
+    public boolean holdsAllUserPermissions() {
+        return false;
+    }
+
+    @Override
+    public void forEach(SourceApplicationIdsConsumer consumer) {
+        entryPerObjectIdentifier.forEach((objectIdentifier, entry) -> consumer.accept(
+                objectIdentifier.getMostSignificantBits(),
+                objectIdentifier.getLeastSignificantBits(),
+                entry.sortedSourceApplicationIds
+        ));
+    }
+
+    void startLoading(UUID objectIdentifier) {
+        updatedWhileLoadingPerObjectIdentifier.put(objectIdentifier, Boolean.FALSE);
+    }
+
+    /**
+     * Stores the loaded permission, unless the user was updated or removed while loading.
+     *
+     * @return the permission of the user after loading, or {@code null} if the user was removed while loading
+     */
+    long[] finishLoading(UUID objectIdentifier, long[] sortedSourceApplicationIds) {
+        long[][] permissionAfterLoading = new long[1][];
+        updatedWhileLoadingPerObjectIdentifier.compute(objectIdentifier, (key, updatedWhileLoading) -> {
+            if (Boolean.TRUE.equals(updatedWhileLoading)) {
+                Entry entry = entryPerObjectIdentifier.get(key);
+                permissionAfterLoading[0] = entry == null ? null : entry.sortedSourceApplicationIds;
+            } else {
+                entryPerObjectIdentifier.put(key, new Entry(sortedSourceApplicationIds, accessClock.incrementAndGet()));
+                permissionAfterLoading[0] = sortedSourceApplicationIds;
+            }
+            return null;
+        });
+        makeRoomIfFull();
+        return permissionAfterLoading[0];
+    }
+
+    void abortLoading(UUID objectIdentifier) {
+        updatedWhileLoadingPerObjectIdentifier.remove(objectIdentifier);
+    }
+
+    /**
+     * Only one thread evicts at a time; others proceed without waiting, so the store may briefly exceed its maximum
+     * size under concurrent inserts. The last access of each entry is read once before sorting, and an entry replaced
+     * since then is kept.
+     */
+    private void makeRoomIfFull() {
+        if (entryPerObjectIdentifier.size() <= maxEntries || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int numberOfExcessEntries = entryPerObjectIdentifier.size() - maxEntries;
+            if (numberOfExcessEntries <= 0) {
+                return;
+            }
+            entryPerObjectIdentifier.entrySet()
+                    .stream()
+                    .map(entry -> new EvictionCandidate(entry.getKey(), entry.getValue(), entry.getValue().lastAccess))
+                    .sorted(Comparator.comparingLong(EvictionCandidate::lastAccess))
+                    .limit(Math.max(numberOfExcessEntries, maxEntries / EVICTION_BATCH_DIVISOR))
+                    .toList()
+                    .forEach(candidate -> entryPerObjectIdentifier.remove(
+                            candidate.objectIdentifier(),
+                            candidate.entry()
+                    ));
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static final class Entry {
+
+        private final long[] sortedSourceApplicationIds;
+        private volatile long lastAccess;
+
+        private Entry(long[] sortedSourceApplicationIds, long lastAccess) {
+            this.sortedSourceApplicationIds = sortedSourceApplicationIds;
+            this.lastAccess = lastAccess;
+        }
+
+    }
+
+    private record EvictionCandidate(UUID objectIdentifier, Entry entry, long lastAccess) {
+    }
+
+}
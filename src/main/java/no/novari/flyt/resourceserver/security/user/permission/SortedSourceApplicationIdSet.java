@@ -0,0 +1,63 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable {@code Set<Long>} view of a sorted array of source application IDs, so that a {@link UserPermission} can
+ * be stored without boxing its IDs into a hash set and the sorted array can be read back without sorting again.
+ */
+final class SortedSourceApplicationIdSet extends AbstractSet<Long> {
+
+    private final long[] sortedSourceApplicationIds;
+
+    /**
+     * @param sortedSourceApplicationIds sorted source application IDs, which are kept without copying and must not be
+     *                                   modified afterwards
+     */
+    SortedSourceApplicationIdSet(long[] sortedSourceApplicationIds) {
+        this.sortedSourceApplicationIds = sortedSourceApplicationIds;
+    }
+
+    /**
+     * @return the sorted source application IDs, shared with this set; must not be modified
+     */
+    long[] getSortedSourceApplicationIds() {
+        return sortedSourceApplicationIds;
+    }
+
+    @Override
+    public int size() {
+        return sortedSourceApplicationIds.length;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return object instanceof Long sourceApplicationId
+               && Arrays.binarySearch(sortedSourceApplicationIds, sourceApplicationId) >= 0;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < sortedSourceApplicationIds.length;
+            }
+
+            @Override
+            public Long next() {
+                if (index >= sortedSourceApplicationIds.length) {
+                    throw new NoSuchElementException();
+                }
+                return sortedSourceApplicationIds[index++];
+            }
+        };
+    }
+
+}
@@ -0,0 +1,22 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Resolves user permissions from a {@link UserPermissionStore} that holds every user of the {@code userpermission}
+ * topic, so that a user missing from the store has no permission.
+ */
+@RequiredArgsConstructor
+public class StoredUserPermissionProvider implements UserPermissionProvider {
+
+    private final UserPermissionStore userPermissionStore;
+
+    @Override
+    public Mono<long[]> getSourceApplicationIds(UUID objectIdentifier) {
+        return Mono.justOrEmpty(userPermissionStore.getSourceApplicationIds(objectIdentifier));
+    }
+
+}
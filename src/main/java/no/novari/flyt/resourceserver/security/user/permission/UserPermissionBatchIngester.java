@@ -0,0 +1,160 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import lombok.extern.slf4j.Slf4j;
+import no.novari.flyt.resourceserver.security.VerifiedTokenCache;
+import no.novari.flyt.resourceserver.security.properties.UserPermissionIngestionProperties;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Applies each poll batch of the {@code userpermission} topic to the {@link UserPermissionStore} as a unit. Only the
+ * last record per user in a batch is applied, the records are converted to sorted source application ID arrays,
+ * optionally in parallel for large batches, and the result is stored with one bulk operation.
+ * <p>
+ * A record without value is a tombstone and removes the user from the store. Since the last record per user wins,
+ * a tombstone followed by a new permission in the same batch stores the permission, and vice versa. This keeps the
+ * store equal to the latest state of a compacted {@code userpermission} topic, and keeps users that no longer exist
+ * from accumulating in memory.
+ * <p>
+ * Cached authentications in the {@link VerifiedTokenCache} are invalidated only for users whose stored source
+ * application IDs changed or who were removed, so that replaying the topic does not empty the cache. Stores that only
+ * hold a working set of users cannot tell whether the permission of a user outside it changed, so with those every
+ * user in the batch is invalidated.
+ * <p>
+ * Records with a key that is not an object identifier are skipped.
+ */
+@Slf4j
+public class UserPermissionBatchIngester {
+
+    private final UserPermissionStore userPermissionStore;
+    private final UserPermissionConsumedOffsets consumedOffsets;
+    private final UserPermissionCatchUpTracker catchUpTracker;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final UserPermissionIngestionProperties ingestionProperties;
+
+    public UserPermissionBatchIngester(
+            UserPermissionStore userPermissionStore,
+            UserPermissionConsumedOffsets consumedOffsets,
+            UserPermissionCatchUpTracker catchUpTracker,
+            VerifiedTokenCache verifiedTokenCache,
+            UserPermissionIngestionProperties ingestionProperties
+    ) {
+        this.userPermissionStore = userPermissionStore;
+        this.consumedOffsets = consumedOffsets;
+        this.catchUpTracker = catchUpTracker;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.ingestionProperties = ingestionProperties;
+    }
+
+    public void ingest(List<ConsumerRecord<String, UserPermission>> consumerRecords) {
+        Map<String, UserPermission> lastUserPermissionPerKey = HashMap.newHashMap(consumerRecords.size());
+        Map<Integer, Long> lastOffsetPerPartition = new HashMap<>();
+        for (ConsumerRecord<String, UserPermission> consumerRecord : consumerRecords) {
+            lastOffsetPerPartition.merge(consumerRecord.partition(), consumerRecord.offset(), Math::max);
+            if (consumerRecord.key() == null) {
+                log.warn(
+                        "Skipping user permission without key at partition={} offset={}",
+                        consumerRecord.partition(),
+                        consumerRecord.offset()
+                );
+                continue;
+            }
+            lastUserPermissionPerKey.put(consumerRecord.key(), consumerRecord.value());
+        }
+
+        List<UUID> deletedObjectIdentifiers = new ArrayList<>();
+        Map<String, UserPermission> lastUserPermissionPerKeyToStore = HashMap.newHashMap(
+                lastUserPermissionPerKey.size()
+        );
+        lastUserPermissionPerKey.forEach((key, userPermission) -> {
+            if (userPermission != null) {
+                lastUserPermissionPerKeyToStore.put(key, userPermission);
+                return;
+            }
+            UUID objectIdentifier = toObjectIdentifier(key);
+            if (objectIdentifier != null) {
+                deletedObjectIdentifiers.add(objectIdentifier);
+            }
+        });
+
+        Map<UUID, long[]> sortedSourceApplicationIdsPerObjectIdentifier = toSortedSourceApplicationIds(
+                lastUserPermissionPerKeyToStore
+        );
+        List<UUID> changedObjectIdentifiers = userPermissionStore.putAll(
+                sortedSourceApplicationIdsPerObjectIdentifier
+        );
+        List<UUID> removedObjectIdentifiers = deletedObjectIdentifiers.isEmpty()
+                ? List.of()
+                : userPermissionStore.removeAll(deletedObjectIdentifiers);
+        if (userPermissionStore.holdsAllUserPermissions()) {
+            changedObjectIdentifiers.forEach(this::invalidateVerifiedTokens);
+            removedObjectIdentifiers.forEach(this::invalidateVerifiedTokens);
+        } else {
+            sortedSourceApplicationIdsPerObjectIdentifier.keySet().forEach(this::invalidateVerifiedTokens);
+            deletedObjectIdentifiers.forEach(this::invalidateVerifiedTokens);
+        }
+        lastOffsetPerPartition.forEach(consumedOffsets::recordConsumed);
+        catchUpTracker.recordsConsumed(consumerRecords.size());
+        catchUpTracker.userPermissionsDeleted(removedObjectIdentifiers.size());
+        log.debug(
+                "Consumed {} user permission records for {} distinct users, changing {} and deleting {} users",
+                consumerRecords.size(),
+                sortedSourceApplicationIdsPerObjectIdentifier.size() + deletedObjectIdentifiers.size(),
+                changedObjectIdentifiers.size(),
+                removedObjectIdentifiers.size()
+        );
+    }
+
+    private void invalidateVerifiedTokens(UUID objectIdentifier) {
+        verifiedTokenCache.invalidate(VerifiedTokenCache.userPrincipal(objectIdentifier));
+    }
+
+    private Map<UUID, long[]> toSortedSourceApplicationIds(Map<String, UserPermission> userPermissionPerKey) {
+        Collection<Map.Entry<String, UserPermission>> entries = userPermissionPerKey.entrySet();
+        boolean parallel = ingestionProperties.isParallelApplyEnabled()
+                           && entries.size() >= ingestionProperties.getParallelApplyMinBatchSize();
+        Stream<Map.Entry<String, UserPermission>> stream = parallel ? entries.parallelStream() : entries.stream();
+        return stream
+                .map(UserPermissionBatchIngester::toObjectIdentifierAndSourceApplicationIds)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        Map.Entry::getValue,
+                        (first, second) -> second,
+                        LinkedHashMap::new
+                ));
+    }
+
+    private static Map.Entry<UUID, long[]> toObjectIdentifierAndSourceApplicationIds(
+            Map.Entry<String, UserPermission> entry
+    ) {
+        UUID objectIdentifier = toObjectIdentifier(entry.getKey());
+        if (objectIdentifier == null) {
+            return null;
+        }
+        return Map.entry(
+                objectIdentifier,
+                UserPermissionStore.toSortedSourceApplicationIds(entry.getValue().getSourceApplicationIds())
+        );
+    }
+
+    private static UUID toObjectIdentifier(String key) {
+        try {
+            return UUID.fromString(key);
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping user permission with invalid object identifier {}", key);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * Reports {@code DOWN} until the user permission listener has consumed the {@code userpermission} topic up to the end
+ * offsets captured when its partitions were assigned. Until then, users may be missing source application
+ * authorities. Intended for the readiness group, e.g.
+ * {@code management.endpoint.health.group.readiness.include=readinessState,userPermissionCatchUp}.
+ * <p>
+ * Stores that load missing users on demand do not replay the topic, see
+ * {@link UserPermissionStore#holdsAllUserPermissions()}, and are always reported as {@code UP}.
+ */
+public class UserPermissionCatchUpHealthIndicator implements HealthIndicator {
+
+    private final UserPermissionCatchUpTracker catchUpTracker;
+    private final UserPermissionStore userPermissionStore;
+
+    public UserPermissionCatchUpHealthIndicator(
+            UserPermissionCatchUpTracker catchUpTracker,
+            UserPermissionStore userPermissionStore
+    ) {
+        this.catchUpTracker = catchUpTracker;
+        this.userPermissionStore = userPermissionStore;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = !userPermissionStore.holdsAllUserPermissions() || catchUpTracker.isCaughtUp()
+                ? Health.up()
+                : Health.down();
+        return builder
+                .withDetail("lagPerPartition", catchUpTracker.getLagPerPartition())
+                .withDetail("consumedRecords", catchUpTracker.getNumberOfConsumedRecords())
+                .withDetail("liveUserPermissions", userPermissionStore.size())
+                .withDetail("deletedUserPermissions", catchUpTracker.getNumberOfDeletedUserPermissions())
+                .build();
+    }
+
+}
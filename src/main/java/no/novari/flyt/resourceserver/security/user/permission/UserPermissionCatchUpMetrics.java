@@ -0,0 +1,71 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.OptionalLong;
+
+/**
+ * Publishes the replay progress of the user permission listener: a lag gauge per assigned partition, measured against
+ * the end offset captured at assignment, a counter of consumed records whose rate is the replay throughput, and
+ * whether the store has caught up. Also publishes the number of users in the store and a counter of users removed by
+ * tombstones.
+ */
+public class UserPermissionCatchUpMetrics implements MeterBinder {
+
+    private final UserPermissionCatchUpTracker catchUpTracker;
+    private final UserPermissionStore userPermissionStore;
+
+    public UserPermissionCatchUpMetrics(
+            UserPermissionCatchUpTracker catchUpTracker,
+            UserPermissionStore userPermissionStore
+    ) {
+        this.catchUpTracker = catchUpTracker;
+        this.userPermissionStore = userPermissionStore;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(
+                        "flyt.resource-server.user-permission.consumed",
+                        catchUpTracker,
+                        UserPermissionCatchUpTracker::getNumberOfConsumedRecords
+                )
+                .description("User permission records consumed")
+                .register(registry);
+        Gauge.builder(
+                        "flyt.resource-server.user-permission.caught-up",
+                        catchUpTracker,
+                        tracker -> tracker.isCaughtUp() ? 1 : 0
+                )
+                .description("Whether user permissions have been consumed up to the end offsets at assignment")
+                .register(registry);
+        Gauge.builder("flyt.resource-server.user-permission.live", userPermissionStore, UserPermissionStore::size)
+                .description("Users with a stored permission")
+                .register(registry);
+        FunctionCounter.builder(
+                        "flyt.resource-server.user-permission.deleted",
+                        catchUpTracker,
+                        UserPermissionCatchUpTracker::getNumberOfDeletedUserPermissions
+                )
+                .description("Users removed from the store by user permission tombstones")
+                .register(registry);
+        catchUpTracker.addPartitionAssignmentListener(partition -> Gauge.builder(
+                                "flyt.resource-server.user-permission.lag",
+                                catchUpTracker,
+                                tracker -> getLag(tracker, partition)
+                        )
+                        .description("User permission records left to consume up to the end offset at assignment")
+                        .tag("partition", String.valueOf(partition))
+                        .register(registry)
+        );
+    }
+
+    private static double getLag(UserPermissionCatchUpTracker catchUpTracker, int partition) {
+        OptionalLong lag = catchUpTracker.getLag(partition);
+        return lag.isPresent() ? lag.getAsLong() : Double.NaN;
+    }
+
+}
@@ -0,0 +1,149 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Tracks how far the user permission listener has come in consuming the {@code userpermission} topic. When
+ * partitions are assigned, their end offsets are captured as the catch-up target, and the store is considered caught
+ * up once every assigned partition has been consumed up to its target.
+ * <p>
+ * Progress is taken from the consumer position after each processed batch, as reported by
+ * {@link UserPermissionConsumerPositionInterceptor}, and from the offsets applied to the store, whichever is further.
+ * The consumer position also moves past records skipped by the error handler and past transaction markers, which are
+ * never applied to the store.
+ * <p>
+ * Catching up is latched: once the initial replay has completed, later rebalances do not report the store as
+ * incomplete again, so that a rebalance during a rolling deploy cannot take every instance out of rotation at once.
+ */
+@Slf4j
+public class UserPermissionCatchUpTracker {
+
+    private final UserPermissionConsumedOffsets consumedOffsets;
+    private final Clock clock;
+    private final long createdAtMillis;
+    private final Map<Integer, Long> startOffsetPerPartition = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> endOffsetAtAssignmentPerPartition = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> positionPerPartition = new ConcurrentHashMap<>();
+    private final AtomicLong numberOfConsumedRecords = new AtomicLong();
+    private final AtomicLong numberOfDeletedUserPermissions = new AtomicLong();
+    private final List<IntConsumer> partitionAssignmentListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean assigned;
+    private volatile boolean caughtUp;
+
+    public UserPermissionCatchUpTracker(UserPermissionConsumedOffsets consumedOffsets, Clock clock) {
+        this.consumedOffsets = consumedOffsets;
+        this.clock = clock;
+        this.createdAtMillis = clock.millis();
+    }
+
+    public void partitionsAssigned(Map<Integer, Long> startOffsetPerPartition, Map<Integer, Long> endOffsetPerPartition) {
+        this.startOffsetPerPartition.putAll(startOffsetPerPartition);
+        this.endOffsetAtAssignmentPerPartition.putAll(endOffsetPerPartition);
+        assigned = true;
+        endOffsetPerPartition.keySet().forEach(partition ->
+                partitionAssignmentListeners.forEach(listener -> listener.accept(partition))
+        );
+    }
+
+    public void partitionsRevoked(Collection<Integer> partitions) {
+        partitions.forEach(partition -> {
+            startOffsetPerPartition.remove(partition);
+            endOffsetAtAssignmentPerPartition.remove(partition);
+            positionPerPartition.remove(partition);
+        });
+    }
+
+    /**
+     * @param position offset of the next record the consumer will fetch from the partition
+     */
+    public void positionReached(int partition, long position) {
+        if (endOffsetAtAssignmentPerPartition.containsKey(partition)) {
+            positionPerPartition.merge(partition, position, Math::max);
+        }
+    }
+
+    public void recordsConsumed(int numberOfRecords) {
+        numberOfConsumedRecords.addAndGet(numberOfRecords);
+    }
+
+    /**
+     * @param numberOfUserPermissions number of users that were removed from the store by tombstones
+     */
+    public void userPermissionsDeleted(int numberOfUserPermissions) {
+        numberOfDeletedUserPermissions.addAndGet(numberOfUserPermissions);
+    }
+
+    public void addPartitionAssignmentListener(IntConsumer partitionAssignmentListener) {
+        partitionAssignmentListeners.add(partitionAssignmentListener);
+        endOffsetAtAssignmentPerPartition.keySet().forEach(partitionAssignmentListener::accept);
+    }
+
+    public boolean isCaughtUp() {
+        if (caughtUp) {
+            return true;
+        }
+        if (!assigned) {
+            return false;
+        }
+        for (Integer partition : endOffsetAtAssignmentPerPartition.keySet()) {
+            OptionalLong lag = getLag(partition);
+            if (lag.isPresent() && lag.getAsLong() > 0) {
+                return false;
+            }
+        }
+        caughtUp = true;
+        log.info(
+                "User permissions caught up after {} with {} consumed records",
+                Duration.ofMillis(clock.millis() - createdAtMillis),
+                numberOfConsumedRecords.get()
+        );
+        return true;
+    }
+
+    /**
+     * @return the number of records between the consumer position of the partition and the end offset captured when
+     * it was assigned, or empty if the partition is not assigned
+     */
+    public OptionalLong getLag(int partition) {
+        Long endOffset = endOffsetAtAssignmentPerPartition.get(partition);
+        if (endOffset == null) {
+            return OptionalLong.empty();
+        }
+        long position = Math.max(
+                startOffsetPerPartition.getOrDefault(partition, 0L),
+                Math.max(
+                        positionPerPartition.getOrDefault(partition, 0L),
+                        consumedOffsets.getNextOffset(partition).orElse(0L)
+                )
+        );
+        return OptionalLong.of(Math.max(0, endOffset - position));
+    }
+
+    public Map<Integer, Long> getLagPerPartition() {
+        Map<Integer, Long> lagPerPartition = new ConcurrentHashMap<>();
+        endOffsetAtAssignmentPerPartition.keySet().forEach(partition ->
+                getLag(partition).ifPresent(lag -> lagPerPartition.put(partition, lag))
+        );
+        return lagPerPartition;
+    }
+
+    public long getNumberOfConsumedRecords() {
+        return numberOfConsumedRecords.get();
+    }
+
+    public long getNumberOfDeletedUserPermissions() {
+        return numberOfDeletedUserPermissions.get();
+    }
+
+}
@@ -0,0 +1,34 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Next offset to consume per partition of the {@code userpermission} topic, as far as it has been applied to the
+ * {@link UserPermissionStore}.
+ */
+public class UserPermissionConsumedOffsets {
+
+    private final Map<Integer, Long> nextOffsetPerPartition = new ConcurrentHashMap<>();
+
+    public void recordConsumed(int partition, long offset) {
+        nextOffsetPerPartition.merge(partition, offset + 1, Math::max);
+    }
+
+    public OptionalLong getNextOffset(int partition) {
+        Long nextOffset = nextOffsetPerPartition.get(partition);
+        return nextOffset == null ? OptionalLong.empty() : OptionalLong.of(nextOffset);
+    }
+
+    public Map<Integer, Long> getNextOffsetPerPartition() {
+        return Map.copyOf(nextOffsetPerPartition);
+    }
+
+    public void restore(Map<Integer, Long> nextOffsetPerPartition) {
+        nextOffsetPerPartition.forEach((partition, nextOffset) ->
+                this.nextOffsetPerPartition.merge(partition, nextOffset, Math::max)
+        );
+    }
+
+}
@@ -0,0 +1,50 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.BatchInterceptor;
+
+/**
+ * Reports the consumer position of every assigned partition of the user permission listener to the
+ * {@link UserPermissionCatchUpTracker} once a batch has been processed. Failed batches are reported as well, since the
+ * error handler of the listener skips them without retries or seeking back, and the catch-up tracker relies on the
+ * consumer position to see that records never applied to the store have been passed.
+ */
+public class UserPermissionConsumerPositionInterceptor implements BatchInterceptor<String, UserPermission> {
+
+    private final UserPermissionCatchUpTracker catchUpTracker;
+
+    public UserPermissionConsumerPositionInterceptor(UserPermissionCatchUpTracker catchUpTracker) {
+        this.catchUpTracker = catchUpTracker;
+    }
+
+    @Override
+    public ConsumerRecords<String, UserPermission> intercept(
+            ConsumerRecords<String, UserPermission> records,
+            Consumer<String, UserPermission> consumer
+    ) {
+        return records;
+    }
+
+    @Override
+    public void success(ConsumerRecords<String, UserPermission> records, Consumer<String, UserPermission> consumer) {
+        reportPositions(consumer);
+    }
+
+    @Override
+    public void failure(
+            ConsumerRecords<String, UserPermission> records,
+            Exception exception,
+            Consumer<String, UserPermission> consumer
+    ) {
+        reportPositions(consumer);
+    }
+
+    private void reportPositions(Consumer<String, UserPermission> consumer) {
+        for (TopicPartition partition : consumer.assignment()) {
+            catchUpTracker.positionReached(partition.partition(), consumer.position(partition));
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Resolves the sorted source application IDs a user has been granted. Completes empty when no permission is known for
+ * the user. The emitted array is shared and must not be modified.
+ */
+public interface UserPermissionProvider {
+
+    Mono<long[]> getSourceApplicationIds(UUID objectIdentifier);
+
+}
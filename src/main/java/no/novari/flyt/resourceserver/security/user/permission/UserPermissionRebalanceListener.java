@@ -0,0 +1,141 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * Reports partition assignments of the user permission listener to the {@link UserPermissionCatchUpTracker}, with the
+ * position consumption starts from and the end offset at assignment.
+ * <p>
+ * When resuming from consumed offsets, every assigned partition is sought to the next offset not yet applied to the
+ * {@link UserPermissionStore}, so that permissions restored from a snapshot or consumed before a rebalance are not
+ * replayed. Partitions without a known offset, or whose known offset is no longer within the partition, are left to
+ * the listener's default position at the beginning of the partition.
+ * <p>
+ * When starting from the end, every assigned partition is sought to its end offset, so that only updates produced
+ * after the assignment are consumed and the partition is caught up at once.
+ * <p>
+ * Any rebalance listener already set on the container is invoked first.
+ */
+@Slf4j
+public class UserPermissionRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    public enum StartPosition {
+        BEGINNING,
+        CONSUMED_OFFSETS,
+        END
+    }
+
+    private final ConsumerRebalanceListener delegate;
+    private final UserPermissionConsumedOffsets consumedOffsets;
+    private final StartPosition startPosition;
+    private final UserPermissionCatchUpTracker catchUpTracker;
+
+    public UserPermissionRebalanceListener(
+            ConsumerRebalanceListener delegate,
+            UserPermissionConsumedOffsets consumedOffsets,
+            StartPosition startPosition,
+            UserPermissionCatchUpTracker catchUpTracker
+    ) {
+        this.delegate = delegate;
+        this.consumedOffsets = consumedOffsets;
+        this.startPosition = startPosition;
+        this.catchUpTracker = catchUpTracker;
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (delegate instanceof ConsumerAwareRebalanceListener consumerAwareDelegate) {
+            consumerAwareDelegate.onPartitionsRevokedBeforeCommit(consumer, partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (delegate instanceof ConsumerAwareRebalanceListener consumerAwareDelegate) {
+            consumerAwareDelegate.onPartitionsRevokedAfterCommit(consumer, partitions);
+        } else if (delegate != null) {
+            delegate.onPartitionsRevoked(partitions);
+        }
+        catchUpTracker.partitionsRevoked(toPartitionNumbers(partitions));
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (delegate instanceof ConsumerAwareRebalanceListener consumerAwareDelegate) {
+            consumerAwareDelegate.onPartitionsLost(consumer, partitions);
+        } else if (delegate != null) {
+            delegate.onPartitionsLost(partitions);
+        }
+        catchUpTracker.partitionsRevoked(toPartitionNumbers(partitions));
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (delegate instanceof ConsumerAwareRebalanceListener consumerAwareDelegate) {
+            consumerAwareDelegate.onPartitionsAssigned(consumer, partitions);
+        } else if (delegate != null) {
+            delegate.onPartitionsAssigned(partitions);
+        }
+        if (partitions.isEmpty()) {
+            return;
+        }
+        Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(partitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+        Map<Integer, Long> startOffsetPerPartition = HashMap.newHashMap(partitions.size());
+        Map<Integer, Long> endOffsetPerPartition = HashMap.newHashMap(partitions.size());
+        if (startPosition == StartPosition.END) {
+            consumer.seekToEnd(partitions);
+        }
+        for (TopicPartition partition : partitions) {
+            long beginningOffset = beginningOffsets.getOrDefault(partition, 0L);
+            long endOffset = endOffsets.getOrDefault(partition, beginningOffset);
+            startOffsetPerPartition.put(
+                    partition.partition(),
+                    switch (startPosition) {
+                        case BEGINNING -> beginningOffset;
+                        case CONSUMED_OFFSETS -> resume(consumer, partition, beginningOffset, endOffset);
+                        case END -> endOffset;
+                    }
+            );
+            endOffsetPerPartition.put(partition.partition(), endOffset);
+        }
+        catchUpTracker.partitionsAssigned(startOffsetPerPartition, endOffsetPerPartition);
+    }
+
+    private long resume(Consumer<?, ?> consumer, TopicPartition partition, long beginningOffset, long endOffset) {
+        OptionalLong nextOffset = consumedOffsets.getNextOffset(partition.partition());
+        if (nextOffset.isEmpty()) {
+            return beginningOffset;
+        }
+        if (nextOffset.getAsLong() < beginningOffset || nextOffset.getAsLong() > endOffset) {
+            log.warn(
+                    "Known offset {} of {} is outside [{}, {}], consuming from the beginning",
+                    nextOffset.getAsLong(),
+                    partition,
+                    beginningOffset,
+                    endOffset
+            );
+            return beginningOffset;
+        }
+        log.info("Resuming {} from offset {}", partition, nextOffset.getAsLong());
+        consumer.seek(partition, nextOffset.getAsLong());
+        return nextOffset.getAsLong();
+    }
+
+    private static List<Integer> toPartitionNumbers(Collection<TopicPartition> partitions) {
+        return partitions.stream()
+                .map(TopicPartition::partition)
+                .toList();
+    }
+
+}
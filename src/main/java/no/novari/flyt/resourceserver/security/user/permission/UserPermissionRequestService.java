@@ -0,0 +1,134 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import no.novari.flyt.resourceserver.security.RequestBulkhead;
+import no.novari.flyt.resourceserver.security.RequestCircuitBreaker;
+import no.novari.flyt.resourceserver.security.RequestDeadline;
+import no.novari.flyt.resourceserver.security.properties.UserPermissionStoreProperties;
+import no.novari.kafka.consuming.ListenerConfiguration;
+import no.novari.kafka.requestreply.RequestProducerRecord;
+import no.novari.kafka.requestreply.RequestTemplate;
+import no.novari.kafka.requestreply.RequestTemplateFactory;
+import no.novari.kafka.requestreply.topic.ReplyTopicService;
+import no.novari.kafka.requestreply.topic.configuration.ReplyTopicConfiguration;
+import no.novari.kafka.requestreply.topic.name.ReplyTopicNameParameters;
+import no.novari.kafka.requestreply.topic.name.RequestTopicNameParameters;
+import no.novari.kafka.topic.name.TopicNamePrefixParameters;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Requests the permission of a single user by object identifier over Kafka request/reply, for user permission stores
+ * that only hold a working set of users.
+ * <p>
+ * {@link RequestTemplate} only offers a blocking {@code requestAndReceive}, so exchanges run on a dedicated scheduler
+ * capped at {@code max-concurrent-requests} threads and queued tasks, so that slow replies can neither park the Netty
+ * event loop nor exhaust the shared bounded elastic scheduler of the host application.
+ */
+public class UserPermissionRequestService implements DisposableBean {
+
+    private final RequestTopicNameParameters requestTopicNameParameters;
+    private final RequestTemplate<String, UserPermission> requestTemplate;
+    private final RequestCircuitBreaker requestCircuitBreaker;
+    private final RequestBulkhead requestBulkhead;
+    private final Scheduler requestScheduler;
+
+    public UserPermissionRequestService(
+            @Value("${novari.kafka.application-id}") String applicationId,
+            UserPermissionStoreProperties userPermissionStoreProperties,
+            RequestCircuitBreaker requestCircuitBreaker,
+            RequestBulkhead requestBulkhead,
+            RequestTemplateFactory requestTemplateFactory,
+            ReplyTopicService replyTopicService
+    ) {
+        this.requestCircuitBreaker = requestCircuitBreaker;
+        this.requestBulkhead = requestBulkhead;
+        String replyApplicationId = userPermissionStoreProperties.getReplyRouting().createReplyApplicationId(
+                applicationId,
+                userPermissionStoreProperties.getInstanceId(),
+                "user-permission-store.instance-id"
+        );
+        this.requestScheduler = Schedulers.newBoundedElastic(
+                userPermissionStoreProperties.getMaxConcurrentRequests(),
+                userPermissionStoreProperties.getMaxConcurrentRequests(),
+                "user-permission-request"
+        );
+        requestTopicNameParameters = RequestTopicNameParameters
+                .builder()
+                .topicNamePrefixParameters(createTopicNamePrefixParameters())
+                .resourceName("userpermission")
+                .parameterName("object-identifier")
+                .build();
+        ReplyTopicNameParameters replyTopicNameParameters = ReplyTopicNameParameters
+                .builder()
+                .topicNamePrefixParameters(createTopicNamePrefixParameters())
+                .applicationId(replyApplicationId)
+                .resourceName("userpermission")
+                .build();
+        replyTopicService.createOrModifyTopic(
+                replyTopicNameParameters,
+                ReplyTopicConfiguration.builder()
+                        .retentionTime(Duration.ofMinutes(2))
+                        .build()
+        );
+        requestTemplate = requestTemplateFactory.createTemplate(
+                replyTopicNameParameters,
+                String.class,
+                UserPermission.class,
+                userPermissionStoreProperties.getReplyTimeout(),
+                ListenerConfiguration.stepBuilder()
+                        .groupIdApplicationDefault()
+                        .maxPollRecordsKafkaDefault()
+                        .maxPollIntervalKafkaDefault()
+                        .continueFromPreviousOffsetOnAssignment()
+                        .build()
+        );
+    }
+
+    private static TopicNamePrefixParameters createTopicNamePrefixParameters() {
+        return TopicNamePrefixParameters
+                .stepBuilder()
+                .orgIdApplicationDefault()
+                .domainContextApplicationDefault()
+                .build();
+    }
+
+    /**
+     * The reply is awaited on the request scheduler of the service, so that callers on the Netty event loop are never
+     * parked while waiting for Kafka. Completes empty when the reply carries no permission. Every exchange passes
+     * through the bulkhead and circuit breaker, and the caller stops waiting once the {@link RequestDeadline} of the
+     * subscribing exchange has passed. The bulkhead permit is held until the blocking exchange returns, at the latest
+     * when the reply timeout passes.
+     */
+    public Mono<UserPermission> requestUserPermission(UUID objectIdentifier) {
+        return RequestDeadline.timeout(
+                requestCircuitBreaker.protect(() -> requestBulkhead.protectBlocking(
+                        () -> requestAndReceive(objectIdentifier),
+                        requestScheduler
+                )),
+                Clock.systemUTC()
+        );
+    }
+
+    private UserPermission requestAndReceive(UUID objectIdentifier) {
+        return requestTemplate.requestAndReceive(
+                RequestProducerRecord
+                        .<String>builder()
+                        .topicNameParameters(requestTopicNameParameters)
+                        .value(objectIdentifier.toString())
+                        .build()
+        ).value();
+    }
+
+    @Override
+    public void destroy() {
+        requestScheduler.dispose();
+    }
+
+}
@@ -0,0 +1,222 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import lombok.extern.slf4j.Slf4j;
+import no.novari.flyt.resourceserver.security.properties.UserPermissionSnapshotProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Keeps a local snapshot of the {@link UserPermissionStore} together with the consumed offset of every partition of
+ * the {@code userpermission} topic, so that a restarted instance only has to consume what was published since the
+ * snapshot was written instead of replaying the whole topic.
+ * <p>
+ * The snapshot is written periodically and on shutdown, to a temporary file that atomically replaces the previous
+ * snapshot. It is read through a memory-mapped buffer, and is ignored if its CRC-32C checksum does not match. Offsets
+ * are captured before the store is read, so a snapshot never claims to contain records it does not; records applied
+ * while writing are simply consumed again after a restart.
+ * <p>
+ * Snapshots older than the configured max age are ignored. On a compacted topic, tombstones are only retained for
+ * {@code delete.retention.ms}, so resuming from an older snapshot could miss deletions; the max age must be shorter
+ * than that retention.
+ * <p>
+ * File layout: magic, version, written-at epoch millis, number of partitions, then a partition and next offset pair
+ * per partition, then per user the object identifier as two longs, the number of source applications and the
+ * sorted source application IDs, and finally the number of users and the checksum of everything before it.
+ */
+@Slf4j
+public class UserPermissionSnapshotService implements InitializingBean, DisposableBean {
+
+    private static final int MAGIC = 0x46555053;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int TRAILER_SIZE = Long.BYTES + Long.BYTES;
+
+    private final UserPermissionSnapshotProperties snapshotProperties;
+    private final UserPermissionStore userPermissionStore;
+    private final UserPermissionConsumedOffsets consumedOffsets;
+    private final Scheduler scheduler;
+    private final Clock clock;
+    private Disposable scheduledWrite;
+
+    public UserPermissionSnapshotService(
+            UserPermissionSnapshotProperties snapshotProperties,
+            UserPermissionStore userPermissionStore,
+            UserPermissionConsumedOffsets consumedOffsets,
+            Scheduler scheduler,
+            Clock clock
+    ) {
+        this.snapshotProperties = snapshotProperties;
+        this.userPermissionStore = userPermissionStore;
+        this.consumedOffsets = consumedOffsets;
+        this.scheduler = scheduler;
+        this.clock = clock;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        load();
+        long intervalMillis = snapshotProperties.getInterval().toMillis();
+        scheduledWrite = scheduler.schedulePeriodically(
+                this::writeAndLogFailure,
+                intervalMillis,
+                intervalMillis,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduledWrite != null) {
+            scheduledWrite.dispose();
+        }
+        writeAndLogFailure();
+    }
+
+    /**
+     * @return {@code true} if a valid snapshot was loaded into the store
+     */
+    public boolean load() {
+        Path path = snapshotProperties.getPath();
+        if (!Files.isRegularFile(path)) {
+            log.info("No user permission snapshot found at {}", path);
+            return false;
+        }
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+            if (fileSize > Integer.MAX_VALUE || fileSize < HEADER_SIZE + TRAILER_SIZE) {
+                log.warn("Ignoring user permission snapshot at {} with unexpected size {}", path, fileSize);
+                return false;
+            }
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            int checksummedSize = (int) fileSize - Long.BYTES;
+            CRC32C checksum = new CRC32C();
+            checksum.update(buffer.slice(0, checksummedSize));
+            if (checksum.getValue() != buffer.getLong(checksummedSize)) {
+                log.warn("Ignoring user permission snapshot at {} with invalid checksum", path);
+                return false;
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Ignoring user permission snapshot at {} with unknown format", path);
+                return false;
+            }
+            long writtenAtMillis = buffer.getLong();
+            Duration age = Duration.ofMillis(clock.millis() - writtenAtMillis);
+            if (age.compareTo(snapshotProperties.getMaxAge()) > 0) {
+                log.info("Ignoring user permission snapshot at {} written {} ago", path, age);
+                return false;
+            }
+            Map<Integer, Long> nextOffsetPerPartition = readOffsets(buffer);
+            long numberOfUsers = buffer.getLong(checksummedSize - Long.BYTES);
+            ByteBuffer entries = buffer.slice(buffer.position(), checksummedSize - Long.BYTES - buffer.position());
+            for (long i = 0; i < numberOfUsers; i++) {
+                UUID objectIdentifier = new UUID(entries.getLong(), entries.getLong());
+                long[] sortedSourceApplicationIds = new long[entries.getInt()];
+                entries.asLongBuffer().get(sortedSourceApplicationIds);
+                entries.position(entries.position() + sortedSourceApplicationIds.length * Long.BYTES);
+                userPermissionStore.put(
+                        objectIdentifier,
+                        sortedSourceApplicationIds.length == 0
+                                ? UserPermissionStore.EMPTY_SOURCE_APPLICATION_IDS
+                                : sortedSourceApplicationIds
+                );
+            }
+            consumedOffsets.restore(nextOffsetPerPartition);
+            log.info(
+                    "Loaded {} user permissions and offsets {} from snapshot written at epoch millis {}",
+                    numberOfUsers,
+                    nextOffsetPerPartition,
+                    writtenAtMillis
+            );
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not load user permission snapshot at {}", path, e);
+            return false;
+        }
+    }
+
+    public synchronized void write() {
+        Path path = snapshotProperties.getPath();
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<Integer, Long> nextOffsetPerPartition = consumedOffsets.getNextOffsetPerPartition();
+        CRC32C checksum = new CRC32C();
+        long[] numberOfUsers = new long[1];
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Files.newOutputStream(temporaryPath), checksum),
+                    1 << 16
+            ))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(clock.millis());
+                output.writeInt(nextOffsetPerPartition.size());
+                for (Map.Entry<Integer, Long> nextOffset : nextOffsetPerPartition.entrySet()) {
+                    output.writeInt(nextOffset.getKey());
+                    output.writeLong(nextOffset.getValue());
+                }
+                userPermissionStore.forEach((mostSignificantBits, leastSignificantBits, sourceApplicationIds) -> {
+                    try {
+                        output.writeLong(mostSignificantBits);
+                        output.writeLong(leastSignificantBits);
+                        output.writeInt(sourceApplicationIds.length);
+                        for (long sourceApplicationId : sourceApplicationIds) {
+                            output.writeLong(sourceApplicationId);
+                        }
+                        numberOfUsers[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                output.writeLong(numberOfUsers[0]);
+                output.flush();
+                output.writeLong(checksum.getValue());
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.debug("Wrote {} user permissions and offsets {} to snapshot", numberOfUsers[0], nextOffsetPerPartition);
+    }
+
+    private void writeAndLogFailure() {
+        try {
+            write();
+        } catch (RuntimeException e) {
+            log.warn("Could not write user permission snapshot to {}", snapshotProperties.getPath(), e);
+        }
+    }
+
+    private static Map<Integer, Long> readOffsets(ByteBuffer buffer) {
+        int numberOfPartitions = buffer.getInt();
+        Map<Integer, Long> nextOffsetPerPartition = HashMap.newHashMap(numberOfPartitions);
+        for (int i = 0; i < numberOfPartitions; i++) {
+            nextOffsetPerPartition.put(buffer.getInt(), buffer.getLong());
+        }
+        return nextOffsetPerPartition;
+    }
+
+}
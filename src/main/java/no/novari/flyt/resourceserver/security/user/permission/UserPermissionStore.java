@@ -0,0 +1,110 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Lookup of the source applications each user has been granted, keyed by the user's object identifier.
+ * <p>
+ * Source application IDs are returned as a sorted primitive array, so that callers can search it without boxing. The
+ * returned array is shared with the store and must not be modified.
+ */
+public interface UserPermissionStore {
+
+    long[] EMPTY_SOURCE_APPLICATION_IDS = new long[0];
+
+    /**
+     * @return the sorted source application IDs of the user, or {@code null} if no permission is stored for the user
+     */
+    long[] getSourceApplicationIds(UUID objectIdentifier);
+
+    default void put(UUID objectIdentifier, UserPermission userPermission) {
+        put(objectIdentifier, toSortedSourceApplicationIds(userPermission.getSourceApplicationIds()));
+    }
+
+    /**
+     * @param sortedSourceApplicationIds sorted source application IDs, which the store may keep without copying
+     */
+    void put(UUID objectIdentifier, long[] sortedSourceApplicationIds);
+
+    /**
+     * Stores all given permissions as one bulk operation.
+     *
+     * @param sortedSourceApplicationIdsPerObjectIdentifier sorted source application IDs per user, which the store
+     *                                                       may keep without copying
+     * @return the users whose stored source application IDs changed, including users that had no permission stored
+     */
+    default List<UUID> putAll(Map<UUID, long[]> sortedSourceApplicationIdsPerObjectIdentifier) {
+        List<UUID> changedObjectIdentifiers = new ArrayList<>();
+        sortedSourceApplicationIdsPerObjectIdentifier.forEach((objectIdentifier, sortedSourceApplicationIds) -> {
+            if (!Arrays.equals(getSourceApplicationIds(objectIdentifier), sortedSourceApplicationIds)) {
+                changedObjectIdentifiers.add(objectIdentifier);
+            }
+            put(objectIdentifier, sortedSourceApplicationIds);
+        });
+        return changedObjectIdentifiers;
+    }
+
+    /**
+     * @return {@code true} if a permission was stored for the user
+     */
+    boolean remove(UUID objectIdentifier);
+
+    /**
+     * Removes all given users as one bulk operation.
+     *
+     * @return the users that had a permission stored
+     */
+    default List<UUID> removeAll(Collection<UUID> objectIdentifiers) {
+        List<UUID> removedObjectIdentifiers = new ArrayList<>();
+        for (UUID objectIdentifier : objectIdentifiers) {
+            if (remove(objectIdentifier)) {
+                removedObjectIdentifiers.add(objectIdentifier);
+            }
+        }
+        return removedObjectIdentifiers;
+    }
+
+    long size();
+
+    /**
+     * @return {@code false} for stores that only hold a working set of users and load the others on demand, so that
+     * the {@code userpermission} topic does not have to be replayed before the store can serve requests
+     */
+    default boolean holdsAllUserPermissions() {
+        return true;
+    }
+
+    /**
+     * Passes every stored permission to the consumer. Permissions stored or replaced while iterating may or may not
+     * be included.
+     */
+    void forEach(SourceApplicationIdsConsumer consumer);
+
+    static long[] toSortedSourceApplicationIds(Collection<Long> sourceApplicationIds) {
+        if (sourceApplicationIds == null || sourceApplicationIds.isEmpty()) {
+            return EMPTY_SOURCE_APPLICATION_IDS;
+        }
+        long[] sortedSourceApplicationIds = new long[sourceApplicationIds.size()];
+        int i = 0;
+        for (Long sourceApplicationId : sourceApplicationIds) {
+            sortedSourceApplicationIds[i++] = sourceApplicationId;
+        }
+        Arrays.sort(sortedSourceApplicationIds);
+        return sortedSourceApplicationIds;
+    }
+
+    @FunctionalInterface
+    interface SourceApplicationIdsConsumer {
+        void accept(
+                long objectIdentifierMostSignificantBits,
+                long objectIdentifierLeastSignificantBits,
+                long[] sortedSourceApplicationIds
+        );
+    }
+
+}
@@ -0,0 +1,46 @@
+package no.novari.flyt.resourceserver.security.user.query;
+
+import no.novari.flyt.resourceserver.security.AuthorityMappingService;
+import no.novari.flyt.resourceserver.security.FlytAuthorization;
+import no.novari.flyt.resourceserver.security.FlytAuthorizationResolver;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+
+/**
+ * Creates Spring Data Relational {@link Criteria}, as used by {@code R2dbcEntityTemplate}, that restrict a query to
+ * the source applications a user has access to. Only available when Spring Data Relational is on the classpath.
+ */
+public class SourceApplicationCriteriaFactory {
+
+    private final FlytAuthorizationResolver flytAuthorizationResolver;
+
+    public SourceApplicationCriteriaFactory(AuthorityMappingService authorityMappingService) {
+        this.flytAuthorizationResolver = new FlytAuthorizationResolver(authorityMappingService);
+    }
+
+    public Criteria authorizedSourceApplications(Authentication authentication, String column) {
+        return toCriteria(flytAuthorizationResolver.resolve(authentication), column);
+    }
+
+    public Mono<Criteria> authorizedSourceApplicationsForCurrentUser(String column) {
+        return flytAuthorizationResolver.resolveCurrent()
+                .defaultIfEmpty(FlytAuthorization.NONE)
+                .map(authorization -> toCriteria(authorization, column));
+    }
+
+    /**
+     * An empty {@code IN} list is not valid SQL, so no authorized source application is expressed as a criteria that
+     * never matches.
+     */
+    private static Criteria toCriteria(FlytAuthorization authorization, String column) {
+        long[] sourceApplicationIds = authorization.getSourceApplicationIds();
+        if (sourceApplicationIds.length == 0) {
+            return Criteria.where(column).isNull().and(column).isNotNull();
+        }
+        return Criteria.where(column).in(Arrays.stream(sourceApplicationIds).boxed().toList());
+    }
+
+}
@@ -0,0 +1,36 @@
+package no.novari.flyt.resourceserver.security.user.query;
+
+import no.novari.flyt.resourceserver.security.AuthorityMappingService;
+import no.novari.flyt.resourceserver.security.FlytAuthorizationResolver;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates Spring Data JPA {@link Specification}s that restrict a query to the source applications a user has access
+ * to. Only available when Spring Data JPA is on the classpath.
+ */
+public class SourceApplicationSpecificationFactory {
+
+    private final FlytAuthorizationResolver flytAuthorizationResolver;
+
+    public SourceApplicationSpecificationFactory(AuthorityMappingService authorityMappingService) {
+        this.flytAuthorizationResolver = new FlytAuthorizationResolver(authorityMappingService);
+    }
+
+    /**
+     * @param attributeName name of the entity attribute holding the source application ID
+     */
+    public <T> Specification<T> authorizedSourceApplications(Authentication authentication, String attributeName) {
+        List<Long> sourceApplicationIds = Arrays
+                .stream(flytAuthorizationResolver.resolve(authentication).getSourceApplicationIds())
+                .boxed()
+                .toList();
+        return (root, query, criteriaBuilder) -> sourceApplicationIds.isEmpty()
+                ? criteriaBuilder.disjunction()
+                : root.get(attributeName).in(sourceApplicationIds);
+    }
+
+}
@@ -0,0 +1,11 @@
+package no.novari.flyt.resourceserver.security.user.query;
+
+import java.util.Map;
+
+/**
+ * SQL fragment restricting a query to authorized source applications, with named parameters for
+ * {@code NamedParameterJdbcTemplate} or R2DBC {@code DatabaseClient}. The fragment has no parameters when no source
+ * application is authorized.
+ */
+public record SourceApplicationSqlPredicate(String sql, Map<String, Object> parameters) {
+}
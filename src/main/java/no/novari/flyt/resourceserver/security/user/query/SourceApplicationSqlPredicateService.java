@@ -0,0 +1,113 @@
+package no.novari.flyt.resourceserver.security.user.query;
+
+import no.novari.flyt.resourceserver.security.AuthorityMappingService;
+import no.novari.flyt.resourceserver.security.FlytAuthorization;
+import no.novari.flyt.resourceserver.security.FlytAuthorizationResolver;
+import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Creates parameterized SQL predicates from the source applications a user has access to, so that authorization is
+ * part of the database query instead of a filter on its result. {@code IN} predicates work with any database;
+ * {@code = ANY} predicates bind the IDs as a single array parameter, which keeps the statement text the same for any
+ * number of IDs on databases with array support, such as PostgreSQL.
+ * <p>
+ * Column and parameter names are inserted into the SQL as is, and must be plain, optionally qualified, identifiers.
+ */
+public class SourceApplicationSqlPredicateService {
+
+    public static final String DEFAULT_PARAMETER_NAME = "sourceApplicationIds";
+
+    private static final String NONE_AUTHORIZED_SQL = "1 = 0";
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)*");
+
+    private final FlytAuthorizationResolver flytAuthorizationResolver;
+
+    public SourceApplicationSqlPredicateService(AuthorityMappingService authorityMappingService) {
+        this.flytAuthorizationResolver = new FlytAuthorizationResolver(authorityMappingService);
+    }
+
+    public SourceApplicationSqlPredicate in(Authentication authentication, String column) {
+        return in(flytAuthorizationResolver.resolve(authentication), column, DEFAULT_PARAMETER_NAME);
+    }
+
+    public SourceApplicationSqlPredicate in(Authentication authentication, String column, String parameterName) {
+        return in(flytAuthorizationResolver.resolve(authentication), column, parameterName);
+    }
+
+    public Mono<SourceApplicationSqlPredicate> inForCurrentUser(String column) {
+        return inForCurrentUser(column, DEFAULT_PARAMETER_NAME);
+    }
+
+    public Mono<SourceApplicationSqlPredicate> inForCurrentUser(String column, String parameterName) {
+        return resolveCurrentAuthorization().map(authorization -> in(authorization, column, parameterName));
+    }
+
+    public SourceApplicationSqlPredicate any(Authentication authentication, String column) {
+        return any(flytAuthorizationResolver.resolve(authentication), column, DEFAULT_PARAMETER_NAME);
+    }
+
+    public SourceApplicationSqlPredicate any(Authentication authentication, String column, String parameterName) {
+        return any(flytAuthorizationResolver.resolve(authentication), column, parameterName);
+    }
+
+    public Mono<SourceApplicationSqlPredicate> anyForCurrentUser(String column) {
+        return anyForCurrentUser(column, DEFAULT_PARAMETER_NAME);
+    }
+
+    public Mono<SourceApplicationSqlPredicate> anyForCurrentUser(String column, String parameterName) {
+        return resolveCurrentAuthorization().map(authorization -> any(authorization, column, parameterName));
+    }
+
+    private static SourceApplicationSqlPredicate in(
+            FlytAuthorization authorization,
+            String column,
+            String parameterName
+    ) {
+        validateIdentifier(column);
+        validateIdentifier(parameterName);
+        long[] sourceApplicationIds = authorization.getSourceApplicationIds();
+        if (sourceApplicationIds.length == 0) {
+            return new SourceApplicationSqlPredicate(NONE_AUTHORIZED_SQL, Map.of());
+        }
+        List<Long> parameterValue = Arrays.stream(sourceApplicationIds).boxed().toList();
+        return new SourceApplicationSqlPredicate(
+                column + " IN (:" + parameterName + ")",
+                Map.of(parameterName, parameterValue)
+        );
+    }
+
+    private static SourceApplicationSqlPredicate any(
+            FlytAuthorization authorization,
+            String column,
+            String parameterName
+    ) {
+        validateIdentifier(column);
+        validateIdentifier(parameterName);
+        long[] sourceApplicationIds = authorization.getSourceApplicationIds();
+        if (sourceApplicationIds.length == 0) {
+            return new SourceApplicationSqlPredicate(NONE_AUTHORIZED_SQL, Map.of());
+        }
+        Long[] parameterValue = Arrays.stream(sourceApplicationIds).boxed().toArray(Long[]::new);
+        return new SourceApplicationSqlPredicate(
+                column + " = ANY(:" + parameterName + ")",
+                Map.of(parameterName, parameterValue)
+        );
+    }
+
+    private Mono<FlytAuthorization> resolveCurrentAuthorization() {
+        return flytAuthorizationResolver.resolveCurrent().defaultIfEmpty(FlytAuthorization.NONE);
+    }
+
+    private static void validateIdentifier(String identifier) {
+        if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+            throw new IllegalArgumentException("Not a plain SQL identifier: " + identifier);
+        }
+    }
+
+}
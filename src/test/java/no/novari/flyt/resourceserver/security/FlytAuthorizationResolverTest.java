@@ -0,0 +1,94 @@
+package no.novari.flyt.resourceserver.security;
+
+import no.novari.flyt.resourceserver.security.user.UserRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FlytAuthorizationResolverTest {
+
+    private AuthorityMappingService authorityMappingService;
+    private FlytAuthorizationResolver flytAuthorizationResolver;
+
+    @BeforeEach
+    void setUp() {
+        authorityMappingService = spy(new AuthorityMappingService());
+        flytAuthorizationResolver = new FlytAuthorizationResolver(authorityMappingService);
+    }
+
+    @Test
+    void givenFlytAuthenticationTokenShouldReturnItsAuthorizationWithoutParsingAuthorities() {
+        FlytAuthenticationToken authentication = new FlytAuthenticationToken(
+                mock(Jwt.class),
+                List.of(),
+                "organizationId",
+                UserRole.USER.getMask(),
+                new long[]{1L}
+        );
+
+        assertThat(flytAuthorizationResolver.resolve(authentication)).isSameAs(authentication.getAuthorization());
+        verifyNoInteractions(authorityMappingService);
+    }
+
+    @Test
+    void givenOtherAuthenticationShouldParseRolesAndSourceApplicationIds() {
+        Authentication authentication = new TestingAuthenticationToken(
+                "user",
+                null,
+                "ROLE_ADMIN",
+                "ROLE_UNKNOWN",
+                "SOURCE_APPLICATION_ID_3",
+                "SOURCE_APPLICATION_ID_1"
+        );
+
+        FlytAuthorization authorization = flytAuthorizationResolver.resolve(authentication);
+
+        assertThat(authorization.getRoleMask()).isEqualTo(UserRole.ADMIN.getMask());
+        assertThat(authorization.getSourceApplicationIds()).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void givenMemoInContextShouldResolveOncePerExchange() {
+        Authentication authentication = new TestingAuthenticationToken("user", null, "SOURCE_APPLICATION_ID_1");
+
+        StepVerifier.create(flytAuthorizationResolver.resolveCurrent()
+                        .then(flytAuthorizationResolver.resolveCurrent())
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication))
+                        .contextWrite(FlytAuthorizationResolver::withMemo))
+                .assertNext(authorization -> assertThat(authorization.getSourceApplicationIds()).containsExactly(1L))
+                .verifyComplete();
+
+        verify(authorityMappingService, times(1)).extractLongValues(any(), any());
+    }
+
+    @Test
+    void givenNoMemoInContextShouldResolveEachTime() {
+        Authentication authentication = new TestingAuthenticationToken("user", null, "SOURCE_APPLICATION_ID_1");
+
+        StepVerifier.create(flytAuthorizationResolver.resolveCurrent()
+                        .then(flytAuthorizationResolver.resolveCurrent())
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(authorityMappingService, times(2)).extractLongValues(any(), any());
+    }
+
+    @Test
+    void givenNoAuthenticationShouldCompleteEmpty() {
+        StepVerifier.create(flytAuthorizationResolver.resolveCurrent()
+                        .contextWrite(FlytAuthorizationResolver::withMemo))
+                .verifyComplete();
+    }
+
+}
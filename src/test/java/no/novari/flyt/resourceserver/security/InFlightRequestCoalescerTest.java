@@ -0,0 +1,132 @@
+package no.novari.flyt.resourceserver.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InFlightRequestCoalescerTest {
+
+    private InFlightRequestCoalescer<String, String> inFlightRequestCoalescer;
+    private AtomicInteger numberOfRequests;
+
+    @BeforeEach
+    void setUp() {
+        inFlightRequestCoalescer = new InFlightRequestCoalescer<>();
+        numberOfRequests = new AtomicInteger();
+    }
+
+    @Test
+    void givenConcurrentRequestsForSameKeyShouldPerformSingleRequest() {
+        Sinks.One<String> reply = Sinks.one();
+
+        Mono<String> first = inFlightRequestCoalescer.coalesce("key", key -> countedRequest(reply.asMono()));
+        Mono<String> second = inFlightRequestCoalescer.coalesce("key", key -> countedRequest(reply.asMono()));
+
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> {
+                    assertThat(numberOfRequests).hasValue(1);
+                    reply.tryEmitValue("value");
+                })
+                .assertNext(values -> {
+                    assertThat(values.getT1()).isEqualTo("value");
+                    assertThat(values.getT2()).isEqualTo("value");
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(inFlightRequestCoalescer.size()).isZero();
+    }
+
+    @Test
+    void givenConcurrentRequestsForDifferentKeysShouldPerformSeparateRequests() {
+        Sinks.One<String> reply = Sinks.one();
+
+        Mono<String> first = inFlightRequestCoalescer.coalesce("key1", key -> countedRequest(reply.asMono()));
+        Mono<String> second = inFlightRequestCoalescer.coalesce("key2", key -> countedRequest(reply.asMono()));
+
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> {
+                    assertThat(numberOfRequests).hasValue(2);
+                    reply.tryEmitValue("value");
+                })
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void givenCompletedRequestShouldPerformNewRequestForNextSubscriber() {
+        StepVerifier.create(inFlightRequestCoalescer.coalesce("key", key -> countedRequest(Mono.just("value1"))))
+                .expectNext("value1")
+                .verifyComplete();
+
+        StepVerifier.create(inFlightRequestCoalescer.coalesce("key", key -> countedRequest(Mono.just("value2"))))
+                .expectNext("value2")
+                .verifyComplete();
+
+        assertThat(numberOfRequests).hasValue(2);
+    }
+
+    @Test
+    void givenFailedRequestShouldPropagateErrorAndNotRetainIt() {
+        StepVerifier.create(inFlightRequestCoalescer.coalesce(
+                        "key",
+                        key -> countedRequest(Mono.error(new IllegalStateException()))
+                ))
+                .verifyError(IllegalStateException.class);
+
+        assertThat(inFlightRequestCoalescer.size()).isZero();
+    }
+
+    @Test
+    void givenOneOfSeveralSubscribersCancelsShouldKeepRequestRunning() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Sinks.One<String> reply = Sinks.one();
+        Mono<String> request = reply.asMono().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = inFlightRequestCoalescer.coalesce("key", key -> countedRequest(request)).subscribe();
+        Mono<String> second = inFlightRequestCoalescer.coalesce("key", key -> countedRequest(request));
+
+        StepVerifier.create(second)
+                .then(() -> {
+                    first.dispose();
+                    assertThat(cancelled).isFalse();
+                    reply.tryEmitValue("value");
+                })
+                .expectNext("value")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(numberOfRequests).hasValue(1);
+    }
+
+    @Test
+    void givenAllSubscribersCancelShouldCancelRequest() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Mono<String> request = Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = inFlightRequestCoalescer.coalesce("key", key -> countedRequest(request)).subscribe();
+        Disposable second = inFlightRequestCoalescer.coalesce("key", key -> countedRequest(request)).subscribe();
+        first.dispose();
+        second.dispose();
+
+        assertThat(cancelled).isTrue();
+        assertThat(inFlightRequestCoalescer.size()).isZero();
+    }
+
+    private Mono<String> countedRequest(Mono<String> reply) {
+        return Mono.defer(() -> {
+            numberOfRequests.incrementAndGet();
+            return reply;
+        });
+    }
+
+}
@@ -0,0 +1,141 @@
+package no.novari.flyt.resourceserver.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestBulkheadTest {
+
+    private RequestBulkhead requestBulkhead;
+
+    @BeforeEach
+    void setUp() {
+        requestBulkhead = new RequestBulkhead("test", 2);
+    }
+
+    @Test
+    void givenFreePermitsShouldExecuteRequest() {
+        StepVerifier.create(requestBulkhead.protect(() -> Mono.just("value")))
+                .expectNext("value")
+                .verifyComplete();
+
+        assertThat(requestBulkhead.getAvailableConcurrentRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void givenAllPermitsTakenShouldRejectImmediately() {
+        Sinks.One<String> reply = Sinks.one();
+        requestBulkhead.protect(reply::asMono).subscribe();
+        requestBulkhead.protect(reply::asMono).subscribe();
+
+        StepVerifier.create(requestBulkhead.protect(() -> Mono.just("value")))
+                .verifyError(RequestNotPermittedException.class);
+
+        reply.tryEmitValue("value");
+        assertThat(requestBulkhead.getAvailableConcurrentRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void givenCancelledRequestShouldReleasePermit() {
+        Disposable subscription = requestBulkhead.protect(Mono::never).subscribe();
+        assertThat(requestBulkhead.getAvailableConcurrentRequests()).isEqualTo(1);
+
+        subscription.dispose();
+
+        assertThat(requestBulkhead.getAvailableConcurrentRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void givenFailingRequestShouldReleasePermit() {
+        StepVerifier.create(requestBulkhead.protect(() -> Mono.error(new IllegalStateException())))
+                .verifyError(IllegalStateException.class);
+
+        assertThat(requestBulkhead.getAvailableConcurrentRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void givenBlockingCallShouldReturnItsValueAndReleasePermit() {
+        StepVerifier.create(requestBulkhead.protectBlocking(() -> "value", Schedulers.boundedElastic()))
+                .expectNext("value")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(requestBulkhead.getAvailableConcurrentRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void givenCancelledRunningBlockingCallShouldHoldPermitUntilCallReturns() throws InterruptedException {
+        Scheduler scheduler = Schedulers.newSingle("test");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch reply = new CountDownLatch(1);
+        try {
+            Disposable subscription = requestBulkhead.protectBlocking(
+                    () -> {
+                        started.countDown();
+                        return awaitIgnoringInterrupts(reply);
+                    },
+                    scheduler
+            ).subscribe();
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            subscription.dispose();
+            assertThat(requestBulkhead.getAvailableConcurrentRequests()).isEqualTo(1);
+
+            reply.countDown();
+            scheduler.disposeGracefully().block(Duration.ofSeconds(5));
+            assertThat(requestBulkhead.getAvailableConcurrentRequests()).isEqualTo(2);
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void givenBlockingCallCancelledBeforeStartingShouldReleasePermitWithoutCalling() {
+        Scheduler scheduler = Schedulers.newSingle("test");
+        CountDownLatch blockScheduler = new CountDownLatch(1);
+        scheduler.schedule(() -> {
+            try {
+                blockScheduler.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AtomicBoolean called = new AtomicBoolean();
+        try {
+            Disposable subscription = requestBulkhead.protectBlocking(() -> called.getAndSet(true), scheduler)
+                    .subscribe();
+
+            subscription.dispose();
+
+            assertThat(requestBulkhead.getAvailableConcurrentRequests()).isEqualTo(2);
+            blockScheduler.countDown();
+            scheduler.disposeGracefully().block(Duration.ofSeconds(5));
+            assertThat(called).isFalse();
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    private static boolean awaitIgnoringInterrupts(CountDownLatch latch) {
+        while (true) {
+            try {
+                return latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Like a blocking call that does not respond to interrupts
+            }
+        }
+    }
+
+}
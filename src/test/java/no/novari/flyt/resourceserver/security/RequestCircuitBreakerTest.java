@@ -0,0 +1,203 @@
+package no.novari.flyt.resourceserver.security;
+
+import no.novari.flyt.resourceserver.security.properties.CircuitBreakerProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RequestCircuitBreakerTest {
+
+    private Clock clock;
+    private RequestCircuitBreaker requestCircuitBreaker;
+    private AtomicInteger numberOfRequests;
+
+    @BeforeEach
+    void setUp() {
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        requestCircuitBreaker = new RequestCircuitBreaker(
+                "test",
+                CircuitBreakerProperties
+                        .builder()
+                        .failureRateThreshold(50)
+                        .slowCallDuration(Duration.ofSeconds(3))
+                        .slidingWindowSize(4)
+                        .minimumNumberOfCalls(4)
+                        .waitDurationInOpenState(Duration.ofSeconds(30))
+                        .permittedCallsInHalfOpenState(2)
+                        .build(),
+                clock
+        );
+        numberOfRequests = new AtomicInteger();
+    }
+
+    @Test
+    void givenFailureRateBelowThresholdShouldStayClosed() {
+        succeed(3);
+        fail(1);
+
+        assertThat(requestCircuitBreaker.getState()).isEqualTo(RequestCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void givenRequestRejectedDownstreamShouldNotRecordCall() {
+        StepVerifier.create(requestCircuitBreaker.protect(
+                        () -> Mono.error(new RequestNotPermittedException("Bulkhead 'test' is full"))
+                ))
+                .verifyError(RequestNotPermittedException.class);
+
+        assertThat(requestCircuitBreaker.getNumberOfRecordedCalls()).isZero();
+        assertThat(requestCircuitBreaker.getNumberOfFailedCalls()).isZero();
+    }
+
+    @Test
+    void givenCallCancelledAfterSlowCallDurationShouldRecordFailure() {
+        when(clock.millis()).thenReturn(0L, 3000L);
+
+        requestCircuitBreaker.protect(() -> countedRequest(Mono.never())).subscribe().dispose();
+
+        assertThat(requestCircuitBreaker.getNumberOfRecordedCalls()).isEqualTo(1);
+        assertThat(requestCircuitBreaker.getNumberOfFailedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void givenCallsCancelledAfterSlowCallDurationShouldOpen() {
+        when(clock.millis()).thenReturn(0L, 3000L, 0L, 3000L, 0L, 3000L, 0L, 3000L);
+
+        for (int i = 0; i < 4; i++) {
+            requestCircuitBreaker.protect(() -> countedRequest(Mono.never())).subscribe().dispose();
+        }
+
+        assertThat(requestCircuitBreaker.getState()).isEqualTo(RequestCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void givenCallCancelledBeforeSlowCallDurationShouldNotRecordCall() {
+        requestCircuitBreaker.protect(() -> countedRequest(Mono.never())).subscribe().dispose();
+
+        assertThat(requestCircuitBreaker.getNumberOfRecordedCalls()).isZero();
+    }
+
+    @Test
+    void givenProbeCancelledBeforeSlowCallDurationShouldPermitAnotherProbe() {
+        fail(4);
+        when(clock.millis()).thenReturn(Duration.ofSeconds(30).toMillis());
+
+        requestCircuitBreaker.protect(() -> countedRequest(Mono.never())).subscribe().dispose();
+        requestCircuitBreaker.protect(() -> countedRequest(Mono.never())).subscribe();
+
+        StepVerifier.create(requestCircuitBreaker.protect(() -> countedRequest(Mono.just("value"))))
+                .expectNext("value")
+                .verifyComplete();
+        assertThat(requestCircuitBreaker.getState()).isEqualTo(RequestCircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void givenFailureRateAtThresholdShouldOpenAndRejectWithoutRequesting() {
+        succeed(2);
+        fail(2);
+
+        StepVerifier.create(requestCircuitBreaker.protect(() -> countedRequest(Mono.just("value"))))
+                .verifyError(RequestNotPermittedException.class);
+
+        assertThat(requestCircuitBreaker.getState()).isEqualTo(RequestCircuitBreaker.State.OPEN);
+        assertThat(numberOfRequests).hasValue(4);
+    }
+
+    @Test
+    void givenFewerCallsThanMinimumShouldStayClosed() {
+        fail(3);
+
+        assertThat(requestCircuitBreaker.getState()).isEqualTo(RequestCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void givenSlowCallsShouldCountAsFailures() {
+        when(clock.millis()).thenReturn(0L, 3000L, 0L, 3000L, 0L, 3000L, 0L, 3000L);
+
+        succeed(4);
+
+        assertThat(requestCircuitBreaker.getState()).isEqualTo(RequestCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void givenWaitInOpenStateIsOverAndProbesSucceedShouldClose() {
+        fail(4);
+        when(clock.millis()).thenReturn(Duration.ofSeconds(30).toMillis());
+
+        assertThat(requestCircuitBreaker.getState()).isEqualTo(RequestCircuitBreaker.State.HALF_OPEN);
+        succeed(2);
+
+        assertThat(requestCircuitBreaker.getState()).isEqualTo(RequestCircuitBreaker.State.CLOSED);
+        assertThat(requestCircuitBreaker.getNumberOfRecordedCalls()).isZero();
+    }
+
+    @Test
+    void givenWaitInOpenStateIsOverAndProbeFailsShouldOpenAgain() {
+        fail(4);
+        when(clock.millis()).thenReturn(Duration.ofSeconds(30).toMillis());
+
+        fail(1);
+
+        assertThat(requestCircuitBreaker.getState()).isEqualTo(RequestCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void givenHalfOpenStateShouldOnlyPermitConfiguredNumberOfProbes() {
+        fail(4);
+        when(clock.millis()).thenReturn(Duration.ofSeconds(30).toMillis());
+
+        requestCircuitBreaker.protect(() -> countedRequest(Mono.never())).subscribe();
+        requestCircuitBreaker.protect(() -> countedRequest(Mono.never())).subscribe();
+
+        StepVerifier.create(requestCircuitBreaker.protect(() -> countedRequest(Mono.just("value"))))
+                .verifyError(RequestNotPermittedException.class);
+        assertThat(numberOfRequests).hasValue(6);
+    }
+
+    @Test
+    void givenDisabledBreakerShouldNeverReject() {
+        RequestCircuitBreaker disabledCircuitBreaker = new RequestCircuitBreaker(
+                "test",
+                CircuitBreakerProperties.builder().enabled(false).minimumNumberOfCalls(1).build(),
+                clock
+        );
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(disabledCircuitBreaker.protect(() -> Mono.error(new IllegalStateException())))
+                    .verifyError(IllegalStateException.class);
+        }
+    }
+
+    private void succeed(int numberOfCalls) {
+        for (int i = 0; i < numberOfCalls; i++) {
+            StepVerifier.create(requestCircuitBreaker.protect(() -> countedRequest(Mono.just("value"))))
+                    .expectNext("value")
+                    .verifyComplete();
+        }
+    }
+
+    private void fail(int numberOfCalls) {
+        for (int i = 0; i < numberOfCalls; i++) {
+            StepVerifier.create(requestCircuitBreaker.protect(
+                            () -> countedRequest(Mono.<String>error(new IllegalStateException()))
+                    ))
+                    .verifyError(IllegalStateException.class);
+        }
+    }
+
+    private Mono<String> countedRequest(Mono<String> reply) {
+        numberOfRequests.incrementAndGet();
+        return reply;
+    }
+
+}
@@ -0,0 +1,87 @@
+package no.novari.flyt.resourceserver.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestDeadlineTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+
+    private Clock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = Clock.fixed(NOW, ZoneOffset.UTC);
+    }
+
+    @Test
+    void givenNoDeadlineShouldReturnMonoUnchanged() {
+        StepVerifier.create(RequestDeadline.timeout(Mono.just("value"), clock))
+                .expectNext("value")
+                .verifyComplete();
+    }
+
+    @Test
+    void givenDeadlineBeforeReplyShouldTimeOutAndCancelReply() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Mono<String> reply = Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+
+        StepVerifier.withVirtualTime(() -> RequestDeadline.timeout(reply, clock)
+                        .contextWrite(context -> RequestDeadline.put(context, NOW.plusSeconds(2))))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(2))
+                .verifyError(TimeoutException.class);
+
+        assertThat(cancelled).isTrue();
+    }
+
+    @Test
+    void givenPassedDeadlineShouldFailWithoutSubscribing() {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        Mono<String> reply = Mono.just("value").doOnSubscribe(subscription -> subscribed.set(true));
+
+        StepVerifier.create(RequestDeadline.timeout(reply, clock)
+                        .contextWrite(context -> RequestDeadline.put(context, NOW)))
+                .verifyError(TimeoutException.class);
+
+        assertThat(subscribed).isFalse();
+    }
+
+    @Test
+    void givenExistingEarlierDeadlineShouldKeepIt() {
+        Context context = RequestDeadline.put(Context.empty(), NOW.plusSeconds(1));
+
+        assertThat(RequestDeadline.get(RequestDeadline.put(context, NOW.plusSeconds(5))))
+                .contains(NOW.plusSeconds(1));
+    }
+
+    @Test
+    void givenWebFilterShouldPutDeadlineFromBudgetInContext() {
+        RequestDeadlineWebFilter requestDeadlineWebFilter = new RequestDeadlineWebFilter(Duration.ofSeconds(3), clock);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/test"));
+
+        StepVerifier.create(requestDeadlineWebFilter.filter(
+                        exchange,
+                        filteredExchange -> Mono.deferContextual(contextView -> {
+                            assertThat(RequestDeadline.get(contextView)).contains(NOW.plusSeconds(3));
+                            return Mono.empty();
+                        })
+                ))
+                .verifyComplete();
+    }
+
+}
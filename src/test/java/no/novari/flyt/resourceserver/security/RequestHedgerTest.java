@@ -0,0 +1,188 @@
+package no.novari.flyt.resourceserver.security;
+
+import no.novari.flyt.resourceserver.security.properties.HedgingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestHedgerTest {
+
+    private VirtualTimeScheduler scheduler;
+    private List<Sinks.One<String>> replies;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = VirtualTimeScheduler.create();
+        replies = new ArrayList<>();
+    }
+
+    @Test
+    void givenTooFewLatencySamplesShouldNotHedge() {
+        RequestHedger requestHedger = requestHedger(1.0);
+
+        StepVerifier.create(requestHedger.hedge(this::pendingRequest))
+                .then(() -> scheduler.advanceTimeBy(Duration.ofSeconds(1)))
+                .then(() -> replies.getFirst().tryEmitValue("value"))
+                .expectNext("value")
+                .verifyComplete();
+
+        assertThat(replies).hasSize(1);
+        assertThat(requestHedger.getHedgeDelay()).isEmpty();
+    }
+
+    @Test
+    void givenSlowRequestShouldSendHedgeAfterDelayAndUseFirstReply() {
+        RequestHedger requestHedger = warmedUpRequestHedger(1.0);
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+
+        StepVerifier.create(requestHedger.hedge(() -> replies.isEmpty()
+                        ? pendingRequest().doOnCancel(() -> primaryCancelled.set(true))
+                        : pendingRequest()))
+                .then(() -> {
+                    assertThat(replies).hasSize(1);
+                    scheduler.advanceTimeBy(Duration.ofMillis(20));
+                    assertThat(replies).hasSize(2);
+                    replies.get(1).tryEmitValue("hedged");
+                })
+                .expectNext("hedged")
+                .verifyComplete();
+
+        assertThat(primaryCancelled).isTrue();
+    }
+
+    @Test
+    void givenFastRequestShouldNotHedge() {
+        RequestHedger requestHedger = warmedUpRequestHedger(1.0);
+
+        StepVerifier.create(requestHedger.hedge(this::pendingRequest))
+                .then(() -> replies.getFirst().tryEmitValue("value"))
+                .expectNext("value")
+                .verifyComplete();
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+        assertThat(replies).hasSize(1);
+    }
+
+    @Test
+    void givenExhaustedHedgeRateShouldNotHedge() {
+        RequestHedger requestHedger = warmedUpRequestHedger(0.0);
+
+        StepVerifier.create(requestHedger.hedge(this::pendingRequest))
+                .then(() -> {
+                    scheduler.advanceTimeBy(Duration.ofSeconds(1));
+                    replies.getFirst().tryEmitValue("value");
+                })
+                .expectNext("value")
+                .verifyComplete();
+
+        assertThat(replies).hasSize(1);
+    }
+
+    @Test
+    void givenEmptyReplyShouldCompleteEmptyWithoutHedging() {
+        RequestHedger requestHedger = warmedUpRequestHedger(1.0);
+
+        StepVerifier.create(requestHedger.hedge(this::pendingRequest))
+                .then(() -> replies.getFirst().tryEmitEmpty())
+                .verifyComplete();
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+        assertThat(replies).hasSize(1);
+    }
+
+    @Test
+    void givenFailingFirstRequestShouldPropagateError() {
+        RequestHedger requestHedger = warmedUpRequestHedger(1.0);
+
+        StepVerifier.create(requestHedger.hedge(this::pendingRequest))
+                .then(() -> replies.getFirst().tryEmitError(new IllegalStateException()))
+                .verifyError(IllegalStateException.class);
+    }
+
+    @Test
+    void givenFailedRequestsShouldRecordTheirLatency() {
+        RequestHedger requestHedger = requestHedger(1.0);
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(requestHedger.hedge(() -> Mono.<String>error(new IllegalStateException())))
+                    .verifyError(IllegalStateException.class);
+        }
+
+        assertThat(requestHedger.getHedgeDelay()).isPresent();
+    }
+
+    @Test
+    void givenCancelledRequestsShouldRecordTheirLatency() {
+        RequestHedger requestHedger = requestHedger(1.0);
+
+        for (int i = 0; i < 2; i++) {
+            requestHedger.hedge(this::pendingRequest).subscribe().dispose();
+        }
+
+        assertThat(requestHedger.getHedgeDelay()).isPresent();
+    }
+
+    @Test
+    void givenRequestsRejectedDownstreamShouldNotRecordTheirLatency() {
+        RequestHedger requestHedger = requestHedger(1.0);
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(requestHedger.hedge(
+                            () -> Mono.<String>error(new RequestNotPermittedException("Bulkhead 'test' is full"))
+                    ))
+                    .verifyError(RequestNotPermittedException.class);
+        }
+
+        assertThat(requestHedger.getHedgeDelay()).isEmpty();
+    }
+
+    @Test
+    void givenDisabledHedgingShouldOnlyRequestOnce() {
+        RequestHedger requestHedger = new RequestHedger(HedgingProperties.builder().enabled(false).build(), scheduler);
+
+        StepVerifier.create(requestHedger.hedge(() -> Mono.just("value")))
+                .expectNext("value")
+                .verifyComplete();
+    }
+
+    private RequestHedger warmedUpRequestHedger(double maxHedgeRate) {
+        RequestHedger requestHedger = requestHedger(maxHedgeRate);
+        for (int i = 0; i < 2; i++) {
+            requestHedger.hedge(() -> Mono.just("warm-up")).block();
+        }
+        assertThat(requestHedger.getHedgeDelay()).contains(Duration.ofMillis(20));
+        return requestHedger;
+    }
+
+    private RequestHedger requestHedger(double maxHedgeRate) {
+        return new RequestHedger(
+                HedgingProperties
+                        .builder()
+                        .enabled(true)
+                        .delayPercentile(95.0)
+                        .minDelay(Duration.ofMillis(20))
+                        .maxHedgeRate(maxHedgeRate)
+                        .latencyWindowSize(16)
+                        .minimumNumberOfSamples(2)
+                        .build(),
+                scheduler
+        );
+    }
+
+    private Mono<String> pendingRequest() {
+        Sinks.One<String> reply = Sinks.one();
+        replies.add(reply);
+        return reply.asMono();
+    }
+
+}
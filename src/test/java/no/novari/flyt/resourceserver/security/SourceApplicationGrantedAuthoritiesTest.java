@@ -0,0 +1,105 @@
+package no.novari.flyt.resourceserver.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class SourceApplicationGrantedAuthoritiesTest {
+
+    private static final String PREFIX = "SOURCE_APPLICATION_ID_";
+    private static final GrantedAuthority ROLE_AUTHORITY = new SimpleGrantedAuthority("ROLE_USER");
+
+    @Test
+    void shouldIterateOtherAuthoritiesFollowedBySourceApplicationAuthorities() {
+        SourceApplicationGrantedAuthorities authorities = new SourceApplicationGrantedAuthorities(
+                PREFIX,
+                new long[]{1L, 20L},
+                Set.of(ROLE_AUTHORITY)
+        );
+
+        assertThat(authorities).hasSize(3);
+        assertThat(authorities).containsExactly(
+                ROLE_AUTHORITY,
+                new SimpleGrantedAuthority("SOURCE_APPLICATION_ID_1"),
+                new SimpleGrantedAuthority("SOURCE_APPLICATION_ID_20")
+        );
+    }
+
+    @Test
+    void shouldAnswerContainsForSourceApplicationAuthoritiesByParsingId() {
+        SourceApplicationGrantedAuthorities authorities = new SourceApplicationGrantedAuthorities(
+                PREFIX,
+                new long[]{1L, 20L},
+                Set.of(ROLE_AUTHORITY)
+        );
+
+        assertThat(authorities.contains(new SimpleGrantedAuthority("SOURCE_APPLICATION_ID_20"))).isTrue();
+        assertThat(authorities.contains(new SimpleGrantedAuthority("SOURCE_APPLICATION_ID_2"))).isFalse();
+        assertThat(authorities.contains(new SimpleGrantedAuthority("SOURCE_APPLICATION_ID_020"))).isFalse();
+        assertThat(authorities.contains(new SimpleGrantedAuthority("SOURCE_APPLICATION_ID_+1"))).isFalse();
+        assertThat(authorities.contains(new SimpleGrantedAuthority("SOURCE_APPLICATION_ID_x"))).isFalse();
+        assertThat(authorities.contains(ROLE_AUTHORITY)).isTrue();
+        assertThat(authorities.contains(new SimpleGrantedAuthority("ROLE_ADMIN"))).isFalse();
+    }
+
+    @Test
+    void shouldBeImmutable() {
+        SourceApplicationGrantedAuthorities authorities = new SourceApplicationGrantedAuthorities(
+                PREFIX,
+                new long[]{1L},
+                Set.of()
+        );
+
+        assertThrows(UnsupportedOperationException.class, () -> authorities.add(ROLE_AUTHORITY));
+        assertThrows(UnsupportedOperationException.class, authorities::clear);
+    }
+
+    @Test
+    void givenNoSourceApplicationIdsShouldOnlyContainOtherAuthorities() {
+        SourceApplicationGrantedAuthorities authorities = new SourceApplicationGrantedAuthorities(
+                PREFIX,
+                null,
+                Set.of()
+        );
+
+        assertThat(authorities).isEmpty();
+    }
+
+    @Test
+    void givenFlytAuthenticationTokenShouldKeepAuthoritiesWithoutCopying() {
+        long[] sourceApplicationIds = {1L};
+        SourceApplicationGrantedAuthorities authorities = new SourceApplicationGrantedAuthorities(
+                PREFIX,
+                sourceApplicationIds,
+                Set.of(ROLE_AUTHORITY)
+        );
+        Jwt jwt = mock(Jwt.class);
+
+        FlytAuthenticationToken token = new FlytAuthenticationToken(jwt, authorities, "orgId", 0, sourceApplicationIds);
+
+        assertThat(token.getAuthorities()).isSameAs(authorities);
+        assertThat(token).isEqualTo(new FlytAuthenticationToken(
+                jwt,
+                new SourceApplicationGrantedAuthorities(PREFIX, sourceApplicationIds, Set.of(ROLE_AUTHORITY)),
+                "orgId",
+                0,
+                sourceApplicationIds
+        ));
+        assertThat(token).isNotEqualTo(new FlytAuthenticationToken(
+                jwt,
+                List.of(ROLE_AUTHORITY),
+                "orgId",
+                0,
+                sourceApplicationIds
+        ));
+    }
+
+}
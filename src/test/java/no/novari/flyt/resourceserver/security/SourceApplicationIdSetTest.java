@@ -0,0 +1,53 @@
+package no.novari.flyt.resourceserver.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SourceApplicationIdSetTest {
+
+    @Test
+    void givenDenseIdsShouldContainExactlyThoseIds() {
+        SourceApplicationIdSet sourceApplicationIdSet = SourceApplicationIdSet.of(new long[]{3L, 4L, 70L, 130L});
+
+        assertThat(sourceApplicationIdSet.contains(3L)).isTrue();
+        assertThat(sourceApplicationIdSet.contains(70L)).isTrue();
+        assertThat(sourceApplicationIdSet.contains(130L)).isTrue();
+        assertThat(sourceApplicationIdSet.contains(2L)).isFalse();
+        assertThat(sourceApplicationIdSet.contains(5L)).isFalse();
+        assertThat(sourceApplicationIdSet.contains(131L)).isFalse();
+        assertThat(sourceApplicationIdSet.contains(3L + 64 * 3)).isFalse();
+        assertThat(sourceApplicationIdSet.size()).isEqualTo(4);
+    }
+
+    @Test
+    void givenSparseIdsShouldContainExactlyThoseIds() {
+        SourceApplicationIdSet sourceApplicationIdSet = SourceApplicationIdSet.of(new long[]{1L, 1_000_000_000L});
+
+        assertThat(sourceApplicationIdSet.contains(1L)).isTrue();
+        assertThat(sourceApplicationIdSet.contains(1_000_000_000L)).isTrue();
+        assertThat(sourceApplicationIdSet.contains(2L)).isFalse();
+    }
+
+    @Test
+    void givenIdsAtBothEndsOfLongRangeShouldNotOverflow() {
+        SourceApplicationIdSet dense = SourceApplicationIdSet.of(new long[]{Long.MAX_VALUE - 1, Long.MAX_VALUE});
+        SourceApplicationIdSet sparse = SourceApplicationIdSet.of(new long[]{Long.MIN_VALUE, Long.MAX_VALUE});
+
+        assertThat(dense.contains(Long.MAX_VALUE)).isTrue();
+        assertThat(dense.contains(Long.MIN_VALUE)).isFalse();
+        assertThat(dense.contains(0L)).isFalse();
+        assertThat(sparse.contains(Long.MIN_VALUE)).isTrue();
+        assertThat(sparse.contains(Long.MAX_VALUE)).isTrue();
+        assertThat(sparse.contains(0L)).isFalse();
+    }
+
+    @Test
+    void givenNoIdsShouldBeEmpty() {
+        SourceApplicationIdSet sourceApplicationIdSet = SourceApplicationIdSet.of(new long[0]);
+
+        assertThat(sourceApplicationIdSet.isEmpty()).isTrue();
+        assertThat(sourceApplicationIdSet.contains(0L)).isFalse();
+    }
+
+}
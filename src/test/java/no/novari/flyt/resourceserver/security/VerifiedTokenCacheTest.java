@@ -0,0 +1,145 @@
+package no.novari.flyt.resourceserver.security;
+
+import no.novari.flyt.resourceserver.security.properties.VerifiedTokenCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VerifiedTokenCacheTest {
+
+    private VerifiedTokenCacheProperties properties;
+    private Clock clock;
+    private VerifiedTokenCache verifiedTokenCache;
+    private AbstractAuthenticationToken authentication;
+
+    @BeforeEach
+    void setUp() {
+        properties = VerifiedTokenCacheProperties
+                .builder()
+                .enabled(true)
+                .timeToLive(Duration.ofMinutes(5))
+                .maxEntries(2)
+                .build();
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        verifiedTokenCache = new VerifiedTokenCache(properties, clock);
+        authentication = new TestingAuthenticationToken("principal", "credentials");
+    }
+
+    @Test
+    void givenCachedAuthenticationShouldReturnIt() {
+        put("tokenHash", "client:clientId", null);
+
+        assertThat(verifiedTokenCache.get("tokenHash")).contains(authentication);
+    }
+
+    @Test
+    void givenTimeToLiveHasPassedShouldMiss() {
+        put("tokenHash", "client:clientId", null);
+        when(clock.millis()).thenReturn(Duration.ofMinutes(5).toMillis());
+
+        assertThat(verifiedTokenCache.get("tokenHash")).isEmpty();
+        assertThat(verifiedTokenCache.size()).isZero();
+    }
+
+    @Test
+    void givenTokenExpiringBeforeTimeToLiveShouldMissOnceTokenHasExpired() {
+        put("tokenHash", "client:clientId", Instant.ofEpochMilli(Duration.ofMinutes(1).toMillis()));
+
+        when(clock.millis()).thenReturn(Duration.ofSeconds(59).toMillis());
+        assertThat(verifiedTokenCache.get("tokenHash")).isPresent();
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(1).toMillis());
+        assertThat(verifiedTokenCache.get("tokenHash")).isEmpty();
+    }
+
+    @Test
+    void givenExpiredTokenShouldNotCache() {
+        put("tokenHash", "client:clientId", Instant.EPOCH);
+
+        assertThat(verifiedTokenCache.size()).isZero();
+    }
+
+    @Test
+    void givenInvalidatedPrincipalShouldMissForThatPrincipalOnly() {
+        UUID objectIdentifier = UUID.randomUUID();
+        put("userTokenHash", VerifiedTokenCache.userPrincipal(objectIdentifier), null);
+        put("clientTokenHash", VerifiedTokenCache.clientPrincipal("clientId"), null);
+
+        verifiedTokenCache.invalidate(VerifiedTokenCache.userPrincipal(objectIdentifier));
+
+        assertThat(verifiedTokenCache.get("userTokenHash")).isEmpty();
+        assertThat(verifiedTokenCache.get("clientTokenHash")).isPresent();
+    }
+
+    @Test
+    void givenInvalidationDuringConversionShouldNotCache() {
+        long epoch = verifiedTokenCache.getEpoch("client:clientId");
+
+        verifiedTokenCache.invalidate(VerifiedTokenCache.clientPrincipal("clientId"));
+        verifiedTokenCache.put("tokenHash", "client:clientId", epoch, null, authentication);
+
+        assertThat(verifiedTokenCache.get("tokenHash")).isEmpty();
+    }
+
+    @Test
+    void givenInvalidationOfOtherPrincipalDuringConversionShouldCache() {
+        long epoch = verifiedTokenCache.getEpoch("client:clientId");
+
+        verifiedTokenCache.invalidate(VerifiedTokenCache.clientPrincipal("otherClientId"));
+        verifiedTokenCache.put("tokenHash", "client:clientId", epoch, null, authentication);
+
+        assertThat(verifiedTokenCache.get("tokenHash")).contains(authentication);
+    }
+
+    @Test
+    void givenFullCacheShouldNotExceedMaxEntries() {
+        put("tokenHash1", "client:clientId", null);
+        put("tokenHash2", "client:clientId", null);
+        put("tokenHash3", "client:clientId", null);
+
+        assertThat(verifiedTokenCache.size()).isEqualTo(2);
+        assertThat(verifiedTokenCache.get("tokenHash3")).isPresent();
+    }
+
+    @Test
+    void givenFullCacheShouldEvictEntryExpiringSoonest() {
+        put("tokenHash1", "client:clientId", Instant.ofEpochMilli(Duration.ofMinutes(2).toMillis()));
+        put("tokenHash2", "client:clientId", Instant.ofEpochMilli(Duration.ofMinutes(1).toMillis()));
+        put("tokenHash3", "client:clientId", null);
+
+        assertThat(verifiedTokenCache.get("tokenHash1")).isPresent();
+        assertThat(verifiedTokenCache.get("tokenHash2")).isEmpty();
+        assertThat(verifiedTokenCache.get("tokenHash3")).isPresent();
+    }
+
+    @Test
+    void givenSameTokenShouldProduceSameHashWithoutExposingToken() {
+        String hash = VerifiedTokenCache.hash("header.payload.signature");
+
+        assertThat(VerifiedTokenCache.hash("header.payload.signature")).isEqualTo(hash);
+        assertThat(VerifiedTokenCache.hash("header.payload.other")).isNotEqualTo(hash);
+        assertThat(hash).hasSize(43).doesNotContain("payload");
+    }
+
+    private void put(String tokenHash, String principal, Instant tokenExpiresAt) {
+        verifiedTokenCache.put(
+                tokenHash,
+                principal,
+                verifiedTokenCache.getEpoch(principal),
+                tokenExpiresAt,
+                authentication
+        );
+    }
+
+}
@@ -0,0 +1,136 @@
+package no.novari.flyt.resourceserver.security;
+
+import no.novari.flyt.resourceserver.security.properties.VerifiedTokenCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VerifiedTokenCachingAuthenticationManagerTest {
+
+    private static final String TOKEN = "token";
+
+    private ReactiveJwtDecoder jwtDecoder;
+    private VerifiedTokenCache verifiedTokenCache;
+    private Jwt jwt;
+
+    @BeforeEach
+    void setUp() {
+        Instant now = Instant.now();
+        jwt = Jwt
+                .withTokenValue(TOKEN)
+                .header("alg", "RS256")
+                .subject("subject")
+                .issuedAt(now)
+                .expiresAt(now.plus(Duration.ofMinutes(5)))
+                .build();
+        jwtDecoder = mock(ReactiveJwtDecoder.class);
+        when(jwtDecoder.decode(anyString())).thenReturn(Mono.just(jwt));
+        verifiedTokenCache = new VerifiedTokenCache(
+                VerifiedTokenCacheProperties
+                        .builder()
+                        .enabled(true)
+                        .timeToLive(Duration.ofMinutes(5))
+                        .maxEntries(10)
+                        .build(),
+                Clock.systemUTC()
+        );
+    }
+
+    @Test
+    void givenRepeatedTokenShouldServeCachedAuthentication() {
+        CountingConverter converter = new CountingConverter("ROLE_USER");
+        VerifiedTokenCachingAuthenticationManager manager = createManager("/api/intern/**", converter);
+
+        StepVerifier.create(manager.authenticate(new BearerTokenAuthenticationToken(TOKEN)))
+                .expectNextMatches(authentication -> hasAuthority(authentication, "ROLE_USER"))
+                .verifyComplete();
+        StepVerifier.create(manager.authenticate(new BearerTokenAuthenticationToken(TOKEN)))
+                .expectNextMatches(authentication -> hasAuthority(authentication, "ROLE_USER"))
+                .verifyComplete();
+
+        verify(jwtDecoder, times(1)).decode(TOKEN);
+        assertThat(converter.invocations).hasValue(1);
+    }
+
+    @Test
+    void givenSameTokenThroughTwoChainsShouldNotServeAuthenticationOfTheOtherChain() {
+        CountingConverter userConverter = new CountingConverter("ROLE_USER");
+        CountingConverter adminConverter = new CountingConverter("ROLE_ADMIN");
+        VerifiedTokenCachingAuthenticationManager userManager = createManager("/api/intern/**", userConverter);
+        VerifiedTokenCachingAuthenticationManager adminManager = createManager("/api/intern/admin/**", adminConverter);
+
+        StepVerifier.create(userManager.authenticate(new BearerTokenAuthenticationToken(TOKEN)))
+                .expectNextMatches(authentication -> hasAuthority(authentication, "ROLE_USER")
+                                                     && !hasAuthority(authentication, "ROLE_ADMIN"))
+                .verifyComplete();
+        StepVerifier.create(adminManager.authenticate(new BearerTokenAuthenticationToken(TOKEN)))
+                .expectNextMatches(authentication -> hasAuthority(authentication, "ROLE_ADMIN")
+                                                     && !hasAuthority(authentication, "ROLE_USER"))
+                .verifyComplete();
+        StepVerifier.create(userManager.authenticate(new BearerTokenAuthenticationToken(TOKEN)))
+                .expectNextMatches(authentication -> hasAuthority(authentication, "ROLE_USER")
+                                                     && !hasAuthority(authentication, "ROLE_ADMIN"))
+                .verifyComplete();
+
+        assertThat(userConverter.invocations).hasValue(1);
+        assertThat(adminConverter.invocations).hasValue(1);
+        assertThat(verifiedTokenCache.size()).isEqualTo(2);
+    }
+
+    private VerifiedTokenCachingAuthenticationManager createManager(
+            String scope,
+            Converter<Jwt, Mono<AbstractAuthenticationToken>> converter
+    ) {
+        return new VerifiedTokenCachingAuthenticationManager(
+                scope,
+                jwtDecoder,
+                converter,
+                verifiedTokenCache,
+                Jwt::getSubject
+        );
+    }
+
+    private static boolean hasAuthority(Authentication authentication, String authority) {
+        return authentication.getAuthorities().contains(new SimpleGrantedAuthority(authority));
+    }
+
+    private static class CountingConverter implements Converter<Jwt, Mono<AbstractAuthenticationToken>> {
+
+        private final String authority;
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        private CountingConverter(String authority) {
+            this.authority = authority;
+        }
+
+        @Override
+        public Mono<AbstractAuthenticationToken> convert(Jwt jwt) {
+            invocations.incrementAndGet();
+            return Mono.just(new JwtAuthenticationToken(jwt, List.of(new SimpleGrantedAuthority(authority))));
+        }
+
+    }
+
+}
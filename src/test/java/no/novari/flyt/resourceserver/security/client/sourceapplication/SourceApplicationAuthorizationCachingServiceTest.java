@@ -0,0 +1,255 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import no.novari.flyt.resourceserver.security.VerifiedTokenCache;
+import no.novari.flyt.resourceserver.security.properties.SourceApplicationAuthorizationCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SourceApplicationAuthorizationCachingServiceTest {
+
+    private SourceApplicationAuthorizationRequestService sourceApplicationAuthorizationRequestService;
+    private SourceApplicationAuthorizationCacheProperties cacheProperties;
+    private VerifiedTokenCache verifiedTokenCache;
+    private Clock clock;
+    private SourceApplicationAuthorizationCachingService sourceApplicationAuthorizationCachingService;
+
+    @BeforeEach
+    void setUp() {
+        sourceApplicationAuthorizationRequestService = mock(SourceApplicationAuthorizationRequestService.class);
+        cacheProperties = SourceApplicationAuthorizationCacheProperties
+                .builder()
+                .timeToLive(Duration.ofMinutes(10))
+                .negativeTimeToLive(Duration.ofSeconds(30))
+                .refreshAheadTime(Duration.ofMinutes(1))
+                .maxStaleness(Duration.ofMinutes(30))
+                .maxEntries(2)
+                .build();
+        verifiedTokenCache = mock(VerifiedTokenCache.class);
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        sourceApplicationAuthorizationCachingService = new SourceApplicationAuthorizationCachingService(
+                sourceApplicationAuthorizationRequestService,
+                cacheProperties,
+                verifiedTokenCache,
+                clock
+        );
+    }
+
+    @Test
+    void givenCachedAuthorizationWithinTimeToLiveShouldNotRequestAgain() {
+        SourceApplicationAuthorization authorization = authorization("clientId", 1L);
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.just(authorization));
+
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId"))
+                .expectNext(authorization)
+                .verifyComplete();
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(8).toMillis());
+
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId"))
+                .expectNext(authorization)
+                .verifyComplete();
+
+        verify(sourceApplicationAuthorizationRequestService, times(1)).requestClientAuthorization("clientId");
+    }
+
+    @Test
+    void givenCachedAuthorizationAfterTimeToLiveShouldRequestAgain() {
+        SourceApplicationAuthorization authorization = authorization("clientId", 1L);
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.just(authorization));
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+        when(clock.millis()).thenReturn(Duration.ofMinutes(10).toMillis());
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+
+        verify(sourceApplicationAuthorizationRequestService, times(2)).requestClientAuthorization("clientId");
+    }
+
+    @Test
+    void givenCachedAuthorizationCloseToExpiryShouldServeCachedValueAndRefreshInBackground() {
+        SourceApplicationAuthorization authorization = authorization("clientId", 1L);
+        SourceApplicationAuthorization refreshedAuthorization = authorization("clientId", 2L);
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.just(authorization), Mono.just(refreshedAuthorization));
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+        when(clock.millis()).thenReturn(Duration.ofMinutes(9).toMillis());
+
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId"))
+                .expectNext(authorization)
+                .verifyComplete();
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId"))
+                .expectNext(refreshedAuthorization)
+                .verifyComplete();
+
+        verify(sourceApplicationAuthorizationRequestService, times(2)).requestClientAuthorization("clientId");
+    }
+
+    @Test
+    void givenExpiredAuthorizationWithinMaxStalenessAndFailingRefreshShouldServeLastKnownValue() {
+        SourceApplicationAuthorization authorization = authorization("clientId", 1L);
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.just(authorization), Mono.error(new IllegalStateException()));
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+        when(clock.millis()).thenReturn(Duration.ofMinutes(39).toMillis());
+
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId"))
+                .expectNext(authorization)
+                .verifyComplete();
+    }
+
+    @Test
+    void givenExpiredAuthorizationBeyondMaxStalenessShouldWaitForRequest() {
+        SourceApplicationAuthorization authorization = authorization("clientId", 1L);
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.just(authorization), Mono.error(new IllegalStateException()));
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+        when(clock.millis()).thenReturn(Duration.ofMinutes(40).toMillis());
+
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId"))
+                .verifyError(IllegalStateException.class);
+    }
+
+    @Test
+    void givenRefreshWithChangedSourceApplicationShouldInvalidateVerifiedTokens() {
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.just(authorization("clientId", 1L)), Mono.just(authorization("clientId", 2L)));
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+        when(clock.millis()).thenReturn(Duration.ofMinutes(10).toMillis());
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+
+        verify(verifiedTokenCache).invalidate(VerifiedTokenCache.clientPrincipal("clientId"));
+    }
+
+    @Test
+    void givenRefreshWithUnchangedSourceApplicationShouldNotInvalidateVerifiedTokens() {
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.just(authorization("clientId", 1L)), Mono.just(authorization("clientId", 1L)));
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+        when(clock.millis()).thenReturn(Duration.ofMinutes(10).toMillis());
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+
+        verifyNoInteractions(verifiedTokenCache);
+    }
+
+    @Test
+    void givenUnknownClientShouldCacheNegativeEntryForNegativeTimeToLive() {
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("unknownClientId"))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("unknownClientId"))
+                .verifyComplete();
+
+        when(clock.millis()).thenReturn(Duration.ofSeconds(29).toMillis());
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("unknownClientId"))
+                .verifyComplete();
+        verify(sourceApplicationAuthorizationRequestService, times(1)).requestClientAuthorization("unknownClientId");
+
+        when(clock.millis()).thenReturn(Duration.ofSeconds(30).toMillis());
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("unknownClientId"))
+                .verifyComplete();
+        verify(sourceApplicationAuthorizationRequestService, times(2)).requestClientAuthorization("unknownClientId");
+    }
+
+    @Test
+    void givenUnauthorizedClientShouldCacheNegativeEntryForNegativeTimeToLive() {
+        SourceApplicationAuthorization authorization = SourceApplicationAuthorization
+                .builder()
+                .authorized(false)
+                .clientId("clientId")
+                .build();
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.just(authorization));
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+        when(clock.millis()).thenReturn(Duration.ofSeconds(30).toMillis());
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+
+        verify(sourceApplicationAuthorizationRequestService, times(2)).requestClientAuthorization("clientId");
+    }
+
+    @Test
+    void givenFailedRequestShouldNotCacheResult() {
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.error(new IllegalStateException()));
+
+        StepVerifier.create(sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId"))
+                .verifyError(IllegalStateException.class);
+
+        assertThat(sourceApplicationAuthorizationCachingService.size()).isZero();
+    }
+
+    @Test
+    void givenFullCacheShouldNotExceedMaxEntries() {
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization(anyString()))
+                .thenAnswer(invocation -> Mono.just(authorization(invocation.getArgument(0), 1L)));
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId1").block();
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId2").block();
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId3").block();
+
+        assertThat(sourceApplicationAuthorizationCachingService.size()).isEqualTo(2);
+    }
+
+    @Test
+    void givenFullCacheShouldEvictEntryExpiringSoonest() {
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization(anyString()))
+                .thenAnswer(invocation -> Mono.just(authorization(invocation.getArgument(0), 1L)));
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(1).toMillis());
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId1").block();
+        when(clock.millis()).thenReturn(0L);
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId2").block();
+        when(clock.millis()).thenReturn(Duration.ofMinutes(2).toMillis());
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId3").block();
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId1").block();
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId3").block();
+
+        verify(sourceApplicationAuthorizationRequestService, times(1)).requestClientAuthorization("clientId1");
+        verify(sourceApplicationAuthorizationRequestService, times(1)).requestClientAuthorization("clientId2");
+        verify(sourceApplicationAuthorizationRequestService, times(1)).requestClientAuthorization("clientId3");
+        assertThat(sourceApplicationAuthorizationCachingService.size()).isEqualTo(2);
+    }
+
+    @Test
+    void givenDefaultPropertiesShouldNotServeStaleAuthorizations() {
+        assertThat(SourceApplicationAuthorizationCacheProperties.builder().build().getMaxStaleness()).isZero();
+    }
+
+    @Test
+    void givenCacheDisabledShouldRequestEveryTime() {
+        cacheProperties.setEnabled(false);
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization("clientId"))
+                .thenReturn(Mono.just(authorization("clientId", 1L)));
+
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+        sourceApplicationAuthorizationCachingService.getClientAuthorization("clientId").block();
+
+        verify(sourceApplicationAuthorizationRequestService, times(2)).requestClientAuthorization("clientId");
+    }
+
+    private static SourceApplicationAuthorization authorization(String clientId, Long sourceApplicationId) {
+        return SourceApplicationAuthorization
+                .builder()
+                .authorized(true)
+                .clientId(clientId)
+                .sourceApplicationId(sourceApplicationId)
+                .build();
+    }
+
+}
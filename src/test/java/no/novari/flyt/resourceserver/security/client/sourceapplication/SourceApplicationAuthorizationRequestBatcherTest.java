@@ -0,0 +1,110 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SourceApplicationAuthorizationRequestBatcherTest {
+
+    private List<List<String>> requestedBatches;
+
+    @BeforeEach
+    void setUp() {
+        requestedBatches = new CopyOnWriteArrayList<>();
+    }
+
+    @Test
+    void givenRequestsWithinBatchWindowShouldSendSingleBatchOfDistinctClientIds() {
+        SourceApplicationAuthorizationRequestBatcher batcher = createBatcher(
+                Duration.ofMillis(50),
+                10,
+                clientIds -> Mono.just(clientIds.stream()
+                        .filter(clientId -> !clientId.equals("unknownClientId"))
+                        .collect(Collectors.toMap(Function.identity(), clientId -> authorization(clientId, 1L))))
+        );
+
+        StepVerifier.create(Mono.zip(
+                        batcher.request("clientId1"),
+                        batcher.request("clientId2"),
+                        batcher.request("clientId1"),
+                        batcher.request("unknownClientId").defaultIfEmpty(authorization("none", null))
+                ))
+                .assertNext(authorizations -> {
+                    assertThat(authorizations.getT1().getClientId()).isEqualTo("clientId1");
+                    assertThat(authorizations.getT2().getClientId()).isEqualTo("clientId2");
+                    assertThat(authorizations.getT3().getClientId()).isEqualTo("clientId1");
+                    assertThat(authorizations.getT4().getClientId()).isEqualTo("none");
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(requestedBatches).containsExactly(List.of("clientId1", "clientId2", "unknownClientId"));
+    }
+
+    @Test
+    void givenFullBatchShouldSendBatchBeforeWindowHasPassed() {
+        SourceApplicationAuthorizationRequestBatcher batcher = createBatcher(
+                Duration.ofMinutes(1),
+                2,
+                clientIds -> Mono.just(clientIds.stream()
+                        .collect(Collectors.toMap(Function.identity(), clientId -> authorization(clientId, 1L))))
+        );
+
+        StepVerifier.create(Mono.zip(batcher.request("clientId1"), batcher.request("clientId2")))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(requestedBatches).containsExactly(List.of("clientId1", "clientId2"));
+    }
+
+    @Test
+    void givenFailedBatchRequestShouldFailEveryWaitingCaller() {
+        SourceApplicationAuthorizationRequestBatcher batcher = createBatcher(
+                Duration.ofMillis(10),
+                10,
+                clientIds -> Mono.error(new IllegalStateException())
+        );
+
+        StepVerifier.create(batcher.request("clientId1"))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private SourceApplicationAuthorizationRequestBatcher createBatcher(
+            Duration batchWindow,
+            int maxBatchSize,
+            Function<List<String>, Mono<Map<String, SourceApplicationAuthorization>>> batchRequest
+    ) {
+        return new SourceApplicationAuthorizationRequestBatcher(
+                clientIds -> {
+                    requestedBatches.add(clientIds);
+                    return batchRequest.apply(clientIds);
+                },
+                batchWindow,
+                maxBatchSize,
+                Schedulers.parallel()
+        );
+    }
+
+    private static SourceApplicationAuthorization authorization(String clientId, Long sourceApplicationId) {
+        return SourceApplicationAuthorization
+                .builder()
+                .authorized(sourceApplicationId != null)
+                .clientId(clientId)
+                .sourceApplicationId(sourceApplicationId)
+                .build();
+    }
+
+}
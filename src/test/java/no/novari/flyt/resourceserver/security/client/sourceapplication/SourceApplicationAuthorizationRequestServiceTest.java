@@ -0,0 +1,120 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import no.novari.flyt.resourceserver.security.RequestBulkhead;
+import no.novari.flyt.resourceserver.security.RequestCircuitBreaker;
+import no.novari.flyt.resourceserver.security.RequestHedger;
+import no.novari.flyt.resourceserver.security.properties.CircuitBreakerProperties;
+import no.novari.flyt.resourceserver.security.properties.HedgingProperties;
+import no.novari.flyt.resourceserver.security.properties.ReplyRouting;
+import no.novari.flyt.resourceserver.security.properties.SourceApplicationAuthorizationRequestProperties;
+import no.novari.kafka.requestreply.RequestTemplate;
+import no.novari.kafka.requestreply.RequestTemplateFactory;
+import no.novari.kafka.requestreply.topic.ReplyTopicService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SourceApplicationAuthorizationRequestServiceTest {
+
+    private RequestTemplate<String, SourceApplicationAuthorization> requestTemplate;
+    private RequestTemplateFactory requestTemplateFactory;
+    private SourceApplicationAuthorizationRequestService requestService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        requestTemplate = mock(RequestTemplate.class, RETURNS_DEEP_STUBS);
+        requestTemplateFactory = mock(RequestTemplateFactory.class);
+        doReturn(requestTemplate).when(requestTemplateFactory).createTemplate(
+                any(),
+                eq(String.class),
+                eq(SourceApplicationAuthorization.class),
+                any(),
+                any()
+        );
+        requestService = createRequestService(SourceApplicationAuthorizationRequestProperties.builder().build());
+    }
+
+    private SourceApplicationAuthorizationRequestService createRequestService(
+            SourceApplicationAuthorizationRequestProperties requestProperties
+    ) {
+        return new SourceApplicationAuthorizationRequestService(
+                "fint-flyt-test",
+                requestProperties,
+                new RequestCircuitBreaker("test", new CircuitBreakerProperties(), Clock.systemUTC()),
+                new RequestBulkhead("test", requestProperties.getMaxConcurrentRequests()),
+                new RequestHedger(new HedgingProperties(), Schedulers.parallel()),
+                requestTemplateFactory,
+                mock(ReplyTopicService.class)
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        requestService.destroy();
+    }
+
+    @Test
+    void givenReplyShouldEmitAuthorizationReceivedOnRequestScheduler() {
+        AtomicReference<String> requestThreadName = new AtomicReference<>();
+        SourceApplicationAuthorization authorization = new SourceApplicationAuthorization(true, "clientId", 1L);
+        when(requestTemplate.requestAndReceive(any()).value()).thenAnswer(invocation -> {
+            requestThreadName.set(Thread.currentThread().getName());
+            return authorization;
+        });
+
+        StepVerifier.create(requestService.requestClientAuthorization("clientId"))
+                .expectNext(authorization)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(requestThreadName.get()).startsWith("source-application-authorization-request");
+    }
+
+    @Test
+    void givenReplyWithoutAuthorizationShouldCompleteEmpty() {
+        when(requestTemplate.requestAndReceive(any()).value()).thenReturn(null);
+
+        StepVerifier.create(requestService.requestClientAuthorization("clientId"))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void givenFailingRequestShouldPropagateError() {
+        when(requestTemplate.requestAndReceive(any()).value()).thenThrow(new IllegalStateException("No reply"));
+
+        StepVerifier.create(requestService.requestClientAuthorization("clientId"))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void givenInstanceReplyRoutingWithoutInstanceIdShouldFailAtStartup() {
+        SourceApplicationAuthorizationRequestProperties requestProperties =
+                SourceApplicationAuthorizationRequestProperties
+                        .builder()
+                        .replyRouting(ReplyRouting.INSTANCE)
+                        .build();
+
+        assertThatThrownBy(() -> createRequestService(requestProperties))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("instance-id");
+    }
+
+}
@@ -2,6 +2,7 @@ package no.novari.flyt.resourceserver.security.client.sourceapplication;
 
 import no.novari.flyt.resourceserver.security.AuthorityMappingService;
 import no.novari.flyt.resourceserver.security.AuthorityPrefix;
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
 import no.novari.flyt.resourceserver.security.client.sourceapplication.exceptions.MultipleSourceApplicationIdsException;
 import no.novari.flyt.resourceserver.security.client.sourceapplication.exceptions.NoSourceApplicationIdException;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,8 +10,12 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import reactor.test.StepVerifier;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -101,4 +106,43 @@ class SourceApplicationAuthorizationServiceTest {
         verifyNoMoreInteractions(authentication, authorityMappingService);
     }
 
-}
\ No newline at end of file
+    @Test
+    void givenFlytAuthenticationTokenShouldReturnSourceApplicationIdWithoutParsingAuthorities() {
+        FlytAuthenticationToken authentication = flytAuthenticationToken(new long[]{1L});
+
+        assertThat(sourceApplicationAuthorizationService.getSourceApplicationId(authentication)).isEqualTo(1L);
+
+        verifyNoInteractions(authorityMappingService);
+    }
+
+    @Test
+    void givenFlytAuthenticationTokenWithoutOrWithMultipleSourceApplicationIdsShouldThrowException() {
+        assertThrows(
+                NoSourceApplicationIdException.class,
+                () -> sourceApplicationAuthorizationService.getSourceApplicationId(flytAuthenticationToken(new long[0]))
+        );
+        assertThrows(
+                MultipleSourceApplicationIdsException.class,
+                () -> sourceApplicationAuthorizationService.getSourceApplicationId(
+                        flytAuthenticationToken(new long[]{1L, 2L})
+                )
+        );
+    }
+
+    @Test
+    void givenAuthenticationInReactiveContextShouldReturnSourceApplicationId() {
+        StepVerifier.create(sourceApplicationAuthorizationService.getSourceApplicationId()
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                flytAuthenticationToken(new long[]{1L})
+                        )))
+                .expectNext(1L)
+                .verifyComplete();
+        StepVerifier.create(sourceApplicationAuthorizationService.getSourceApplicationId())
+                .verifyError(NoSourceApplicationIdException.class);
+    }
+
+    private static FlytAuthenticationToken flytAuthenticationToken(long[] sourceApplicationIds) {
+        return new FlytAuthenticationToken(mock(Jwt.class), List.of(), null, 0, sourceApplicationIds);
+    }
+
+}
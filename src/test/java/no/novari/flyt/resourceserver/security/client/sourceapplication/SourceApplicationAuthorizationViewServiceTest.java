@@ -0,0 +1,51 @@
+package no.novari.flyt.resourceserver.security.client.sourceapplication;
+
+import no.novari.cache.FintCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+
+class SourceApplicationAuthorizationViewServiceTest {
+
+    private FintCache<String, SourceApplicationAuthorization> sourceApplicationAuthorizationCache;
+    private SourceApplicationAuthorizationViewService sourceApplicationAuthorizationViewService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        sourceApplicationAuthorizationCache = mock(FintCache.class);
+        sourceApplicationAuthorizationViewService =
+                new SourceApplicationAuthorizationViewService(sourceApplicationAuthorizationCache);
+    }
+
+    @Test
+    void givenCachedClientAuthorizationShouldReturnIt() {
+        SourceApplicationAuthorization authorization = SourceApplicationAuthorization
+                .builder()
+                .authorized(true)
+                .clientId("clientId")
+                .sourceApplicationId(1L)
+                .build();
+        when(sourceApplicationAuthorizationCache.getOptional("clientId")).thenReturn(Optional.of(authorization));
+
+        StepVerifier.create(sourceApplicationAuthorizationViewService.getClientAuthorization("clientId"))
+                .expectNext(authorization)
+                .verifyComplete();
+    }
+
+    @Test
+    void givenNoCachedClientAuthorizationShouldCompleteEmpty() {
+        when(sourceApplicationAuthorizationCache.getOptional("clientId")).thenReturn(Optional.empty());
+
+        StepVerifier.create(sourceApplicationAuthorizationViewService.getClientAuthorization("clientId"))
+                .verifyComplete();
+
+        verify(sourceApplicationAuthorizationCache).getOptional("clientId");
+        verifyNoMoreInteractions(sourceApplicationAuthorizationCache);
+    }
+
+}
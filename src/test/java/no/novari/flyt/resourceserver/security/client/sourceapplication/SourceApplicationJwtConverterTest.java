@@ -1,28 +1,28 @@
 package no.novari.flyt.resourceserver.security.client.sourceapplication;
 
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
-import java.util.Optional;
-
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 class SourceApplicationJwtConverterTest {
 
-    private SourceApplicationAuthorizationRequestService sourceApplicationAuthorizationRequestService;
+    private SourceApplicationAuthorizationProvider sourceApplicationAuthorizationProvider;
     private SourceApplicationAuthorityMappingService sourceApplicationAuthorityMappingService;
     private SourceApplicationJwtConverter sourceApplicationJwtConverter;
 
     @BeforeEach
     void setUp() {
-        sourceApplicationAuthorizationRequestService = mock(SourceApplicationAuthorizationRequestService.class);
+        sourceApplicationAuthorizationProvider = mock(SourceApplicationAuthorizationProvider.class);
         sourceApplicationAuthorityMappingService = mock(SourceApplicationAuthorityMappingService.class);
         sourceApplicationJwtConverter = new SourceApplicationJwtConverter(
-                sourceApplicationAuthorizationRequestService,
+                sourceApplicationAuthorizationProvider,
                 sourceApplicationAuthorityMappingService
         );
     }
@@ -39,18 +39,18 @@ class SourceApplicationJwtConverterTest {
                 .verify();
 
         verifyNoInteractions(
-                sourceApplicationAuthorizationRequestService,
+                sourceApplicationAuthorizationProvider,
                 sourceApplicationAuthorityMappingService
         );
     }
 
     @Test
-    void givenTokenWithSubAndNoClientAuthorizationFromAuthorizationRequestShouldReturnAuthenticationWithNoSourceApplicationIdAuthority() {
+    void givenTokenWithSubAndNoClientAuthorizationShouldReturnAuthenticationWithNoSourceApplicationIdAuthority() {
         Jwt jwt = mock(Jwt.class);
         when(jwt.getSubject()).thenReturn("subjectValue");
 
-        when(sourceApplicationAuthorizationRequestService.getClientAuthorization("subjectValue"))
-                .thenReturn(Optional.empty());
+        when(sourceApplicationAuthorizationProvider.getClientAuthorization("subjectValue"))
+                .thenReturn(Mono.empty());
 
         StepVerifier.create(sourceApplicationJwtConverter.convert(jwt))
                 .assertNext(authentication ->
@@ -58,38 +58,42 @@ class SourceApplicationJwtConverterTest {
                 .expectComplete()
                 .verify();
 
-        verify(sourceApplicationAuthorizationRequestService).getClientAuthorization("subjectValue");
+        verify(sourceApplicationAuthorizationProvider).getClientAuthorization("subjectValue");
         verifyNoMoreInteractions(
-                sourceApplicationAuthorizationRequestService,
+                sourceApplicationAuthorizationProvider,
                 sourceApplicationAuthorityMappingService
         );
     }
 
     @Test
-    void givenTokenWithSubAndClientAuthorizationFromAuthorizationRequestShouldCallAuthorityMapperAndReturnAuthenticationWithMappingResult() {
+    void givenTokenWithSubAndClientAuthorizationShouldCallAuthorityMapperAndReturnAuthenticationWithMappingResult() {
         Jwt jwt = mock(Jwt.class);
         when(jwt.getSubject()).thenReturn("subjectValue");
 
 
         SourceApplicationAuthorization sourceApplicationAuthorization = mock(SourceApplicationAuthorization.class);
         when(sourceApplicationAuthorization.getSourceApplicationId()).thenReturn(3L);
-        when(sourceApplicationAuthorizationRequestService.getClientAuthorization("subjectValue"))
-                .thenReturn(Optional.of(sourceApplicationAuthorization));
+        when(sourceApplicationAuthorizationProvider.getClientAuthorization("subjectValue"))
+                .thenReturn(Mono.just(sourceApplicationAuthorization));
 
         GrantedAuthority grantedAuthority = mock(GrantedAuthority.class);
         when(sourceApplicationAuthorityMappingService.createSourceApplicationAuthority(3L))
                 .thenReturn(grantedAuthority);
 
         StepVerifier.create(sourceApplicationJwtConverter.convert(jwt))
-                .assertNext(authentication ->
-                        assertThat(authentication.getAuthorities()).containsExactly(grantedAuthority))
+                .assertNext(authentication -> {
+                    assertThat(authentication.getAuthorities()).containsExactly(grantedAuthority);
+                    assertThat(authentication).isInstanceOf(FlytAuthenticationToken.class);
+                    assertThat(((FlytAuthenticationToken) authentication).getSourceApplicationIds())
+                            .containsExactly(3L);
+                })
                 .expectComplete()
                 .verify();
 
-        verify(sourceApplicationAuthorizationRequestService).getClientAuthorization("subjectValue");
+        verify(sourceApplicationAuthorizationProvider).getClientAuthorization("subjectValue");
         verify(sourceApplicationAuthorityMappingService).createSourceApplicationAuthority(3L);
         verifyNoMoreInteractions(
-                sourceApplicationAuthorizationRequestService,
+                sourceApplicationAuthorizationProvider,
                 sourceApplicationAuthorityMappingService
         );
     }
@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -61,6 +62,8 @@ abstract class AbstractIntegrationTest {
         }
 
         if (sourceApplicationAuthorizationRequestService != null) {
+            when(sourceApplicationAuthorizationRequestService.requestClientAuthorization(anyString()))
+                    .thenReturn(Mono.empty());
             mockExternalClientSourceApplicationAuthorizations(
                     ClientId.WITH_EXTERNAL_CLIENT_SA_AUTHORIZATION_ID_1,
                     true,
@@ -93,8 +96,8 @@ abstract class AbstractIntegrationTest {
             boolean authorized,
             Long sourceApplicationId
     ) {
-        when(sourceApplicationAuthorizationRequestService.getClientAuthorization(clientId.getClaimValue()))
-                .thenReturn(Optional.of(
+        when(sourceApplicationAuthorizationRequestService.requestClientAuthorization(clientId.getClaimValue()))
+                .thenReturn(Mono.just(
                         SourceApplicationAuthorization
                                 .builder()
                                 .authorized(authorized)
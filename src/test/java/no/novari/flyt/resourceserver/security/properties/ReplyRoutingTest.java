@@ -0,0 +1,44 @@
+package no.novari.flyt.resourceserver.security.properties;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReplyRoutingTest {
+
+    @Test
+    void givenSharedReplyRoutingShouldUseApplicationId() {
+        assertThat(ReplyRouting.SHARED.createReplyApplicationId(
+                "fint-flyt-test",
+                null,
+                "instance-id"
+        )).isEqualTo("fint-flyt-test");
+    }
+
+    @Test
+    void givenInstanceReplyRoutingShouldSuffixApplicationIdWithInstanceId() {
+        assertThat(ReplyRouting.INSTANCE.createReplyApplicationId(
+                "fint-flyt-test",
+                "fint-flyt-test-0",
+                "instance-id"
+        )).isEqualTo("fint-flyt-test-fint-flyt-test-0");
+    }
+
+    @Test
+    void givenInstanceIdWithInvalidTopicCharactersShouldReplaceThem() {
+        assertThat(ReplyRouting.INSTANCE.createReplyApplicationId(
+                "fint-flyt-test",
+                "Pod_1.Node",
+                "instance-id"
+        )).isEqualTo("fint-flyt-test-pod-1-node");
+    }
+
+    @Test
+    void givenInstanceReplyRoutingWithoutInstanceIdShouldNameMissingProperty() {
+        assertThatThrownBy(() -> ReplyRouting.INSTANCE.createReplyApplicationId("fint-flyt-test", " ", "instance-id"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageStartingWith("instance-id must be set");
+    }
+
+}
@@ -2,15 +2,22 @@ package no.novari.flyt.resourceserver.security.user;
 
 import no.novari.flyt.resourceserver.security.AuthorityMappingService;
 import no.novari.flyt.resourceserver.security.AuthorityPrefix;
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -197,4 +204,133 @@ class UserAuthorizationServiceTest {
         verifyNoMoreInteractions(authorityMappingService);
     }
 
+    @Test
+    void givenFlytAuthenticationTokenShouldCheckSourceApplicationAccessWithoutParsingAuthorities() {
+        FlytAuthenticationToken authentication = flytAuthenticationToken(UserRole.USER.getMask(), new long[]{2L, 3L});
+
+        assertDoesNotThrow(
+                () -> userAuthorizationService.checkIfUserHasAccessToSourceApplication(authentication, 3L)
+        );
+        ResponseStatusException responseStatusException = assertThrows(
+                ResponseStatusException.class,
+                () -> userAuthorizationService.checkIfUserHasAccessToSourceApplication(authentication, 1L)
+        );
+        assertThat(responseStatusException.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(userAuthorizationService.getUserAuthorizedSourceApplicationIds(authentication))
+                .containsExactlyInAnyOrder(2L, 3L);
+
+        verifyNoInteractions(authorityMappingService);
+    }
+
+    @Test
+    void givenFlytAuthenticationTokenShouldCheckRoleWithoutParsingAuthorities() {
+        FlytAuthenticationToken authentication = flytAuthenticationToken(
+                UserRole.ADMIN.getMask() | UserRole.USER.getMask(),
+                new long[0]
+        );
+
+        assertThat(userAuthorizationService.userHasRole(authentication, UserRole.ADMIN)).isTrue();
+        assertThat(userAuthorizationService.userHasRole(authentication, UserRole.DEVELOPER)).isFalse();
+
+        verifyNoInteractions(authorityMappingService);
+    }
+
+    @Test
+    void givenAuthenticationInReactiveContextShouldRequireSourceApplicationAccess() {
+        FlytAuthenticationToken authentication = flytAuthenticationToken(UserRole.USER.getMask(), new long[]{2L, 3L});
+
+        StepVerifier.create(userAuthorizationService.requireSourceApplicationAccess(3L)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .verifyComplete();
+        StepVerifier.create(userAuthorizationService.requireSourceApplicationAccess(1L)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOfSatisfying(
+                                ResponseStatusException.class,
+                                exception -> assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN)
+                        ))
+                .verify();
+        StepVerifier.create(userAuthorizationService.getUserAuthorizedSourceApplicationIds()
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .assertNext(sourceApplicationIds -> assertThat(sourceApplicationIds).containsExactlyInAnyOrder(2L, 3L))
+                .verifyComplete();
+    }
+
+    @Test
+    void givenAuthenticationInReactiveContextShouldRequireRole() {
+        FlytAuthenticationToken authentication = flytAuthenticationToken(UserRole.ADMIN.getMask(), new long[0]);
+
+        StepVerifier.create(userAuthorizationService.requireRole(UserRole.ADMIN)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .verifyComplete();
+        StepVerifier.create(userAuthorizationService.requireRole(UserRole.DEVELOPER)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    void givenNoAuthenticationInReactiveContextShouldDenyAccess() {
+        StepVerifier.create(userAuthorizationService.requireSourceApplicationAccess(1L))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        StepVerifier.create(userAuthorizationService.userHasRole(UserRole.USER))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void givenRequireSourceApplicationAccessOperatorShouldOnlyLetAuthorizedValuesThrough() {
+        FlytAuthenticationToken authentication = flytAuthenticationToken(UserRole.USER.getMask(), new long[]{2L});
+
+        StepVerifier.create(Mono.just(2L)
+                        .transform(userAuthorizationService.<Long>requireSourceApplicationAccess(value -> value))
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .expectNext(2L)
+                .verifyComplete();
+        StepVerifier.create(Mono.just(1L)
+                        .transform(userAuthorizationService.<Long>requireSourceApplicationAccess(value -> value))
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    void givenFlytAuthenticationTokenShouldFilterCollectionBySourceApplicationId() {
+        FlytAuthenticationToken authentication = flytAuthenticationToken(UserRole.USER.getMask(), new long[]{2L, 3L});
+
+        List<Long> authorizedValues = userAuthorizationService.filterAuthorized(
+                authentication,
+                List.of(1L, 3L, 2L, 4L, 3L),
+                Long::longValue
+        );
+
+        assertThat(authorizedValues).containsExactly(3L, 2L, 3L);
+        verifyNoInteractions(authorityMappingService);
+    }
+
+    @Test
+    void givenAuthenticationInReactiveContextShouldFilterFluxBySourceApplicationId() {
+        FlytAuthenticationToken authentication = flytAuthenticationToken(UserRole.USER.getMask(), new long[]{2L, 3L});
+
+        StepVerifier.create(Flux.just(1L, 3L, 2L, 4L)
+                        .transform(userAuthorizationService.<Long>filterAuthorized(Long::longValue))
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .expectNext(3L, 2L)
+                .verifyComplete();
+        StepVerifier.create(Flux.just(1L, 2L)
+                        .transform(userAuthorizationService.<Long>filterAuthorized(Long::longValue)))
+                .verifyComplete();
+    }
+
+    private static FlytAuthenticationToken flytAuthenticationToken(long roleMask, long[] sourceApplicationIds) {
+        return new FlytAuthenticationToken(
+                mock(Jwt.class),
+                List.of(),
+                "organizationId",
+                roleMask,
+                sourceApplicationIds
+        );
+    }
+
 }
@@ -1,25 +1,28 @@
 package no.novari.flyt.resourceserver.security.user;
 
-import no.novari.cache.FintCache;
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
+import no.novari.flyt.resourceserver.security.SourceApplicationGrantedAuthorities;
 import no.novari.flyt.resourceserver.security.client.sourceapplication.SourceApplicationAuthorityMappingService;
-import no.novari.flyt.resourceserver.security.user.permission.UserPermission;
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionProvider;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,15 +30,11 @@ import static org.mockito.Mockito.*;
 class UserJwtConverterTest {
 
     @Mock
-    private FintCache<UUID, UserPermission> userPermissionCache;
+    private UserPermissionProvider userPermissionProvider;
     @Mock
     private SourceApplicationAuthorityMappingService sourceApplicationAuthorityMappingService;
     @Mock
-    private UserRoleAuthorityMappingService userRoleAuthorityMappingService;
-    @Mock
-    private UserRoleFilteringService userRoleFilteringService;
-    @Mock
-    private UserRoleHierarchyService userRoleHierarchyService;
+    private UserRoleAuthorityTable userRoleAuthorityTable;
     @InjectMocks
     private UserJwtConverter converter;
     @Mock
@@ -79,10 +78,12 @@ class UserJwtConverterTest {
         when(jwt.getClaimAsString(UserClaim.OBJECT_IDENTIFIER.getTokenClaimName()))
                 .thenReturn(objectIdentifier.toString());
 
-        when(userPermissionCache.getOptional(objectIdentifier))
-                .thenReturn(Optional.empty());
+        when(userPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .thenReturn(Mono.empty());
 
         when(jwt.getClaimAsStringList(UserClaim.ROLES.getTokenClaimName())).thenReturn(List.of());
+        when(sourceApplicationAuthorityMappingService.createSourceApplicationAuthorities(isNull(), eq(Set.of())))
+                .thenReturn(new SourceApplicationGrantedAuthorities("SOURCE_APPLICATION_ID_", null, Set.of()));
 
         StepVerifier.create(converter.convert(jwt))
                 .assertNext(authentication -> {
@@ -95,13 +96,13 @@ class UserJwtConverterTest {
 
         verify(jwt).getClaimAsString(UserClaim.ORGANIZATION_ID.getTokenClaimName());
         verify(jwt).getClaimAsString(UserClaim.OBJECT_IDENTIFIER.getTokenClaimName());
-        verify(userPermissionCache).getOptional(objectIdentifier);
+        verify(userPermissionProvider).getSourceApplicationIds(objectIdentifier);
         verify(jwt).getClaimAsStringList(UserClaim.ROLES.getTokenClaimName());
+        verify(sourceApplicationAuthorityMappingService).createSourceApplicationAuthorities(isNull(), eq(Set.of()));
         verifyNoMoreInteractions(
-                userRoleAuthorityMappingService,
                 sourceApplicationAuthorityMappingService,
-                userPermissionCache,
-                userRoleFilteringService
+                userPermissionProvider,
+                userRoleAuthorityTable
         );
     }
 
@@ -113,61 +114,61 @@ class UserJwtConverterTest {
         when(jwt.getClaimAsString(UserClaim.OBJECT_IDENTIFIER.getTokenClaimName()))
                 .thenReturn(objectIdentifier.toString());
 
-        UserPermission userPermission = mock(UserPermission.class);
-        Set<Long> sourceApplicationIds = Set.of(1234L);
-        when(userPermission.getSourceApplicationIds())
-                .thenReturn(sourceApplicationIds);
-
-        GrantedAuthority sourceApplicationAuthority1 = mock(GrantedAuthority.class);
-        GrantedAuthority sourceApplicationAuthority2 = mock(GrantedAuthority.class);
-        when(sourceApplicationAuthorityMappingService.createSourceApplicationAuthorities(sourceApplicationIds))
-                .thenReturn(Set.of(sourceApplicationAuthority1, sourceApplicationAuthority2));
+        long[] sourceApplicationIds = {1234L, 5678L};
 
-        when(userPermissionCache.getOptional(objectIdentifier))
-                .thenReturn(Optional.of(userPermission));
+        when(userPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .thenReturn(Mono.just(sourceApplicationIds));
 
-        Set<String> roleClaims = Set.of("TEST_ROLE_1", "TEST_ROLE_2");
-        when(jwt.getClaimAsStringList(UserClaim.ROLES.getTokenClaimName())).thenReturn(roleClaims.stream().toList());
+        List<String> roleClaims = List.of(UserRole.ADMIN.getClaimValue(), "TEST_ROLE_1");
+        when(jwt.getClaimAsStringList(UserClaim.ROLES.getTokenClaimName())).thenReturn(roleClaims);
 
-        when(userRoleFilteringService.filter(roleClaims, "testOrganizationId"))
-                .thenReturn(Set.of(UserRole.ADMIN));
-
-        when(userRoleHierarchyService.getProvidedAndImpliedRoles(Set.of(UserRole.ADMIN)))
-                .thenReturn(Set.of(UserRole.ADMIN, UserRole.USER));
-
-        GrantedAuthority roleAuthority = mock(GrantedAuthority.class);
-        when(userRoleAuthorityMappingService.createRoleAuthorities(Set.of(UserRole.ADMIN, UserRole.USER)))
+        GrantedAuthority roleAuthority = new SimpleGrantedAuthority("ROLE_ADMIN");
+        when(userRoleAuthorityTable.getRoleAuthorities("testOrganizationId", UserRole.ADMIN.getMask()))
                 .thenReturn(Set.of(roleAuthority));
+        when(sourceApplicationAuthorityMappingService.createSourceApplicationAuthorities(
+                sourceApplicationIds,
+                Set.of(roleAuthority)
+        )).thenReturn(new SourceApplicationGrantedAuthorities(
+                "SOURCE_APPLICATION_ID_",
+                sourceApplicationIds,
+                Set.of(roleAuthority)
+        ));
+        when(userRoleAuthorityTable.getGrantedRoleMask("testOrganizationId", UserRole.ADMIN.getMask()))
+                .thenReturn(UserRole.ADMIN.getMask() | UserRole.USER.getMask());
 
         StepVerifier.create(converter.convert(jwt))
                 .assertNext(authentication -> {
                     assertThat(authentication).isInstanceOf(JwtAuthenticationToken.class);
                     assertThat(authentication.getAuthorities()).containsExactlyInAnyOrder(
-                            sourceApplicationAuthority1,
-                            sourceApplicationAuthority2,
+                            new SimpleGrantedAuthority("SOURCE_APPLICATION_ID_1234"),
+                            new SimpleGrantedAuthority("SOURCE_APPLICATION_ID_5678"),
                             roleAuthority
                     );
                     assertThat(authentication.isAuthenticated()).isTrue();
+                    assertThat(authentication).isInstanceOf(FlytAuthenticationToken.class);
+                    FlytAuthenticationToken flytAuthenticationToken = (FlytAuthenticationToken) authentication;
+                    assertThat(flytAuthenticationToken.getOrganizationId()).isEqualTo("testOrganizationId");
+                    assertThat(flytAuthenticationToken.hasRole(UserRole.USER)).isTrue();
+                    assertThat(flytAuthenticationToken.hasRole(UserRole.DEVELOPER)).isFalse();
+                    assertThat(flytAuthenticationToken.hasAccessToSourceApplication(1234L)).isTrue();
                 })
                 .expectComplete()
                 .verify();
 
         verify(jwt).getClaimAsString(UserClaim.ORGANIZATION_ID.getTokenClaimName());
         verify(jwt).getClaimAsString(UserClaim.OBJECT_IDENTIFIER.getTokenClaimName());
-        verify(userPermission).getSourceApplicationIds();
-        verify(sourceApplicationAuthorityMappingService).createSourceApplicationAuthorities(sourceApplicationIds);
-        verify(userPermissionCache).getOptional(objectIdentifier);
+        verify(sourceApplicationAuthorityMappingService).createSourceApplicationAuthorities(
+                sourceApplicationIds,
+                Set.of(roleAuthority)
+        );
+        verify(userPermissionProvider).getSourceApplicationIds(objectIdentifier);
         verify(jwt).getClaimAsStringList(UserClaim.ROLES.getTokenClaimName());
-        verify(userRoleFilteringService).filter(roleClaims, "testOrganizationId");
-        verify(userRoleHierarchyService).getProvidedAndImpliedRoles(Set.of(UserRole.ADMIN));
-        verify(userRoleAuthorityMappingService).createRoleAuthorities(Set.of(UserRole.ADMIN, UserRole.USER));
+        verify(userRoleAuthorityTable).getRoleAuthorities("testOrganizationId", UserRole.ADMIN.getMask());
+        verify(userRoleAuthorityTable).getGrantedRoleMask("testOrganizationId", UserRole.ADMIN.getMask());
         verifyNoMoreInteractions(
-                userPermission,
-                userRoleAuthorityMappingService,
                 sourceApplicationAuthorityMappingService,
-                userPermissionCache,
-                userRoleFilteringService,
-                userRoleHierarchyService
+                userPermissionProvider,
+                userRoleAuthorityTable
         );
     }
 }
@@ -0,0 +1,107 @@
+package no.novari.flyt.resourceserver.security.user;
+
+import no.novari.flyt.resourceserver.security.AuthorityMappingService;
+import no.novari.flyt.resourceserver.security.properties.InternalApiSecurityProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserRoleAuthorityTableTest {
+
+    private InternalApiSecurityProperties internalApiSecurityProperties;
+    private UserRoleAuthorityTable userRoleAuthorityTable;
+
+    @BeforeEach
+    void setUp() {
+        internalApiSecurityProperties = InternalApiSecurityProperties
+                .builder()
+                .userRoleFilterPerOrgId(Map.of(
+                        "org1", Set.of(UserRole.USER, UserRole.ADMIN, UserRole.DEVELOPER),
+                        "org2", Set.of(UserRole.USER)
+                ))
+                .build();
+        userRoleAuthorityTable = new UserRoleAuthorityTable(
+                new UserRoleFilteringService(internalApiSecurityProperties),
+                new UserRoleHierarchyService(),
+                new UserRoleAuthorityMappingService(new AuthorityMappingService())
+        );
+    }
+
+    @Test
+    void givenDeveloperRoleInUnrestrictedOrganizationShouldGrantDeveloperAdminAndUser() {
+        assertThat(userRoleAuthorityTable.getRoleAuthorities("org1", UserRole.DEVELOPER.getMask()))
+                .containsExactlyInAnyOrder(
+                        authority(UserRole.DEVELOPER),
+                        authority(UserRole.ADMIN),
+                        authority(UserRole.USER)
+                );
+    }
+
+    @Test
+    void givenRolesOutsideOrganizationFilterShouldOnlyGrantFilteredRoles() {
+        long roleMask = UserRole.ADMIN.getMask() | UserRole.USER.getMask();
+
+        assertThat(userRoleAuthorityTable.getRoleAuthorities("org2", roleMask))
+                .containsExactly(authority(UserRole.USER));
+    }
+
+    @Test
+    void givenUnknownOrganizationShouldGrantNoRoles() {
+        assertThat(userRoleAuthorityTable.getRoleAuthorities("unknownOrg", UserRole.ADMIN.getMask())).isEmpty();
+    }
+
+    @Test
+    void givenSameEffectiveRolesShouldReturnSameInstance() {
+        assertThat(userRoleAuthorityTable.getRoleAuthorities("org1", UserRole.USER.getMask()))
+                .isSameAs(userRoleAuthorityTable.getRoleAuthorities("org2", UserRole.USER.getMask()))
+                .isSameAs(userRoleAuthorityTable.getRoleAuthorities("org2", UserRole.ADMIN.getMask()
+                                                                            | UserRole.USER.getMask()));
+    }
+
+    @Test
+    void givenRoleFiltersReplacedAfterBuildingShouldRebuildTable() {
+        internalApiSecurityProperties.setUserRoleFilterPerOrgId(Map.of("org2", Set.of(UserRole.ADMIN)));
+
+        assertThat(userRoleAuthorityTable.getRoleAuthorities("org2", UserRole.ADMIN.getMask()))
+                .containsExactlyInAnyOrder(authority(UserRole.ADMIN), authority(UserRole.USER));
+        assertThat(userRoleAuthorityTable.getRoleAuthorities("org2", UserRole.USER.getMask())).isEmpty();
+        assertThat(userRoleAuthorityTable.getRoleAuthorities("org1", UserRole.USER.getMask())).isEmpty();
+    }
+
+    @Test
+    void givenRoleFiltersNotReplacedShouldKeepTable() {
+        Set<GrantedAuthority> roleAuthorities = userRoleAuthorityTable.getRoleAuthorities(
+                "org2",
+                UserRole.USER.getMask()
+        );
+
+        assertThat(userRoleAuthorityTable.getRoleAuthorities("org2", UserRole.USER.getMask()))
+                .isSameAs(roleAuthorities);
+    }
+
+    @Test
+    void givenRolesShouldReturnMaskOfGrantedRoles() {
+        assertThat(userRoleAuthorityTable.getGrantedRoleMask("org1", UserRole.DEVELOPER.getMask()))
+                .isEqualTo(UserRole.DEVELOPER.getMask() | UserRole.ADMIN.getMask() | UserRole.USER.getMask());
+        long roleMask = UserRole.ADMIN.getMask() | UserRole.USER.getMask();
+        assertThat(userRoleAuthorityTable.getGrantedRoleMask("org2", roleMask)).isEqualTo(UserRole.USER.getMask());
+        assertThat(userRoleAuthorityTable.getGrantedRoleMask("unknownOrg", UserRole.ADMIN.getMask())).isZero();
+    }
+
+    @Test
+    void givenClaimValuesShouldCombineMasksOfKnownRoles() {
+        assertThat(UserRole.toRoleMask(Set.of(UserRole.USER.getClaimValue(), "unknownRole")))
+                .isEqualTo(UserRole.USER.getMask());
+    }
+
+    private static GrantedAuthority authority(UserRole userRole) {
+        return new SimpleGrantedAuthority("ROLE_" + userRole.name());
+    }
+
+}
@@ -106,4 +106,17 @@ class UserRoleFilteringServiceTest {
         assertThat(filter).isEqualTo(Set.of(UserRole.ADMIN));
     }
 
+    @Test
+    void givenRoleFiltersShouldReturnRoleFilterMaskPerOrganization() {
+        when(internalApiSecurityProperties.getUserRoleFilterPerOrgId()).thenReturn(Map.of(
+                "testOrganizationId1", Set.of(UserRole.USER, UserRole.ADMIN),
+                "testOrganizationId2", Set.of()
+        ));
+
+        assertThat(userRoleFilteringService.getRoleFilterMaskPerOrgId()).isEqualTo(Map.of(
+                "testOrganizationId1", UserRole.USER.getMask() | UserRole.ADMIN.getMask(),
+                "testOrganizationId2", 0L
+        ));
+    }
+
 }
@@ -4,9 +4,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class UserRoleHierarchyServiceTest {
 
@@ -41,4 +43,42 @@ class UserRoleHierarchyServiceTest {
                 );
     }
 
+    @Test
+    void givenRoleMaskShouldReturnMaskOfProvidedAndImpliedRoles() {
+        assertThat(userRoleHierarchyService.getProvidedAndImpliedRoleMask(UserRole.ADMIN.getMask()))
+                .isEqualTo(UserRole.ADMIN.getMask() | UserRole.USER.getMask());
+    }
+
+    @Test
+    void givenNoRolesShouldReturnNoRoles() {
+        assertThat(userRoleHierarchyService.getProvidedAndImpliedRoles(List.of())).isEmpty();
+    }
+
+    @Test
+    void givenConfiguredHierarchyShouldUseIt() {
+        UserRoleHierarchyService configuredUserRoleHierarchyService = new UserRoleHierarchyService(Map.of(
+                UserRole.DEVELOPER, Set.of(UserRole.USER)
+        ));
+
+        assertThat(configuredUserRoleHierarchyService.getProvidedAndImpliedRoles(List.of(UserRole.DEVELOPER)))
+                .isEqualTo(
+                        Set.of(UserRole.DEVELOPER, UserRole.USER)
+                );
+        assertThat(configuredUserRoleHierarchyService.getProvidedAndImpliedRoles(List.of(UserRole.ADMIN)))
+                .isEqualTo(
+                        Set.of(UserRole.ADMIN)
+                );
+    }
+
+    @Test
+    void givenHierarchyWithCycleShouldThrowException() {
+        assertThatThrownBy(() -> new UserRoleHierarchyService(Map.of(
+                UserRole.USER, Set.of(UserRole.DEVELOPER),
+                UserRole.ADMIN, Set.of(UserRole.USER),
+                UserRole.DEVELOPER, Set.of(UserRole.ADMIN)
+        )))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cycle");
+    }
+
 }
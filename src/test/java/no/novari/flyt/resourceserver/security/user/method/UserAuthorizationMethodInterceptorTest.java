@@ -0,0 +1,208 @@
+package no.novari.flyt.resourceserver.security.user.method;
+
+import no.novari.flyt.resourceserver.security.AuthorityMappingService;
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
+import no.novari.flyt.resourceserver.security.user.UserAuthorizationService;
+import no.novari.flyt.resourceserver.security.user.UserRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class UserAuthorizationMethodInterceptorTest {
+
+    private UserAuthorizationMethodAdvisor userAuthorizationMethodAdvisor;
+    private AnnotatedService annotatedService;
+    private AnnotatedService proxy;
+
+    @BeforeEach
+    void setUp() {
+        UserAuthorizationService userAuthorizationService = new UserAuthorizationService(new AuthorityMappingService());
+        userAuthorizationMethodAdvisor = new UserAuthorizationMethodAdvisor(
+                new UserAuthorizationMethodInterceptor(() -> userAuthorizationService)
+        );
+        annotatedService = new AnnotatedService();
+        proxy = createProxy(annotatedService);
+    }
+
+    @Test
+    void givenAccessToSourceApplicationParameterShouldInvokeMethod() {
+        StepVerifier.create(proxy.getBySourceApplicationId(2L)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                flytAuthenticationToken(UserRole.USER.getMask(), new long[]{2L})
+                        )))
+                .expectNext("2")
+                .verifyComplete();
+    }
+
+    @Test
+    void givenNoAccessToSourceApplicationParameterShouldFailWithoutInvokingMethod() {
+        StepVerifier.create(proxy.getBySourceApplicationId(1L)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                flytAuthenticationToken(UserRole.USER.getMask(), new long[]{2L})
+                        )))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        assertThat(annotatedService.invocations).hasValue(0);
+    }
+
+    @Test
+    void givenExpressionOnParameterPropertyShouldCheckEvaluatedSourceApplicationId() {
+        FlytAuthenticationToken authentication = flytAuthenticationToken(UserRole.USER.getMask(), new long[]{2L});
+
+        StepVerifier.create(proxy.getByInstance(new Instance(2L))
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .expectNext("2")
+                .verifyComplete();
+        StepVerifier.create(proxy.getByInstance(new Instance(3L))
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    void givenUserRoleOnTypeShouldCheckRoleForFlux() {
+        DeveloperService developerService = createProxy(new DeveloperService());
+
+        StepVerifier.create(developerService.list()
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                flytAuthenticationToken(UserRole.DEVELOPER.getMask(), new long[0])
+                        )))
+                .expectNext("a", "b")
+                .verifyComplete();
+        StepVerifier.create(developerService.list()
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                flytAuthenticationToken(UserRole.USER.getMask(), new long[0])
+                        )))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    void givenRoleAndSourceApplicationAccessShouldRequireBoth() {
+        StepVerifier.create(proxy.deleteBySourceApplicationId(2L)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                flytAuthenticationToken(UserRole.USER.getMask(), new long[]{2L})
+                        )))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        StepVerifier.create(proxy.deleteBySourceApplicationId(2L)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                flytAuthenticationToken(UserRole.ADMIN.getMask(), new long[]{2L})
+                        )))
+                .verifyComplete();
+    }
+
+    @Test
+    void givenAnnotatedMethodThatIsNotReactiveShouldFailWhenMatched() throws NoSuchMethodException {
+        assertThrows(
+                IllegalStateException.class,
+                () -> userAuthorizationMethodAdvisor.getPointcut().getMethodMatcher().matches(
+                        NonReactiveService.class.getMethod("get", Long.class),
+                        NonReactiveService.class
+                )
+        );
+    }
+
+    @Test
+    void givenUserRoleOnTypeShouldPassNonReactiveMethodsThrough() throws NoSuchMethodException {
+        DeveloperService developerService = createProxy(new DeveloperService());
+
+        assertThat(developerService.getName()).isEqualTo("developer");
+        assertThat(userAuthorizationMethodAdvisor.getPointcut().getMethodMatcher().matches(
+                DeveloperService.class.getMethod("getName"),
+                DeveloperService.class
+        )).isFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T createProxy(T target) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvisor(userAuthorizationMethodAdvisor);
+        return (T) proxyFactory.getProxy();
+    }
+
+    private static FlytAuthenticationToken flytAuthenticationToken(long roleMask, long[] sourceApplicationIds) {
+        return new FlytAuthenticationToken(
+                mock(Jwt.class),
+                List.of(),
+                "organizationId",
+                roleMask,
+                sourceApplicationIds
+        );
+    }
+
+    public static class Instance {
+
+        private final Long sourceApplicationId;
+
+        public Instance(Long sourceApplicationId) {
+            this.sourceApplicationId = sourceApplicationId;
+        }
+
+        public Long getSourceApplicationId() {
+            return sourceApplicationId;
+        }
+
+    }
+
+    public static class AnnotatedService {
+
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        @RequireSourceApplicationAccess("#sourceApplicationId")
+        public Mono<String> getBySourceApplicationId(Long sourceApplicationId) {
+            invocations.incrementAndGet();
+            return Mono.just(String.valueOf(sourceApplicationId));
+        }
+
+        @RequireSourceApplicationAccess("#instance.sourceApplicationId")
+        public Mono<String> getByInstance(Instance instance) {
+            return Mono.just(String.valueOf(instance.getSourceApplicationId()));
+        }
+
+        @RequireUserRole(UserRole.ADMIN)
+        @RequireSourceApplicationAccess("#sourceApplicationId")
+        public Mono<Void> deleteBySourceApplicationId(long sourceApplicationId) {
+            return Mono.empty();
+        }
+
+    }
+
+    @RequireUserRole(UserRole.DEVELOPER)
+    public static class DeveloperService {
+
+        public Flux<String> list() {
+            return Flux.just("a", "b");
+        }
+
+        public String getName() {
+            return "developer";
+        }
+
+    }
+
+    public static class NonReactiveService {
+
+        @RequireSourceApplicationAccess("#sourceApplicationId")
+        public String get(Long sourceApplicationId) {
+            return String.valueOf(sourceApplicationId);
+        }
+
+    }
+
+}
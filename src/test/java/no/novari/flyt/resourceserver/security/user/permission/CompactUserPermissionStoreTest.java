@@ -0,0 +1,147 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactUserPermissionStoreTest {
+
+    private CompactUserPermissionStore compactUserPermissionStore;
+
+    @BeforeEach
+    void setUp() {
+        compactUserPermissionStore = new CompactUserPermissionStore(1);
+    }
+
+    @Test
+    void givenNoStoredPermissionShouldReturnNull() {
+        assertThat(compactUserPermissionStore.getSourceApplicationIds(UUID.randomUUID())).isNull();
+    }
+
+    @Test
+    void givenStoredPermissionShouldReturnSortedSourceApplicationIds() {
+        UUID objectIdentifier = UUID.randomUUID();
+
+        compactUserPermissionStore.put(objectIdentifier, userPermission(objectIdentifier, Set.of(3L, 1L, 2L)));
+
+        assertThat(compactUserPermissionStore.getSourceApplicationIds(objectIdentifier)).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void givenPermissionWithoutSourceApplicationsShouldReturnEmptyArray() {
+        UUID objectIdentifier = UUID.randomUUID();
+
+        compactUserPermissionStore.put(objectIdentifier, userPermission(objectIdentifier, null));
+
+        assertThat(compactUserPermissionStore.getSourceApplicationIds(objectIdentifier)).isEmpty();
+        assertThat(compactUserPermissionStore.size()).isEqualTo(1);
+    }
+
+    @Test
+    void givenUpdatedPermissionShouldReplacePreviousPermission() {
+        UUID objectIdentifier = UUID.randomUUID();
+
+        compactUserPermissionStore.put(objectIdentifier, userPermission(objectIdentifier, Set.of(1L)));
+        compactUserPermissionStore.put(objectIdentifier, userPermission(objectIdentifier, Set.of(2L)));
+
+        assertThat(compactUserPermissionStore.getSourceApplicationIds(objectIdentifier)).containsExactly(2L);
+        assertThat(compactUserPermissionStore.size()).isEqualTo(1);
+    }
+
+    @Test
+    void givenMorePermissionsThanInitialCapacityShouldGrowAndKeepAllPermissions() {
+        UUID[] objectIdentifiers = new UUID[10000];
+        for (int i = 0; i < objectIdentifiers.length; i++) {
+            objectIdentifiers[i] = UUID.randomUUID();
+            compactUserPermissionStore.put(objectIdentifiers[i], userPermission(objectIdentifiers[i], Set.of((long) i)));
+        }
+
+        assertThat(compactUserPermissionStore.size()).isEqualTo(objectIdentifiers.length);
+        for (int i = 0; i < objectIdentifiers.length; i++) {
+            assertThat(compactUserPermissionStore.getSourceApplicationIds(objectIdentifiers[i])).containsExactly(i);
+        }
+    }
+
+    @Test
+    void givenObjectIdentifiersWithEqualHalvesSwappedShouldKeepThemApart() {
+        UUID objectIdentifier = new UUID(1L, 2L);
+        UUID swappedObjectIdentifier = new UUID(2L, 1L);
+
+        compactUserPermissionStore.put(objectIdentifier, userPermission(objectIdentifier, Set.of(1L)));
+        compactUserPermissionStore.put(swappedObjectIdentifier, userPermission(swappedObjectIdentifier, Set.of(2L)));
+
+        assertThat(compactUserPermissionStore.getSourceApplicationIds(objectIdentifier)).containsExactly(1L);
+        assertThat(compactUserPermissionStore.getSourceApplicationIds(swappedObjectIdentifier)).containsExactly(2L);
+    }
+
+    @Test
+    void givenRemovedPermissionShouldReturnNullAndReportWhetherItWasStored() {
+        UUID objectIdentifier = UUID.randomUUID();
+        compactUserPermissionStore.put(objectIdentifier, userPermission(objectIdentifier, Set.of(1L)));
+
+        assertThat(compactUserPermissionStore.remove(objectIdentifier)).isTrue();
+        assertThat(compactUserPermissionStore.remove(objectIdentifier)).isFalse();
+        assertThat(compactUserPermissionStore.getSourceApplicationIds(objectIdentifier)).isNull();
+        assertThat(compactUserPermissionStore.size()).isZero();
+    }
+
+    @Test
+    void givenRemovedPermissionsShouldKeepFindingRemainingPermissions() {
+        UUID[] objectIdentifiers = new UUID[10000];
+        for (int i = 0; i < objectIdentifiers.length; i++) {
+            objectIdentifiers[i] = UUID.randomUUID();
+            compactUserPermissionStore.put(objectIdentifiers[i], userPermission(objectIdentifiers[i], Set.of((long) i)));
+        }
+        List<UUID> removedObjectIdentifiers = new ArrayList<>();
+        for (int i = 0; i < objectIdentifiers.length; i += 3) {
+            removedObjectIdentifiers.add(objectIdentifiers[i]);
+        }
+
+        List<UUID> removedPermissions = compactUserPermissionStore.removeAll(removedObjectIdentifiers);
+
+        assertThat(removedPermissions).containsExactlyElementsOf(removedObjectIdentifiers);
+        assertThat(compactUserPermissionStore.size())
+                .isEqualTo(objectIdentifiers.length - removedObjectIdentifiers.size());
+        for (int i = 0; i < objectIdentifiers.length; i++) {
+            if (i % 3 == 0) {
+                assertThat(compactUserPermissionStore.getSourceApplicationIds(objectIdentifiers[i])).isNull();
+            } else {
+                assertThat(compactUserPermissionStore.getSourceApplicationIds(objectIdentifiers[i])).containsExactly(i);
+            }
+        }
+    }
+
+    @Test
+    void givenBulkUpdateShouldReturnOnlyUsersWhosePermissionChanged() {
+        UUID unchangedObjectIdentifier = UUID.randomUUID();
+        UUID changedObjectIdentifier = UUID.randomUUID();
+        UUID newObjectIdentifier = UUID.randomUUID();
+        compactUserPermissionStore.put(unchangedObjectIdentifier, new long[]{1L, 2L});
+        compactUserPermissionStore.put(changedObjectIdentifier, new long[]{1L});
+
+        List<UUID> changedObjectIdentifiers = compactUserPermissionStore.putAll(Map.of(
+                unchangedObjectIdentifier, new long[]{1L, 2L},
+                changedObjectIdentifier, new long[]{2L},
+                newObjectIdentifier, new long[0]
+        ));
+
+        assertThat(changedObjectIdentifiers).containsExactlyInAnyOrder(changedObjectIdentifier, newObjectIdentifier);
+        assertThat(compactUserPermissionStore.size()).isEqualTo(3);
+    }
+
+    private static UserPermission userPermission(UUID objectIdentifier, Set<Long> sourceApplicationIds) {
+        return UserPermission
+                .builder()
+                .objectIdentifier(objectIdentifier)
+                .sourceApplicationIds(sourceApplicationIds)
+                .build();
+    }
+
+}
@@ -0,0 +1,110 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import no.novari.cache.FintCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FintCacheUserPermissionStoreTest {
+
+    private FintCache<UUID, UserPermission> userPermissionCache;
+    private FintCacheUserPermissionStore fintCacheUserPermissionStore;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        userPermissionCache = mock(FintCache.class);
+        fintCacheUserPermissionStore = new FintCacheUserPermissionStore(userPermissionCache);
+    }
+
+    @Test
+    void givenStoredSourceApplicationIdsShouldReturnSameArrayWithoutSorting() {
+        UUID objectIdentifier = UUID.randomUUID();
+        long[] sortedSourceApplicationIds = {1L, 2L, 3L};
+
+        fintCacheUserPermissionStore.put(objectIdentifier, sortedSourceApplicationIds);
+        UserPermission userPermission = captureCachedUserPermission(objectIdentifier);
+        when(userPermissionCache.getOptional(objectIdentifier)).thenReturn(Optional.of(userPermission));
+
+        assertThat(userPermission.getSourceApplicationIds()).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(fintCacheUserPermissionStore.getSourceApplicationIds(objectIdentifier))
+                .isSameAs(sortedSourceApplicationIds);
+    }
+
+    @Test
+    void givenStoredUserPermissionShouldSortOnceWhenWritten() {
+        UUID objectIdentifier = UUID.randomUUID();
+
+        fintCacheUserPermissionStore.put(
+                objectIdentifier,
+                UserPermission
+                        .builder()
+                        .objectIdentifier(objectIdentifier)
+                        .sourceApplicationIds(Set.of(3L, 1L, 2L))
+                        .build()
+        );
+        UserPermission userPermission = captureCachedUserPermission(objectIdentifier);
+        when(userPermissionCache.getOptional(objectIdentifier)).thenReturn(Optional.of(userPermission));
+
+        long[] sourceApplicationIds = fintCacheUserPermissionStore.getSourceApplicationIds(objectIdentifier);
+
+        assertThat(sourceApplicationIds).containsExactly(1L, 2L, 3L);
+        assertThat(fintCacheUserPermissionStore.getSourceApplicationIds(objectIdentifier))
+                .isSameAs(sourceApplicationIds);
+    }
+
+    @Test
+    void givenUserPermissionPutIntoCacheDirectlyShouldReturnSortedSourceApplicationIds() {
+        UUID objectIdentifier = UUID.randomUUID();
+        when(userPermissionCache.getOptional(objectIdentifier)).thenReturn(Optional.of(
+                new UserPermission(objectIdentifier, new HashSet<>(Set.of(3L, 1L, 2L)))
+        ));
+
+        assertThat(fintCacheUserPermissionStore.getSourceApplicationIds(objectIdentifier)).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void givenNoCachedPermissionShouldReturnNull() {
+        UUID objectIdentifier = UUID.randomUUID();
+        when(userPermissionCache.getOptional(objectIdentifier)).thenReturn(Optional.empty());
+
+        assertThat(fintCacheUserPermissionStore.getSourceApplicationIds(objectIdentifier)).isNull();
+    }
+
+    @Test
+    void givenCachedPermissionsShouldPassStoredArraysToForEach() {
+        UUID objectIdentifier = UUID.randomUUID();
+        long[] sortedSourceApplicationIds = {4L, 5L};
+        fintCacheUserPermissionStore.put(objectIdentifier, sortedSourceApplicationIds);
+        when(userPermissionCache.getAll()).thenReturn(List.of(captureCachedUserPermission(objectIdentifier)));
+
+        List<long[]> passedSourceApplicationIds = new ArrayList<>();
+        fintCacheUserPermissionStore.forEach((mostSignificantBits, leastSignificantBits, sourceApplicationIds) -> {
+            assertThat(new UUID(mostSignificantBits, leastSignificantBits)).isEqualTo(objectIdentifier);
+            passedSourceApplicationIds.add(sourceApplicationIds);
+        });
+
+        assertThat(passedSourceApplicationIds).containsExactly(sortedSourceApplicationIds);
+        assertThat(passedSourceApplicationIds.getFirst()).isSameAs(sortedSourceApplicationIds);
+    }
+
+    private UserPermission captureCachedUserPermission(UUID objectIdentifier) {
+        ArgumentCaptor<UserPermission> userPermissionCaptor = ArgumentCaptor.forClass(UserPermission.class);
+        verify(userPermissionCache).put(eq(objectIdentifier), userPermissionCaptor.capture());
+        return userPermissionCaptor.getValue();
+    }
+
+}
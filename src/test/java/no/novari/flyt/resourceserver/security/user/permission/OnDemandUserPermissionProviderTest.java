@@ -0,0 +1,177 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class OnDemandUserPermissionProviderTest {
+
+    private OnDemandUserPermissionStore userPermissionStore;
+    private UserPermissionRequestService userPermissionRequestService;
+    private OnDemandUserPermissionProvider onDemandUserPermissionProvider;
+
+    @BeforeEach
+    void setUp() {
+        userPermissionStore = new OnDemandUserPermissionStore(2);
+        userPermissionRequestService = mock(UserPermissionRequestService.class);
+        onDemandUserPermissionProvider = new OnDemandUserPermissionProvider(
+                userPermissionStore,
+                userPermissionRequestService
+        );
+    }
+
+    @Test
+    void givenUserNotInWorkingSetShouldRequestOnceAndKeepIt() {
+        UUID objectIdentifier = UUID.randomUUID();
+        when(userPermissionRequestService.requestUserPermission(objectIdentifier))
+                .thenReturn(Mono.just(userPermission(objectIdentifier, Set.of(2L, 1L))));
+
+        StepVerifier.create(onDemandUserPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .assertNext(sourceApplicationIds -> assertThat(sourceApplicationIds).containsExactly(1L, 2L))
+                .verifyComplete();
+        StepVerifier.create(onDemandUserPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .assertNext(sourceApplicationIds -> assertThat(sourceApplicationIds).containsExactly(1L, 2L))
+                .verifyComplete();
+
+        verify(userPermissionRequestService, times(1)).requestUserPermission(objectIdentifier);
+    }
+
+    @Test
+    void givenUnknownUserShouldKeepItWithoutSourceApplications() {
+        UUID objectIdentifier = UUID.randomUUID();
+        when(userPermissionRequestService.requestUserPermission(objectIdentifier)).thenReturn(Mono.empty());
+
+        StepVerifier.create(onDemandUserPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .assertNext(sourceApplicationIds -> assertThat(sourceApplicationIds).isEmpty())
+                .verifyComplete();
+        StepVerifier.create(onDemandUserPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .assertNext(sourceApplicationIds -> assertThat(sourceApplicationIds).isEmpty())
+                .verifyComplete();
+
+        verify(userPermissionRequestService, times(1)).requestUserPermission(objectIdentifier);
+    }
+
+    @Test
+    void givenConcurrentMissesForSameUserShouldShareOneRequest() {
+        UUID objectIdentifier = UUID.randomUUID();
+        Sinks.One<UserPermission> reply = Sinks.one();
+        when(userPermissionRequestService.requestUserPermission(objectIdentifier)).thenReturn(reply.asMono());
+
+        StepVerifier first = StepVerifier
+                .create(onDemandUserPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .assertNext(sourceApplicationIds -> assertThat(sourceApplicationIds).containsExactly(1L))
+                .expectComplete()
+                .verifyLater();
+        StepVerifier second = StepVerifier
+                .create(onDemandUserPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .assertNext(sourceApplicationIds -> assertThat(sourceApplicationIds).containsExactly(1L))
+                .expectComplete()
+                .verifyLater();
+        reply.tryEmitValue(userPermission(objectIdentifier, Set.of(1L)));
+
+        first.verify();
+        second.verify();
+        verify(userPermissionRequestService, times(1)).requestUserPermission(objectIdentifier);
+    }
+
+    @Test
+    void givenUpdateWhileLoadingShouldKeepUpdateInsteadOfReply() {
+        UUID objectIdentifier = UUID.randomUUID();
+        Sinks.One<UserPermission> reply = Sinks.one();
+        when(userPermissionRequestService.requestUserPermission(objectIdentifier)).thenReturn(reply.asMono());
+
+        StepVerifier loading = StepVerifier
+                .create(onDemandUserPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .assertNext(sourceApplicationIds -> assertThat(sourceApplicationIds).containsExactly(2L))
+                .expectComplete()
+                .verifyLater();
+        userPermissionStore.putAll(Map.of(objectIdentifier, new long[]{2L}));
+        reply.tryEmitValue(userPermission(objectIdentifier, Set.of(1L)));
+
+        loading.verify();
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier)).containsExactly(2L);
+    }
+
+    @Test
+    void givenRemovalWhileLoadingShouldCompleteEmpty() {
+        UUID objectIdentifier = UUID.randomUUID();
+        Sinks.One<UserPermission> reply = Sinks.one();
+        when(userPermissionRequestService.requestUserPermission(objectIdentifier)).thenReturn(reply.asMono());
+
+        StepVerifier loading = StepVerifier
+                .create(onDemandUserPermissionProvider.getSourceApplicationIds(objectIdentifier))
+                .expectComplete()
+                .verifyLater();
+        userPermissionStore.remove(objectIdentifier);
+        reply.tryEmitValue(userPermission(objectIdentifier, Set.of(1L)));
+
+        loading.verify();
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier)).isNull();
+    }
+
+    @Test
+    void givenFullWorkingSetShouldEvictLeastRecentlyUsedUser() {
+        UUID objectIdentifier1 = UUID.randomUUID();
+        UUID objectIdentifier2 = UUID.randomUUID();
+        UUID objectIdentifier3 = UUID.randomUUID();
+        userPermissionStore.put(objectIdentifier1, new long[]{1L});
+        userPermissionStore.put(objectIdentifier2, new long[]{2L});
+        userPermissionStore.getSourceApplicationIds(objectIdentifier1);
+
+        userPermissionStore.put(objectIdentifier3, new long[]{3L});
+
+        assertThat(userPermissionStore.size()).isEqualTo(2);
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier1)).containsExactly(1L);
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier2)).isNull();
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier3)).containsExactly(3L);
+    }
+
+    @Test
+    void givenBulkUpdateShouldNotCountAsRead() {
+        UUID objectIdentifier1 = UUID.randomUUID();
+        UUID objectIdentifier2 = UUID.randomUUID();
+        UUID objectIdentifier3 = UUID.randomUUID();
+        userPermissionStore.put(objectIdentifier1, new long[]{1L});
+        userPermissionStore.put(objectIdentifier2, new long[]{2L});
+        userPermissionStore.putAll(Map.of(objectIdentifier1, new long[]{4L}));
+
+        userPermissionStore.put(objectIdentifier3, new long[]{3L});
+
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier1)).isNull();
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier2)).containsExactly(2L);
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier3)).containsExactly(3L);
+    }
+
+    @Test
+    void givenBulkUpdateShouldOnlyRefreshUsersInWorkingSet() {
+        UUID residentObjectIdentifier = UUID.randomUUID();
+        UUID otherObjectIdentifier = UUID.randomUUID();
+        userPermissionStore.put(residentObjectIdentifier, new long[]{1L});
+
+        userPermissionStore.putAll(Map.of(
+                residentObjectIdentifier, new long[]{2L},
+                otherObjectIdentifier, new long[]{3L}
+        ));
+
+        assertThat(userPermissionStore.getSourceApplicationIds(residentObjectIdentifier)).containsExactly(2L);
+        assertThat(userPermissionStore.getSourceApplicationIds(otherObjectIdentifier)).isNull();
+    }
+
+    private static UserPermission userPermission(UUID objectIdentifier, Set<Long> sourceApplicationIds) {
+        return UserPermission
+                .builder()
+                .objectIdentifier(objectIdentifier)
+                .sourceApplicationIds(sourceApplicationIds)
+                .build();
+    }
+
+}
@@ -0,0 +1,200 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import no.novari.flyt.resourceserver.security.VerifiedTokenCache;
+import no.novari.flyt.resourceserver.security.properties.UserPermissionIngestionProperties;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class UserPermissionBatchIngesterTest {
+
+    private CompactUserPermissionStore userPermissionStore;
+    private UserPermissionConsumedOffsets consumedOffsets;
+    private UserPermissionCatchUpTracker catchUpTracker;
+    private VerifiedTokenCache verifiedTokenCache;
+    private UserPermissionIngestionProperties ingestionProperties;
+    private UserPermissionBatchIngester batchIngester;
+
+    @BeforeEach
+    void setUp() {
+        userPermissionStore = spy(new CompactUserPermissionStore(16));
+        consumedOffsets = new UserPermissionConsumedOffsets();
+        catchUpTracker = new UserPermissionCatchUpTracker(consumedOffsets, Clock.systemUTC());
+        verifiedTokenCache = mock(VerifiedTokenCache.class);
+        ingestionProperties = new UserPermissionIngestionProperties();
+        batchIngester = new UserPermissionBatchIngester(
+                userPermissionStore,
+                consumedOffsets,
+                catchUpTracker,
+                verifiedTokenCache,
+                ingestionProperties
+        );
+    }
+
+    @Test
+    void givenSeveralRecordsForSameUserShouldApplyLastRecordOnceInOneBulkOperation() {
+        UUID objectIdentifier = UUID.randomUUID();
+
+        batchIngester.ingest(List.of(
+                consumerRecord(0, 0L, objectIdentifier.toString(), Set.of(1L)),
+                consumerRecord(0, 1L, objectIdentifier.toString(), Set.of(2L, 3L))
+        ));
+
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier)).containsExactly(2L, 3L);
+        verify(userPermissionStore, times(1)).putAll(anyMap());
+        verify(verifiedTokenCache, times(1)).invalidate(VerifiedTokenCache.userPrincipal(objectIdentifier));
+    }
+
+    @Test
+    void givenUnchangedPermissionShouldNotInvalidateVerifiedTokens() {
+        UUID objectIdentifier = UUID.randomUUID();
+        userPermissionStore.put(objectIdentifier, new long[]{1L, 2L});
+
+        batchIngester.ingest(List.of(consumerRecord(0, 0L, objectIdentifier.toString(), Set.of(2L, 1L))));
+
+        verify(verifiedTokenCache, never()).invalidate(anyString());
+    }
+
+    @Test
+    void givenTombstoneForUnknownUserShouldNotInvalidateVerifiedTokens() {
+        batchIngester.ingest(List.of(tombstone(0, 0L, UUID.randomUUID().toString())));
+
+        verify(verifiedTokenCache, never()).invalidate(anyString());
+    }
+
+    @Test
+    void givenStoreHoldingWorkingSetShouldInvalidateEveryUserInBatch() {
+        OnDemandUserPermissionStore onDemandUserPermissionStore = new OnDemandUserPermissionStore(16);
+        UserPermissionBatchIngester onDemandBatchIngester = new UserPermissionBatchIngester(
+                onDemandUserPermissionStore,
+                consumedOffsets,
+                catchUpTracker,
+                verifiedTokenCache,
+                ingestionProperties
+        );
+        UUID updatedObjectIdentifier = UUID.randomUUID();
+        UUID deletedObjectIdentifier = UUID.randomUUID();
+
+        onDemandBatchIngester.ingest(List.of(
+                consumerRecord(0, 0L, updatedObjectIdentifier.toString(), Set.of(1L)),
+                tombstone(0, 1L, deletedObjectIdentifier.toString())
+        ));
+
+        assertThat(onDemandUserPermissionStore.size()).isZero();
+        verify(verifiedTokenCache).invalidate(VerifiedTokenCache.userPrincipal(updatedObjectIdentifier));
+        verify(verifiedTokenCache).invalidate(VerifiedTokenCache.userPrincipal(deletedObjectIdentifier));
+    }
+
+    @Test
+    void givenBatchShouldRecordLastOffsetPerPartitionAndNumberOfRecords() {
+        batchIngester.ingest(List.of(
+                consumerRecord(0, 4L, UUID.randomUUID().toString(), Set.of(1L)),
+                consumerRecord(1, 7L, UUID.randomUUID().toString(), Set.of(1L)),
+                consumerRecord(0, 5L, UUID.randomUUID().toString(), Set.of(1L))
+        ));
+
+        assertThat(consumedOffsets.getNextOffsetPerPartition()).isEqualTo(Map.of(0, 6L, 1, 8L));
+        assertThat(catchUpTracker.getNumberOfConsumedRecords()).isEqualTo(3);
+    }
+
+    @Test
+    void givenRecordWithInvalidKeyShouldSkipItAndApplyTheRest() {
+        UUID objectIdentifier = UUID.randomUUID();
+
+        batchIngester.ingest(List.of(
+                consumerRecord(0, 0L, "not-an-object-identifier", Set.of(1L)),
+                consumerRecord(0, 1L, null, Set.of(1L)),
+                consumerRecord(0, 2L, objectIdentifier.toString(), Set.of(2L))
+        ));
+
+        assertThat(userPermissionStore.size()).isEqualTo(1);
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier)).containsExactly(2L);
+        assertThat(consumedOffsets.getNextOffsetPerPartition()).isEqualTo(Map.of(0, 3L));
+    }
+
+    @Test
+    void givenTombstoneShouldRemoveUserAndCountDeletion() {
+        UUID objectIdentifier = UUID.randomUUID();
+        userPermissionStore.put(objectIdentifier, new long[]{1L});
+
+        batchIngester.ingest(List.of(tombstone(0, 0L, objectIdentifier.toString())));
+
+        assertThat(userPermissionStore.getSourceApplicationIds(objectIdentifier)).isNull();
+        assertThat(userPermissionStore.size()).isZero();
+        assertThat(catchUpTracker.getNumberOfDeletedUserPermissions()).isEqualTo(1);
+        verify(verifiedTokenCache).invalidate(VerifiedTokenCache.userPrincipal(objectIdentifier));
+    }
+
+    @Test
+    void givenTombstoneAndPermissionForSameUserShouldApplyLastRecord() {
+        UUID deletedObjectIdentifier = UUID.randomUUID();
+        UUID recreatedObjectIdentifier = UUID.randomUUID();
+        userPermissionStore.put(deletedObjectIdentifier, new long[]{1L});
+        userPermissionStore.put(recreatedObjectIdentifier, new long[]{1L});
+
+        batchIngester.ingest(List.of(
+                consumerRecord(0, 0L, deletedObjectIdentifier.toString(), Set.of(2L)),
+                tombstone(0, 1L, deletedObjectIdentifier.toString()),
+                tombstone(0, 2L, recreatedObjectIdentifier.toString()),
+                consumerRecord(0, 3L, recreatedObjectIdentifier.toString(), Set.of(3L))
+        ));
+
+        assertThat(userPermissionStore.getSourceApplicationIds(deletedObjectIdentifier)).isNull();
+        assertThat(userPermissionStore.getSourceApplicationIds(recreatedObjectIdentifier)).containsExactly(3L);
+        assertThat(catchUpTracker.getNumberOfDeletedUserPermissions()).isEqualTo(1);
+    }
+
+    @Test
+    void givenTombstoneForUnknownUserShouldNotCountDeletion() {
+        batchIngester.ingest(List.of(tombstone(0, 0L, UUID.randomUUID().toString())));
+
+        assertThat(catchUpTracker.getNumberOfDeletedUserPermissions()).isZero();
+        assertThat(consumedOffsets.getNextOffsetPerPartition()).isEqualTo(Map.of(0, 1L));
+    }
+
+    @Test
+    void givenParallelApplyForLargeBatchShouldApplyAllRecords() {
+        ingestionProperties.setParallelApplyEnabled(true);
+        ingestionProperties.setParallelApplyMinBatchSize(100);
+        List<ConsumerRecord<String, UserPermission>> consumerRecords = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            consumerRecords.add(consumerRecord(0, i, UUID.randomUUID().toString(), Set.of((long) i)));
+        }
+
+        batchIngester.ingest(consumerRecords);
+
+        assertThat(userPermissionStore.size()).isEqualTo(1000);
+        assertThat(userPermissionStore.getSourceApplicationIds(UUID.fromString(consumerRecords.get(500).key())))
+                .containsExactly(500L);
+    }
+
+    private static ConsumerRecord<String, UserPermission> tombstone(int partition, long offset, String key) {
+        return new ConsumerRecord<>("userpermission", partition, offset, key, null);
+    }
+
+    private static ConsumerRecord<String, UserPermission> consumerRecord(
+            int partition,
+            long offset,
+            String key,
+            Set<Long> sourceApplicationIds
+    ) {
+        return new ConsumerRecord<>(
+                "userpermission",
+                partition,
+                offset,
+                key,
+                UserPermission.builder().sourceApplicationIds(sourceApplicationIds).build()
+        );
+    }
+
+}
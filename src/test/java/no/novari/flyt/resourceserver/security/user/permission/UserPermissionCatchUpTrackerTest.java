@@ -0,0 +1,87 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserPermissionCatchUpTrackerTest {
+
+    private UserPermissionConsumedOffsets consumedOffsets;
+    private UserPermissionCatchUpTracker catchUpTracker;
+
+    @BeforeEach
+    void setUp() {
+        consumedOffsets = new UserPermissionConsumedOffsets();
+        catchUpTracker = new UserPermissionCatchUpTracker(consumedOffsets, Clock.systemUTC());
+    }
+
+    @Test
+    void givenNoAssignedPartitionsShouldNotBeCaughtUp() {
+        assertThat(catchUpTracker.isCaughtUp()).isFalse();
+    }
+
+    @Test
+    void givenPartitionsNotConsumedToEndOffsetShouldNotBeCaughtUpAndReportLag() {
+        catchUpTracker.partitionsAssigned(Map.of(0, 0L, 1, 0L), Map.of(0, 10L, 1, 5L));
+        consumedOffsets.recordConsumed(0, 9L);
+        consumedOffsets.recordConsumed(1, 2L);
+
+        assertThat(catchUpTracker.isCaughtUp()).isFalse();
+        assertThat(catchUpTracker.getLagPerPartition()).isEqualTo(Map.of(0, 0L, 1, 2L));
+    }
+
+    @Test
+    void givenAllPartitionsConsumedToEndOffsetShouldBeCaughtUp() {
+        catchUpTracker.partitionsAssigned(Map.of(0, 0L, 1, 0L), Map.of(0, 10L, 1, 5L));
+        consumedOffsets.recordConsumed(0, 9L);
+        consumedOffsets.recordConsumed(1, 4L);
+
+        assertThat(catchUpTracker.isCaughtUp()).isTrue();
+    }
+
+    @Test
+    void givenConsumerPositionAtEndOffsetShouldBeCaughtUpWithoutConsumingTailRecord() {
+        catchUpTracker.partitionsAssigned(Map.of(0, 0L), Map.of(0, 10L));
+        consumedOffsets.recordConsumed(0, 8L);
+        assertThat(catchUpTracker.isCaughtUp()).isFalse();
+
+        catchUpTracker.positionReached(0, 10L);
+
+        assertThat(catchUpTracker.getLagPerPartition()).isEqualTo(Map.of(0, 0L));
+        assertThat(catchUpTracker.isCaughtUp()).isTrue();
+    }
+
+    @Test
+    void givenPositionOfUnassignedPartitionShouldIgnoreIt() {
+        catchUpTracker.partitionsAssigned(Map.of(0, 0L), Map.of(0, 10L));
+
+        catchUpTracker.positionReached(1, 10L);
+
+        assertThat(catchUpTracker.getLagPerPartition()).isEqualTo(Map.of(0, 10L));
+    }
+
+    @Test
+    void givenEmptyPartitionsShouldBeCaughtUpWithoutConsuming() {
+        catchUpTracker.partitionsAssigned(Map.of(0, 7L), Map.of(0, 7L));
+
+        assertThat(catchUpTracker.isCaughtUp()).isTrue();
+    }
+
+    @Test
+    void givenCaughtUpOnceShouldStayCaughtUpAfterRebalance() {
+        catchUpTracker.partitionsAssigned(Map.of(0, 0L), Map.of(0, 0L));
+        assertThat(catchUpTracker.isCaughtUp()).isTrue();
+
+        catchUpTracker.partitionsRevoked(List.of(0));
+        catchUpTracker.partitionsAssigned(Map.of(1, 0L), Map.of(1, 100L));
+
+        assertThat(catchUpTracker.isCaughtUp()).isTrue();
+        assertThat(catchUpTracker.getLagPerPartition()).isEqualTo(Map.of(1, 100L));
+    }
+
+}
@@ -0,0 +1,57 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserPermissionConsumerPositionInterceptorTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("userpermission", 0);
+
+    private UserPermissionConsumedOffsets consumedOffsets;
+    private UserPermissionCatchUpTracker catchUpTracker;
+    private UserPermissionConsumerPositionInterceptor interceptor;
+    private Consumer<String, UserPermission> consumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        consumedOffsets = new UserPermissionConsumedOffsets();
+        catchUpTracker = new UserPermissionCatchUpTracker(consumedOffsets, Clock.systemUTC());
+        interceptor = new UserPermissionConsumerPositionInterceptor(catchUpTracker);
+        consumer = mock(Consumer.class);
+        when(consumer.assignment()).thenReturn(Set.of(PARTITION));
+        catchUpTracker.partitionsAssigned(Map.of(0, 0L), Map.of(0, 10L));
+    }
+
+    @Test
+    void givenTailRecordSkippedAfterFailedBatchShouldBeCaughtUp() {
+        consumedOffsets.recordConsumed(0, 8L);
+        when(consumer.position(PARTITION)).thenReturn(10L);
+
+        interceptor.failure(ConsumerRecords.empty(), new IllegalStateException(), consumer);
+
+        assertThat(catchUpTracker.isCaughtUp()).isTrue();
+    }
+
+    @Test
+    void givenProcessedBatchShouldReportConsumerPosition() {
+        when(consumer.position(PARTITION)).thenReturn(4L);
+
+        interceptor.success(ConsumerRecords.empty(), consumer);
+
+        assertThat(catchUpTracker.getLagPerPartition()).isEqualTo(Map.of(0, 6L));
+        assertThat(catchUpTracker.isCaughtUp()).isFalse();
+    }
+
+}
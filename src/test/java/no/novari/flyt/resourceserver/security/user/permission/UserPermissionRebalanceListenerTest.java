@@ -0,0 +1,101 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import no.novari.flyt.resourceserver.security.user.permission.UserPermissionRebalanceListener.StartPosition;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class UserPermissionRebalanceListenerTest {
+
+    private static final TopicPartition PARTITION_0 = new TopicPartition("userpermission", 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition("userpermission", 1);
+
+    private ConsumerRebalanceListener delegate;
+    private UserPermissionConsumedOffsets consumedOffsets;
+    private UserPermissionCatchUpTracker catchUpTracker;
+    private Consumer<?, ?> consumer;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(ConsumerRebalanceListener.class);
+        consumedOffsets = new UserPermissionConsumedOffsets();
+        catchUpTracker = mock(UserPermissionCatchUpTracker.class);
+        consumer = mock(Consumer.class);
+        when(consumer.beginningOffsets(any())).thenReturn(Map.of(PARTITION_0, 0L, PARTITION_1, 0L));
+        when(consumer.endOffsets(any())).thenReturn(Map.of(PARTITION_0, 100L, PARTITION_1, 100L));
+    }
+
+    @Test
+    void givenKnownOffsetShouldSeekToNextOffsetAndLeaveOtherPartitionsAlone() {
+        consumedOffsets.recordConsumed(0, 41L);
+
+        rebalanceListener(StartPosition.CONSUMED_OFFSETS)
+                .onPartitionsAssigned(consumer, List.of(PARTITION_0, PARTITION_1));
+
+        verify(delegate).onPartitionsAssigned(List.of(PARTITION_0, PARTITION_1));
+        verify(consumer).seek(PARTITION_0, 42L);
+        verify(consumer, never()).seek(eq(PARTITION_1), anyLong());
+        verify(catchUpTracker).partitionsAssigned(Map.of(0, 42L, 1, 0L), Map.of(0, 100L, 1, 100L));
+    }
+
+    @Test
+    void givenKnownOffsetBeyondEndOfPartitionShouldNotSeek() {
+        consumedOffsets.recordConsumed(0, 200L);
+
+        rebalanceListener(StartPosition.CONSUMED_OFFSETS)
+                .onPartitionsAssigned(consumer, List.of(PARTITION_0));
+
+        verify(consumer, never()).seek(any(TopicPartition.class), anyLong());
+    }
+
+    @Test
+    void givenNotResumingShouldNotSeekAndReportAssignmentFromBeginning() {
+        consumedOffsets.recordConsumed(0, 41L);
+
+        rebalanceListener(StartPosition.BEGINNING)
+                .onPartitionsAssigned(consumer, List.of(PARTITION_0, PARTITION_1));
+
+        verify(consumer, never()).seek(any(TopicPartition.class), anyLong());
+        verify(catchUpTracker).partitionsAssigned(Map.of(0, 0L, 1, 0L), Map.of(0, 100L, 1, 100L));
+    }
+
+    @Test
+    void givenStartingFromEndShouldSeekToEndAndReportAssignmentAsCaughtUp() {
+        consumedOffsets.recordConsumed(0, 41L);
+
+        rebalanceListener(StartPosition.END)
+                .onPartitionsAssigned(consumer, List.of(PARTITION_0, PARTITION_1));
+
+        verify(consumer).seekToEnd(List.of(PARTITION_0, PARTITION_1));
+        verify(consumer, never()).seek(any(TopicPartition.class), anyLong());
+        verify(catchUpTracker).partitionsAssigned(Map.of(0, 100L, 1, 100L), Map.of(0, 100L, 1, 100L));
+    }
+
+    @Test
+    void givenRevokedPartitionsShouldReportThemToTracker() {
+        rebalanceListener(StartPosition.BEGINNING)
+                .onPartitionsRevokedAfterCommit(consumer, List.of(PARTITION_1));
+
+        verify(delegate).onPartitionsRevoked(List.of(PARTITION_1));
+        verify(catchUpTracker).partitionsRevoked(List.of(1));
+    }
+
+    private UserPermissionRebalanceListener rebalanceListener(StartPosition startPosition) {
+        return new UserPermissionRebalanceListener(
+                delegate,
+                consumedOffsets,
+                startPosition,
+                catchUpTracker
+        );
+    }
+
+}
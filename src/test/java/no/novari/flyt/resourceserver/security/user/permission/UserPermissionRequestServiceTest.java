@@ -0,0 +1,121 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import no.novari.flyt.resourceserver.security.RequestBulkhead;
+import no.novari.flyt.resourceserver.security.RequestCircuitBreaker;
+import no.novari.flyt.resourceserver.security.properties.CircuitBreakerProperties;
+import no.novari.flyt.resourceserver.security.properties.ReplyRouting;
+import no.novari.flyt.resourceserver.security.properties.UserPermissionStoreProperties;
+import no.novari.kafka.requestreply.RequestTemplate;
+import no.novari.kafka.requestreply.RequestTemplateFactory;
+import no.novari.kafka.requestreply.topic.ReplyTopicService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserPermissionRequestServiceTest {
+
+    private RequestTemplate<String, UserPermission> requestTemplate;
+    private RequestTemplateFactory requestTemplateFactory;
+    private UserPermissionRequestService requestService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        requestTemplate = mock(RequestTemplate.class, RETURNS_DEEP_STUBS);
+        requestTemplateFactory = mock(RequestTemplateFactory.class);
+        doReturn(requestTemplate).when(requestTemplateFactory).createTemplate(
+                any(),
+                eq(String.class),
+                eq(UserPermission.class),
+                any(),
+                any()
+        );
+        requestService = createRequestService(UserPermissionStoreProperties.builder().build());
+    }
+
+    private UserPermissionRequestService createRequestService(
+            UserPermissionStoreProperties userPermissionStoreProperties
+    ) {
+        return new UserPermissionRequestService(
+                "fint-flyt-test",
+                userPermissionStoreProperties,
+                new RequestCircuitBreaker("test", new CircuitBreakerProperties(), Clock.systemUTC()),
+                new RequestBulkhead("test", userPermissionStoreProperties.getMaxConcurrentRequests()),
+                requestTemplateFactory,
+                mock(ReplyTopicService.class)
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        requestService.destroy();
+    }
+
+    @Test
+    void givenReplyShouldEmitPermissionReceivedOnRequestScheduler() {
+        AtomicReference<String> requestThreadName = new AtomicReference<>();
+        UUID objectIdentifier = UUID.randomUUID();
+        UserPermission userPermission = UserPermission
+                .builder()
+                .objectIdentifier(objectIdentifier)
+                .sourceApplicationIds(Set.of(1L))
+                .build();
+        when(requestTemplate.requestAndReceive(any()).value()).thenAnswer(invocation -> {
+            requestThreadName.set(Thread.currentThread().getName());
+            return userPermission;
+        });
+
+        StepVerifier.create(requestService.requestUserPermission(objectIdentifier))
+                .expectNext(userPermission)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(requestThreadName.get()).startsWith("user-permission-request");
+    }
+
+    @Test
+    void givenConfiguredReplyTimeoutShouldCreateTemplateWithIt() {
+        requestService.destroy();
+        requestService = createRequestService(
+                UserPermissionStoreProperties.builder().replyTimeout(Duration.ofMillis(750)).build()
+        );
+
+        verify(requestTemplateFactory).createTemplate(
+                any(),
+                eq(String.class),
+                eq(UserPermission.class),
+                eq(Duration.ofMillis(750)),
+                any()
+        );
+    }
+
+    @Test
+    void givenInstanceReplyRoutingWithoutInstanceIdShouldFailAtStartup() {
+        UserPermissionStoreProperties userPermissionStoreProperties = UserPermissionStoreProperties
+                .builder()
+                .replyRouting(ReplyRouting.INSTANCE)
+                .build();
+
+        assertThatThrownBy(() -> createRequestService(userPermissionStoreProperties))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("user-permission-store.instance-id");
+    }
+
+}
@@ -0,0 +1,138 @@
+package no.novari.flyt.resourceserver.security.user.permission;
+
+import no.novari.flyt.resourceserver.security.properties.UserPermissionSnapshotProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserPermissionSnapshotServiceTest {
+
+    @TempDir
+    private Path directory;
+
+    private UserPermissionSnapshotProperties snapshotProperties;
+
+    @BeforeEach
+    void setUp() {
+        snapshotProperties = UserPermissionSnapshotProperties
+                .builder()
+                .enabled(true)
+                .path(directory.resolve("userpermission.snapshot"))
+                .build();
+    }
+
+    @Test
+    void givenWrittenSnapshotShouldRestorePermissionsAndOffsets() {
+        UUID objectIdentifier1 = UUID.randomUUID();
+        UUID objectIdentifier2 = UUID.randomUUID();
+        CompactUserPermissionStore userPermissionStore = new CompactUserPermissionStore(16);
+        userPermissionStore.put(objectIdentifier1, new long[]{1L, 2L});
+        userPermissionStore.put(objectIdentifier2, new long[0]);
+        UserPermissionConsumedOffsets consumedOffsets = new UserPermissionConsumedOffsets();
+        consumedOffsets.recordConsumed(0, 41L);
+        consumedOffsets.recordConsumed(1, 9L);
+        snapshotService(userPermissionStore, consumedOffsets).write();
+
+        CompactUserPermissionStore restoredUserPermissionStore = new CompactUserPermissionStore(16);
+        UserPermissionConsumedOffsets restoredConsumedOffsets = new UserPermissionConsumedOffsets();
+        boolean loaded = snapshotService(restoredUserPermissionStore, restoredConsumedOffsets).load();
+
+        assertThat(loaded).isTrue();
+        assertThat(restoredUserPermissionStore.size()).isEqualTo(2);
+        assertThat(restoredUserPermissionStore.getSourceApplicationIds(objectIdentifier1)).containsExactly(1L, 2L);
+        assertThat(restoredUserPermissionStore.getSourceApplicationIds(objectIdentifier2)).isEmpty();
+        assertThat(restoredConsumedOffsets.getNextOffsetPerPartition()).isEqualTo(Map.of(0, 42L, 1, 10L));
+    }
+
+    @Test
+    void givenEmptyStoreShouldWriteAndLoadEmptySnapshot() {
+        snapshotService(new CompactUserPermissionStore(16), new UserPermissionConsumedOffsets()).write();
+
+        CompactUserPermissionStore restoredUserPermissionStore = new CompactUserPermissionStore(16);
+        boolean loaded = snapshotService(restoredUserPermissionStore, new UserPermissionConsumedOffsets()).load();
+
+        assertThat(loaded).isTrue();
+        assertThat(restoredUserPermissionStore.size()).isZero();
+    }
+
+    @Test
+    void givenCorruptedSnapshotShouldIgnoreIt() throws IOException {
+        CompactUserPermissionStore userPermissionStore = new CompactUserPermissionStore(16);
+        userPermissionStore.put(UUID.randomUUID(), new long[]{1L});
+        UserPermissionConsumedOffsets consumedOffsets = new UserPermissionConsumedOffsets();
+        consumedOffsets.recordConsumed(0, 41L);
+        snapshotService(userPermissionStore, consumedOffsets).write();
+        byte[] snapshot = Files.readAllBytes(snapshotProperties.getPath());
+        snapshot[snapshot.length / 2] ^= 1;
+        Files.write(snapshotProperties.getPath(), snapshot);
+
+        CompactUserPermissionStore restoredUserPermissionStore = new CompactUserPermissionStore(16);
+        UserPermissionConsumedOffsets restoredConsumedOffsets = new UserPermissionConsumedOffsets();
+        boolean loaded = snapshotService(restoredUserPermissionStore, restoredConsumedOffsets).load();
+
+        assertThat(loaded).isFalse();
+        assertThat(restoredUserPermissionStore.size()).isZero();
+        assertThat(restoredConsumedOffsets.getNextOffsetPerPartition()).isEmpty();
+    }
+
+    @Test
+    void givenSnapshotOlderThanMaxAgeShouldIgnoreIt() {
+        CompactUserPermissionStore userPermissionStore = new CompactUserPermissionStore(16);
+        userPermissionStore.put(UUID.randomUUID(), new long[]{1L});
+        Instant writtenAt = Instant.parse("2024-01-01T00:00:00Z");
+        snapshotService(userPermissionStore, new UserPermissionConsumedOffsets(), writtenAt).write();
+
+        CompactUserPermissionStore restoredUserPermissionStore = new CompactUserPermissionStore(16);
+        UserPermissionConsumedOffsets restoredConsumedOffsets = new UserPermissionConsumedOffsets();
+        boolean loaded = snapshotService(
+                restoredUserPermissionStore,
+                restoredConsumedOffsets,
+                writtenAt.plus(snapshotProperties.getMaxAge()).plusSeconds(1)
+        ).load();
+
+        assertThat(loaded).isFalse();
+        assertThat(restoredUserPermissionStore.size()).isZero();
+        assertThat(restoredConsumedOffsets.getNextOffsetPerPartition()).isEmpty();
+    }
+
+    @Test
+    void givenNoSnapshotShouldNotLoad() {
+        boolean loaded = snapshotService(new CompactUserPermissionStore(16), new UserPermissionConsumedOffsets()).load();
+
+        assertThat(loaded).isFalse();
+    }
+
+    private UserPermissionSnapshotService snapshotService(
+            UserPermissionStore userPermissionStore,
+            UserPermissionConsumedOffsets consumedOffsets
+    ) {
+        return snapshotService(userPermissionStore, consumedOffsets, Instant.now());
+    }
+
+    private UserPermissionSnapshotService snapshotService(
+            UserPermissionStore userPermissionStore,
+            UserPermissionConsumedOffsets consumedOffsets,
+            Instant now
+    ) {
+        return new UserPermissionSnapshotService(
+                snapshotProperties,
+                userPermissionStore,
+                consumedOffsets,
+                Schedulers.immediate(),
+                Clock.fixed(now, ZoneOffset.UTC)
+        );
+    }
+
+}
@@ -0,0 +1,68 @@
+package no.novari.flyt.resourceserver.security.user.query;
+
+import no.novari.flyt.resourceserver.security.AuthorityMappingService;
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.CriteriaDefinition;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SourceApplicationCriteriaFactoryTest {
+
+    private SourceApplicationCriteriaFactory sourceApplicationCriteriaFactory;
+
+    @BeforeEach
+    void setUp() {
+        sourceApplicationCriteriaFactory = new SourceApplicationCriteriaFactory(new AuthorityMappingService());
+    }
+
+    @Test
+    void givenAuthorizedSourceApplicationsShouldCreateInCriteria() {
+        Criteria criteria = sourceApplicationCriteriaFactory.authorizedSourceApplications(
+                flytAuthenticationToken(new long[]{1L, 2L}),
+                "source_application_id"
+        );
+
+        assertThat(criteria.getColumn().getReference()).isEqualTo("source_application_id");
+        assertThat(criteria.getComparator()).isEqualTo(CriteriaDefinition.Comparator.IN);
+        assertThat(criteria.getValue()).isEqualTo(List.of(1L, 2L));
+    }
+
+    @Test
+    void givenNoAuthenticationInReactiveContextShouldCreateCriteriaThatNeverMatches() {
+        StepVerifier.create(sourceApplicationCriteriaFactory.authorizedSourceApplicationsForCurrentUser(
+                        "source_application_id"
+                ))
+                .assertNext(criteria -> {
+                    assertThat(criteria.getComparator()).isEqualTo(CriteriaDefinition.Comparator.IS_NOT_NULL);
+                    assertThat(criteria.getPrevious().getComparator())
+                            .isEqualTo(CriteriaDefinition.Comparator.IS_NULL);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void givenAuthenticationInReactiveContextShouldCreateCriteriaForCurrentUser() {
+        StepVerifier.create(sourceApplicationCriteriaFactory.authorizedSourceApplicationsForCurrentUser(
+                                "source_application_id"
+                        )
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                flytAuthenticationToken(new long[]{3L})
+                        )))
+                .assertNext(criteria -> assertThat(criteria.getValue()).isEqualTo(List.of(3L)))
+                .verifyComplete();
+    }
+
+    private static FlytAuthenticationToken flytAuthenticationToken(long[] sourceApplicationIds) {
+        return new FlytAuthenticationToken(mock(Jwt.class), List.of(), "organizationId", 0, sourceApplicationIds);
+    }
+
+}
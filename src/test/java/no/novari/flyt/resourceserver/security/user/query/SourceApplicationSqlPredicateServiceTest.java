@@ -0,0 +1,90 @@
+package no.novari.flyt.resourceserver.security.user.query;
+
+import no.novari.flyt.resourceserver.security.AuthorityMappingService;
+import no.novari.flyt.resourceserver.security.FlytAuthenticationToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class SourceApplicationSqlPredicateServiceTest {
+
+    private SourceApplicationSqlPredicateService sourceApplicationSqlPredicateService;
+
+    @BeforeEach
+    void setUp() {
+        sourceApplicationSqlPredicateService = new SourceApplicationSqlPredicateService(new AuthorityMappingService());
+    }
+
+    @Test
+    void givenAuthorizedSourceApplicationsShouldCreateInPredicate() {
+        SourceApplicationSqlPredicate predicate = sourceApplicationSqlPredicateService.in(
+                flytAuthenticationToken(new long[]{1L, 2L}),
+                "i.source_application_id"
+        );
+
+        assertThat(predicate.sql()).isEqualTo("i.source_application_id IN (:sourceApplicationIds)");
+        assertThat(predicate.parameters()).isEqualTo(Map.of("sourceApplicationIds", List.of(1L, 2L)));
+    }
+
+    @Test
+    void givenAuthorizedSourceApplicationsShouldCreateAnyPredicateWithArrayParameter() {
+        SourceApplicationSqlPredicate predicate = sourceApplicationSqlPredicateService.any(
+                flytAuthenticationToken(new long[]{1L, 2L}),
+                "source_application_id",
+                "ids"
+        );
+
+        assertThat(predicate.sql()).isEqualTo("source_application_id = ANY(:ids)");
+        assertThat(predicate.parameters().get("ids")).isEqualTo(new Long[]{1L, 2L});
+    }
+
+    @Test
+    void givenNoAuthorizedSourceApplicationsShouldCreatePredicateThatNeverMatches() {
+        SourceApplicationSqlPredicate predicate = sourceApplicationSqlPredicateService.in(
+                flytAuthenticationToken(new long[0]),
+                "source_application_id"
+        );
+
+        assertThat(predicate.sql()).isEqualTo("1 = 0");
+        assertThat(predicate.parameters()).isEmpty();
+    }
+
+    @Test
+    void givenColumnThatIsNotAnIdentifierShouldThrowException() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> sourceApplicationSqlPredicateService.in(
+                        flytAuthenticationToken(new long[]{1L}),
+                        "source_application_id) OR (1 = 1"
+                )
+        );
+    }
+
+    @Test
+    void givenAuthenticationInReactiveContextShouldCreatePredicateForCurrentUser() {
+        StepVerifier.create(sourceApplicationSqlPredicateService.anyForCurrentUser("source_application_id")
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                flytAuthenticationToken(new long[]{3L})
+                        )))
+                .assertNext(predicate -> assertThat(predicate.sql())
+                        .isEqualTo("source_application_id = ANY(:sourceApplicationIds)"))
+                .verifyComplete();
+        StepVerifier.create(sourceApplicationSqlPredicateService.anyForCurrentUser("source_application_id"))
+                .assertNext(predicate -> assertThat(predicate.sql()).isEqualTo("1 = 0"))
+                .verifyComplete();
+    }
+
+    private static FlytAuthenticationToken flytAuthenticationToken(long[] sourceApplicationIds) {
+        return new FlytAuthenticationToken(mock(Jwt.class), List.of(), "organizationId", 0, sourceApplicationIds);
+    }
+
+}